@@ -135,6 +135,33 @@ db.password=$MYSQL_PASSWORD
 # Connection pool settings (optional)
 db.maxPoolSize=10
 db.minPoolSize=2
+# Max time to wait for a free connection before failing
+db.connectionTimeoutMs=30000
+# Warn when a connection is held longer than this (0 = off)
+db.leakDetectionThresholdMs=60000
+
+# Prepared statement cache per connection (0 = off)
+db.statementCacheSize=64
+# Use server-side prepared statements (parsed once on MySQL)
+# Always on while db.useCursorFetch=true: the driver needs them for cursor fetch
+db.useServerPrepStmts=true
+
+# Full-table scans read rows in batches of this size through a server-side cursor
+db.useCursorFetch=true
+db.streamFetchSize=1000
+
+# Send batched inserts as multi-row INSERT statements
+db.rewriteBatchedStatements=true
+
+# Allow the bulk-load import engine (LOAD DATA LOCAL INFILE, restricted to a temp staging dir)
+# The server must also have local_infile enabled: SET GLOBAL local_infile = 1;
+db.allowBulkLoad=true
+
+# Memory cap for cached list and statistics query results, in KB (0 = off)
+db.queryCacheMaxKb=16384
+# Risk re-scoring job: rows per UPDATE transaction, and a rate cap so it leaves the database to interactive use
+db.rescoreChunkSize=1000
+db.rescoreRowsPerSecond=5000
 EOF
 
 info "Configuration saved to $DB_PROPS"
@@ -1,10 +1,12 @@
 package com.vertebralcare;
 
 import com.vertebralcare.dao.DBUtil;
+import com.vertebralcare.dao.SchemaMigrator;
 import com.vertebralcare.ui.MainFrame;
 
 import javax.swing.*;
 import java.awt.*;
+import java.sql.SQLException;
 
 /**
  * VertebralCare - Spine Case Management System
@@ -45,6 +47,12 @@ public class Main {
         boolean dbConnected = DBUtil.testConnection();
         if (dbConnected) {
             System.out.println("Database connection successful!");
+            // Bring databases created by an older init.sql up to date before anything opens a transaction
+            try {
+                SchemaMigrator.migrate();
+            } catch (SQLException e) {
+                System.err.println("Warning: Database schema upgrade failed: " + e.getMessage());
+            }
         } else {
             System.err.println("Warning: Database connection failed! Please check:");
             System.err.println("  1. Is MySQL service running?");
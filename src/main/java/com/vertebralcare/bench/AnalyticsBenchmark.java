@@ -0,0 +1,56 @@
+package com.vertebralcare.bench;
+
+import com.vertebralcare.dao.QueryCache;
+import com.vertebralcare.dao.SchemaMigrator;
+import com.vertebralcare.service.ExamAnalytics;
+import com.vertebralcare.service.ExamAnalytics.Engine;
+import com.vertebralcare.service.ExamSummary;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Benchmark: per-class indicator averages via the SQL GROUP BY path versus the fork/join scan
+ * over the in-memory column store, against the configured database.
+ * Also checks that both engines agree on every average.
+ *
+ * Usage: mvn -q exec:java -Dexec.mainClass=com.vertebralcare.bench.AnalyticsBenchmark [-Dexec.args="[rounds]"]
+ * The first parallel round includes loading the column store; the query cache is cleared before each SQL round.
+ */
+public class AnalyticsBenchmark {
+
+    public static void main(String[] args) throws SQLException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        ExamAnalytics analytics = new ExamAnalytics();
+        SchemaMigrator.migrate();
+
+        for (int round = 1; round <= rounds; round++) {
+            QueryCache.bump(QueryCache.Table.EXAM);
+            long t0 = System.nanoTime();
+            Map<String, double[]> sql = analytics.getAveragesByClass(Engine.SQL);
+            long t1 = System.nanoTime();
+            ExamSummary summary = analytics.summarize();
+            long t2 = System.nanoTime();
+
+            System.out.printf("  Round %d: SQL %7.1f ms | parallel %7.1f ms (scan %.1f ms, %d rows, %d threads)"
+                            + " | max difference %.2e%n",
+                    round, (t1 - t0) / 1e6, (t2 - t1) / 1e6, summary.getElapsedNanos() / 1e6,
+                    summary.getRowCount(), summary.getParallelism(),
+                    maxDifference(sql, summary.getAveragesByClass()));
+        }
+    }
+
+    private static double maxDifference(Map<String, double[]> expected, Map<String, double[]> actual) {
+        if (!expected.keySet().equals(actual.keySet())) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double max = 0;
+        for (Map.Entry<String, double[]> entry : expected.entrySet()) {
+            double[] other = actual.get(entry.getKey());
+            for (int i = 0; i < other.length; i++) {
+                max = Math.max(max, Math.abs(entry.getValue()[i] - other[i]));
+            }
+        }
+        return max;
+    }
+}
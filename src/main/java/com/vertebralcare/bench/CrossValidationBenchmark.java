@@ -0,0 +1,78 @@
+package com.vertebralcare.bench;
+
+import com.vertebralcare.dao.SchemaMigrator;
+import com.vertebralcare.service.CrossValidation;
+import com.vertebralcare.service.CrossValidationReport;
+import com.vertebralcare.service.CrossValidationReport.GridPoint;
+import com.vertebralcare.service.RiskService;
+
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Cross-validation of the risk model against the configured database, with a core-count scaling run
+ * Loads all exams once, then runs the same folds and L2 grid on pools of 1, 2, 4, ... threads up to the
+ * number of available processors, reporting wall time and speedup, followed by the metrics of the last run.
+ *
+ * Usage: mvn -q exec:java -Dexec.mainClass=com.vertebralcare.bench.CrossValidationBenchmark
+ *            [-Dexec.args="[folds] [maxThreads]"]
+ */
+public class CrossValidationBenchmark {
+
+    public static void main(String[] args) throws SQLException {
+        int folds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        RiskService riskService = new RiskService();
+        SchemaMigrator.migrate();
+
+        long t0 = System.nanoTime();
+        CrossValidation.Dataset data = riskService.loadDataset();
+        System.out.printf("Loaded %d exams (%d abnormal) in %.0f ms%n",
+                data.size(), data.positives(), (System.nanoTime() - t0) / 1e6);
+        System.out.printf("%d folds x %d L2 values%n", folds, CrossValidation.DEFAULT_GRID.length);
+
+        CrossValidationReport report = null;
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                report = riskService.crossValidate(data, folds, CrossValidation.DEFAULT_GRID, pool);
+            } finally {
+                pool.shutdown();
+            }
+            double ms = report.getWallNanos() / 1e6;
+            if (threads == 1) {
+                baseline = ms;
+            }
+            System.out.printf("  %2d threads: %8.0f ms  speedup %.2fx%n", threads, ms, baseline / ms);
+        }
+
+        System.out.println();
+        System.out.println("      L2   fold AUC (mean +- sd)   AUC     accuracy  log loss  Brier   ECE");
+        for (GridPoint point : report.getGridPoints()) {
+            System.out.printf("%8.2f   %.4f +- %.4f        %.4f  %.4f    %.4f    %.4f  %.4f%n",
+                    point.getL2(), point.getMeanFoldAuc(), point.getFoldAucStdDev(), point.getAuc(),
+                    point.getAccuracy(), point.getLogLoss(), point.getBrier(), point.getCalibrationError());
+        }
+
+        GridPoint best = report.getBest();
+        System.out.printf("%nBest L2 = %.2f; calibration of its out-of-fold predictions:%n", best.getL2());
+        System.out.println("  predicted bin   exams   mean predicted  observed");
+        for (int bin = 0; bin < best.getCalibrationBins(); bin++) {
+            if (best.getCalibrationCount(bin) == 0) {
+                continue;
+            }
+            System.out.printf("  %.1f - %.1f   %8d   %.3f           %.3f%n",
+                    (double) bin / best.getCalibrationBins(), (double) (bin + 1) / best.getCalibrationBins(),
+                    best.getCalibrationCount(bin), best.getCalibrationPredicted(bin), best.getCalibrationObserved(bin));
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        // 1, 2, 4, ... and finally maxThreads itself if it is not a power of two
+        if (threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+}
@@ -0,0 +1,232 @@
+package com.vertebralcare.bench;
+
+import com.vertebralcare.service.CsvReader;
+import com.vertebralcare.service.CsvRow;
+import com.vertebralcare.service.DoubleParser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark: indicator parsing via String.split/trim/Double.parseDouble versus DoubleParser on bytes
+ * Also checks that both paths give bit-identical results.
+ *
+ * Usage: mvn -q exec:java -Dexec.mainClass=com.vertebralcare.bench.DoubleParseBenchmark
+ *            [-Dexec.args="[csvFile] [rows]"]
+ * Without a file, rows shaped like Dataset_spine.csv are generated.
+ */
+public class DoubleParseBenchmark {
+
+    private static final int INDICATORS = 6;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        File file = args.length > 0 && !args[0].isEmpty() ? new File(args[0]) : generate(rows);
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        String[] lines = new String(content, StandardCharsets.UTF_8).split("\r?\n");
+        System.out.printf("Input: %s, %d lines, %.1f MB%n", file, lines.length, content.length / 1e6);
+
+        verify(file, lines);
+        int[] fields = indexFields(content);
+
+        System.out.println("Parse only (field offsets precomputed):");
+        for (int round = 1; round <= ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            double legacy = parseStrings(content, fields);
+            long t1 = System.nanoTime();
+            double fast = parseBytes(content, fields);
+            long t2 = System.nanoTime();
+            report(round, "substring+trim+parseDouble", "DoubleParser", t0, t1, t2, legacy, fast);
+        }
+
+        System.out.println("End to end (read file, tokenize, parse):");
+        for (int round = 1; round <= ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            double legacy = legacyPath(file);
+            long t1 = System.nanoTime();
+            double fast = bytePath(file);
+            long t2 = System.nanoTime();
+            report(round, "readLine+split+parseDouble", "CsvReader+DoubleParser", t0, t1, t2, legacy, fast);
+        }
+    }
+
+    private static void report(int round, String legacyName, String fastName,
+                               long t0, long t1, long t2, double legacy, double fast) {
+        System.out.printf("  Round %d: %s %6.0f ms | %s %6.0f ms | %.2fx (checksums %s)%n",
+                round, legacyName, (t1 - t0) / 1e6, fastName, (t2 - t1) / 1e6, (double) (t1 - t0) / (t2 - t1),
+                Double.compare(legacy, fast) == 0 ? "match" : "DIFFER");
+    }
+
+    /**
+     * Start/end offsets of the indicator fields of every data line
+     */
+    private static int[] indexFields(byte[] content) {
+        int[] fields = new int[1024];
+        int n = 0;
+        int lineStart = 0;
+        boolean header = true;
+        for (int i = 0; i <= content.length; i++) {
+            if (i < content.length && content[i] != '\n') {
+                continue;
+            }
+            if (header) {
+                header = false;
+            } else {
+                int fieldStart = lineStart;
+                for (int j = lineStart, f = 0; j < i && f < INDICATORS; j++) {
+                    if (content[j] == ',') {
+                        if (n + 2 > fields.length) {
+                            fields = Arrays.copyOf(fields, fields.length * 2);
+                        }
+                        fields[n++] = fieldStart;
+                        fields[n++] = j;
+                        fieldStart = j + 1;
+                        f++;
+                    }
+                }
+            }
+            lineStart = i + 1;
+        }
+        return Arrays.copyOf(fields, n);
+    }
+
+    private static double parseStrings(byte[] content, int[] fields) {
+        double sum = 0;
+        for (int i = 0; i < fields.length; i += 2) {
+            sum += Double.parseDouble(new String(content, fields[i], fields[i + 1] - fields[i],
+                    StandardCharsets.US_ASCII).trim());
+        }
+        return sum;
+    }
+
+    private static double parseBytes(byte[] content, int[] fields) {
+        double sum = 0;
+        for (int i = 0; i < fields.length; i += 2) {
+            sum += DoubleParser.parse(content, fields[i], fields[i + 1]);
+        }
+        return sum;
+    }
+
+    /**
+     * The old import path: BufferedReader lines, split, trim, Double.parseDouble
+     */
+    private static double legacyPath(File file) throws IOException {
+        double sum = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(",");
+                if (values.length < INDICATORS + 1) {
+                    continue;
+                }
+                try {
+                    for (int i = 0; i < INDICATORS; i++) {
+                        sum += Double.parseDouble(values[i].trim());
+                    }
+                } catch (NumberFormatException e) {
+                    // header
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static double bytePath(File file) throws IOException {
+        double sum = 0;
+        CsvRow row = new CsvRow();
+        try (CsvReader reader = new CsvReader(file)) {
+            while (reader.next(row)) {
+                if (row.getFieldCount() < INDICATORS + 1) {
+                    continue;
+                }
+                try {
+                    for (int i = 0; i < INDICATORS; i++) {
+                        sum += row.getDouble(i);
+                    }
+                } catch (NumberFormatException e) {
+                    // header
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static void verify(File file, String[] lines) throws IOException {
+        long mismatches = 0;
+        long checked = 0;
+        CsvRow row = new CsvRow();
+        try (CsvReader reader = new CsvReader(file)) {
+            for (String line : lines) {
+                if (!reader.next(row)) {
+                    break;
+                }
+                String[] values = line.split(",");
+                for (int i = 0; i < INDICATORS && i < values.length && i < row.getFieldCount(); i++) {
+                    double expected;
+                    try {
+                        expected = Double.parseDouble(values[i].trim());
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    checked++;
+                    if (Double.doubleToRawLongBits(expected) != Double.doubleToRawLongBits(row.getDouble(i))) {
+                        if (mismatches++ < 10) {
+                            System.out.println("Mismatch: '" + values[i] + "' -> " + row.getDouble(i));
+                        }
+                    }
+                }
+            }
+        }
+        System.out.printf("Verified %d values, %d mismatches%n", checked, mismatches);
+
+        // Randomized round trip over the whole double range the parser sees in practice
+        Random random = new Random(42);
+        byte[] buf = new byte[64];
+        for (int i = 0; i < 1_000_000; i++) {
+            double value = (random.nextDouble() - 0.3) * Math.pow(10, random.nextInt(8) - 2);
+            String text = random.nextBoolean() ? Double.toString(value) : String.format("%.9f", value);
+            int len = text.length();
+            for (int j = 0; j < len; j++) {
+                buf[j] = (byte) text.charAt(j);
+            }
+            if (Double.doubleToRawLongBits(Double.parseDouble(text)) !=
+                    Double.doubleToRawLongBits(DoubleParser.parse(buf, 0, len))) {
+                System.out.println("Round-trip mismatch: " + text);
+            }
+        }
+    }
+
+    private static File generate(int rows) throws IOException {
+        File file = File.createTempFile("spine-bench", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder(rows * 80);
+        sb.append("pelvic incidence, pelvic tilt, lumbar lordosis angle, sacral slope, pelvic radius, " +
+                "grade of spondylolisthesis,Class_att\n");
+        for (int r = 0; r < rows; r++) {
+            sb.append(indicator(random, 26, 130)).append(',')
+                    .append(indicator(random, -7, 50)).append(',')
+                    .append(indicator(random, 14, 126)).append(',')
+                    .append(indicator(random, 13, 121)).append(',')
+                    .append(indicator(random, 70, 163)).append(',')
+                    .append(indicator(random, -11, 418)).append(',')
+                    .append(random.nextInt(3) == 0 ? "Normal" : "Abnormal").append('\n');
+        }
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    private static String indicator(Random random, double min, double max) {
+        double value = min + random.nextDouble() * (max - min);
+        // Dataset values carry 8-10 significant digits
+        return String.format("%.8f", value).replaceAll("0+$", "");
+    }
+}
@@ -0,0 +1,129 @@
+package com.vertebralcare.dao;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 批量导入数据访问对象
+ * 通过 LOAD DATA LOCAL INFILE 把暂存文件装入会话级临时表，再用集合式 SQL 生成病人和检查记录
+ *
+ * 暂存文件格式：制表符分隔、换行结尾，列顺序与 STAGING_COLUMNS 一致，空值写作 \N
+ */
+public class BulkLoadDao {
+
+    /** 暂存文件中的列顺序 */
+    public static final String[] STAGING_COLUMNS = {
+            "row_no", "name", "gender", "birth_date", "phone", "exam_date",
+            "pelvic_incidence", "pelvic_tilt", "lumbar_lordosis_angle", "sacral_slope",
+            "pelvic_radius", "degree_spondylolisthesis", "class_id", "notes", "risk_score", "model_version"
+    };
+
+    private static final String CREATE_STAGING_SQL =
+            "CREATE TEMPORARY TABLE IF NOT EXISTS ImportStaging (" +
+            "row_no INT NOT NULL PRIMARY KEY, " +
+            "name VARCHAR(100) NOT NULL, gender CHAR(1), birth_date DATE, phone VARCHAR(20), " +
+            "exam_date DATE NOT NULL, " +
+            "pelvic_incidence DOUBLE NOT NULL, pelvic_tilt DOUBLE NOT NULL, " +
+            "lumbar_lordosis_angle DOUBLE NOT NULL, sacral_slope DOUBLE NOT NULL, " +
+            "pelvic_radius DOUBLE NOT NULL, degree_spondylolisthesis DOUBLE NOT NULL, " +
+            "class_id INT NOT NULL, notes VARCHAR(500), risk_score DOUBLE NULL, model_version VARCHAR(32) NULL" +
+            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+
+    // Patient IDs come from AUTO_INCREMENT; import_row = key base + row_no links each new patient to its staging row
+    private static final String INSERT_PATIENTS_SQL =
+            "INSERT INTO Patient (name, gender, birth_date, phone, import_row) " +
+            "SELECT name, gender, birth_date, phone, ? + row_no FROM ImportStaging ORDER BY row_no";
+
+    // class_id was resolved (or created) while parsing; the Exam foreign key still checks it
+    private static final String INSERT_EXAMS_SQL =
+            "INSERT INTO Exam (patient_id, exam_date, pelvic_incidence, pelvic_tilt, lumbar_lordosis_angle, " +
+            "sacral_slope, pelvic_radius, degree_spondylolisthesis, class_id, notes, risk_score, model_version) " +
+            "SELECT p.patient_id, s.exam_date, s.pelvic_incidence, s.pelvic_tilt, s.lumbar_lordosis_angle, " +
+            "s.sacral_slope, s.pelvic_radius, s.degree_spondylolisthesis, s.class_id, s.notes, s.risk_score, " +
+            "s.model_version " +
+            "FROM ImportStaging s JOIN Patient p ON p.import_row = ? + s.row_no ORDER BY s.row_no";
+
+    // Every new patient has exactly one exam
+    private static final String SELECT_IDS_SQL =
+            "SELECT s.row_no, p.patient_id, e.exam_id FROM ImportStaging s " +
+            "JOIN Patient p ON p.import_row = ? + s.row_no " +
+            "JOIN Exam e ON e.patient_id = p.patient_id";
+
+    // Equality lookups on the unique key lock only this load's own rows
+    private static final String CLEAR_IMPORT_ROWS_SQL =
+            "UPDATE Patient p JOIN ImportStaging s ON p.import_row = ? + s.row_no SET p.import_row = NULL";
+
+    /**
+     * 在调用方的事务中装入一个暂存文件并生成对应的病人和检查记录（不提交）
+     * 病人ID由自增列分配：新病人先以 import_row = 连接ID × 2^32 + row_no 标识，用于关联暂存行，返回前清除。
+     * 连接ID在并发的会话之间不重复，因此不需要锁住 Patient 表来预留ID
+     * 调用方须在同一事务中用 ExamRollupDao.addExams() 把新记录计入时间汇总，
+     * 提交后需调用 QueryCache.bump(Table.PATIENT, Table.EXAM)
+     * @param stagingFile 位于 DBUtil.getBulkLoadDir() 下的暂存文件，row_no 从 1 开始且不重复
+     * @param patientIds 按 row_no - 1 填入新病人的ID，长度不小于暂存行数
+     * @param examIds 按 row_no - 1 填入新检查记录的ID，长度不小于暂存行数
+     * @return 导入的记录数
+     */
+    public int load(Connection conn, File stagingFile, int[] patientIds, int[] examIds) throws SQLException {
+        // LOAD DATA is not supported by server-side prepared statements, use a plain Statement
+        try (Statement st = conn.createStatement()) {
+            st.execute(CREATE_STAGING_SQL);
+            st.executeUpdate("DELETE FROM ImportStaging");
+            int staged = st.executeUpdate("LOAD DATA LOCAL INFILE '" + escapePath(stagingFile) + "' " +
+                    "INTO TABLE ImportStaging CHARACTER SET utf8mb4 " +
+                    "FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' " +
+                    "(" + String.join(", ", STAGING_COLUMNS) + ")");
+            if (staged == 0) {
+                return 0;
+            }
+
+            long keyBase;
+            try (ResultSet rs = st.executeQuery("SELECT CONNECTION_ID()")) {
+                rs.next();
+                keyBase = rs.getLong(1) << 32;
+            }
+
+            int patients;
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_PATIENTS_SQL)) {
+                ps.setLong(1, keyBase);
+                patients = ps.executeUpdate();
+            }
+
+            int exams;
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_EXAMS_SQL)) {
+                ps.setLong(1, keyBase);
+                exams = ps.executeUpdate();
+            }
+
+            if (patients != staged || exams != staged) {
+                throw new SQLException("Bulk load mismatch: staged " + staged + " rows, inserted " +
+                        patients + " patients and " + exams + " exams");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_IDS_SQL)) {
+                ps.setLong(1, keyBase);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int row = rs.getInt(1) - 1;
+                        patientIds[row] = rs.getInt(2);
+                        examIds[row] = rs.getInt(3);
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(CLEAR_IMPORT_ROWS_SQL)) {
+                ps.setLong(1, keyBase);
+                ps.executeUpdate();
+            }
+            st.executeUpdate("DELETE FROM ImportStaging");
+            return exams;
+        }
+    }
+
+    private static String escapePath(File file) {
+        // Forward slashes work on every platform and avoid backslash escaping inside the SQL literal
+        return file.getAbsolutePath().replace('\\', '/').replace("'", "''");
+    }
+}
@@ -0,0 +1,339 @@
+package com.vertebralcare.dao;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 数据库连接池
+ * 支持最小空闲连接预热、最大连接数上限、借用超时、借用时校验和连接泄漏检测
+ */
+public class ConnectionPool implements DataSource {
+
+    // Connections used within this window are handed out again without a ping
+    private static final long ALIVE_BYPASS_MS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 3;
+    private static final long IDLE_TIMEOUT_MS = 10 * 60 * 1000L;
+    private static final long HOUSEKEEPING_PERIOD_MS = 5000;
+
+    private final String url;
+    private final Properties connectionProps;
+    private final int minIdle;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long leakDetectionThresholdMs;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Thread, Statement> executing = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    public ConnectionPool(String url, Properties connectionProps, int minIdle, int maxSize,
+                          long borrowTimeoutMs, long leakDetectionThresholdMs, int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxPoolSize must be positive");
+        }
+        this.url = url;
+        this.connectionProps = connectionProps;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+
+        warmUp();
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_PERIOD_MS, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 从池中借用连接，调用方关闭连接即归还
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + borrowTimeoutMs +
+                        " ms waiting for a database connection (active=" + active.size() +
+                        ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pc = takeIdle();
+            if (pc == null) {
+                pc = create();
+            }
+            active.add(pc);
+            return pc.lease(leakDetectionThresholdMs > 0);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool credentials are fixed by db.properties");
+    }
+
+    /**
+     * 归还连接（由连接代理的 close() 调用）
+     */
+    void release(PooledConnection pc) {
+        if (!active.remove(pc)) {
+            return;
+        }
+        if (!closed && pc.reset()) {
+            idle.offerFirst(pc);
+        } else {
+            destroy(pc);
+        }
+        permits.release();
+    }
+
+    /**
+     * 获取连接池运行指标快照
+     */
+    public PoolStats getStats() {
+        long borrows = borrowCount.get();
+        return new PoolStats(
+                active.size(),
+                idle.size(),
+                maxSize,
+                permits.getQueueLength(),
+                borrows,
+                borrows == 0 ? 0.0 : totalWaitNanos.get() / 1e6 / borrows,
+                maxWaitNanos.get() / 1e6,
+                timeoutCount.get(),
+                leakCount.get(),
+                createdCount.get(),
+                destroyedCount.get(),
+                statementCacheHits.get(),
+                statementCacheMisses.get()
+        );
+    }
+
+    /**
+     * 关闭连接池，空闲连接立即关闭，借出的连接在归还时关闭
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            destroy(pc);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - pc.getLastReturnedAt() < ALIVE_BYPASS_MS
+                    || pc.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return pc;
+            }
+            destroy(pc);
+        }
+        return null;
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, connectionProps);
+        createdCount.incrementAndGet();
+        return new PooledConnection(this, raw, statementCacheSize);
+    }
+
+    private void destroy(PooledConnection pc) {
+        pc.closeQuietly();
+        destroyedCount.incrementAndGet();
+    }
+
+    /**
+     * 取消指定线程上正在执行的语句
+     * @return 是否有语句被取消
+     */
+    public boolean cancelStatement(Thread thread) {
+        Statement stmt = executing.get(thread);
+        if (stmt == null) {
+            return false;
+        }
+        try {
+            stmt.cancel();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Failed to cancel statement: " + e.getMessage());
+            return false;
+        }
+    }
+
+    void beginExecute(Statement stmt) {
+        executing.put(Thread.currentThread(), stmt);
+    }
+
+    void endExecute() {
+        executing.remove(Thread.currentThread());
+    }
+
+    void recordStatementCacheHit(boolean hit) {
+        (hit ? statementCacheHits : statementCacheMisses).incrementAndGet();
+    }
+
+    private void recordWait(long nanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        long prev;
+        while (nanos > (prev = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(prev, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private void warmUp() {
+        try {
+            fillToMinIdle();
+        } catch (SQLException e) {
+            System.err.println("Connection pool warm-up failed: " + e.getMessage());
+        }
+    }
+
+    private void fillToMinIdle() throws SQLException {
+        while (!closed && idle.size() < minIdle && permits.tryAcquire()) {
+            try {
+                if (active.size() + idle.size() >= maxSize) {
+                    return;
+                }
+                PooledConnection pc = create();
+                pc.markReturned();
+                idle.offerLast(pc);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        // Leak detection
+        if (leakDetectionThresholdMs > 0) {
+            for (PooledConnection pc : active) {
+                if (pc.checkLeak(now, leakDetectionThresholdMs)) {
+                    leakCount.incrementAndGet();
+                    System.err.println("Possible connection leak: held for " + (now - pc.getLeasedAt()) + " ms");
+                    Throwable trace = pc.getLeaseTrace();
+                    if (trace != null) {
+                        trace.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        // Retire connections idle for too long, but keep minIdle warm
+        for (PooledConnection pc : idle) {
+            if (idle.size() <= minIdle) {
+                break;
+            }
+            if (now - pc.getLastReturnedAt() > IDLE_TIMEOUT_MS && idle.remove(pc)) {
+                destroy(pc);
+            }
+        }
+
+        try {
+            fillToMinIdle();
+        } catch (SQLException e) {
+            // Database unavailable, retry on next run
+        }
+    }
+
+    // DataSource boilerplate
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
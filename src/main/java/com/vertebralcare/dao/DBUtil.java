@@ -1,14 +1,15 @@
 package com.vertebralcare.dao;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
 /**
  * 数据库连接工具类
+ * 连接由内置连接池提供，池大小等参数读取自 db.properties
  */
 public class DBUtil {
 
@@ -17,8 +18,29 @@ public class DBUtil {
     private static String password;
     private static boolean initialized = false;
 
+    // Pool settings
+    private static int maxPoolSize = 10;
+    private static int minPoolSize = 2;
+    private static long connectionTimeoutMs = 30000;
+    private static long leakDetectionThresholdMs = 60000;
+    private static int statementCacheSize = 64;
+    private static boolean useServerPrepStmts = false;
+    private static boolean useCursorFetch = true;
+    private static int streamFetchSize = 1000;
+    private static boolean rewriteBatchedStatements = true;
+    private static boolean allowBulkLoad = true;
+    private static long queryCacheMaxKb = 16 * 1024;
+    private static int rescoreChunkSize = 1000;
+    private static int rescoreRowsPerSecond = 5000;
+
+    // The only directory LOAD DATA LOCAL INFILE may read from
+    private static final File BULK_LOAD_DIR = new File(System.getProperty("java.io.tmpdir"), "vertebralcare-bulk");
+
+    private static volatile ConnectionPool pool;
+
     static {
         loadConfig();
+        Runtime.getRuntime().addShutdownHook(new Thread(DBUtil::shutdown, "db-pool-shutdown"));
     }
 
     private static void loadConfig() {
@@ -29,6 +51,20 @@ public class DBUtil {
                 url = props.getProperty("db.url");
                 user = props.getProperty("db.user");
                 password = props.getProperty("db.password");
+                maxPoolSize = intProperty(props, "db.maxPoolSize", maxPoolSize);
+                minPoolSize = intProperty(props, "db.minPoolSize", minPoolSize);
+                connectionTimeoutMs = longProperty(props, "db.connectionTimeoutMs", connectionTimeoutMs);
+                leakDetectionThresholdMs = longProperty(props, "db.leakDetectionThresholdMs", leakDetectionThresholdMs);
+                statementCacheSize = intProperty(props, "db.statementCacheSize", statementCacheSize);
+                useServerPrepStmts = Boolean.parseBoolean(props.getProperty("db.useServerPrepStmts", "false").trim());
+                useCursorFetch = Boolean.parseBoolean(props.getProperty("db.useCursorFetch", "true").trim());
+                streamFetchSize = intProperty(props, "db.streamFetchSize", streamFetchSize);
+                rewriteBatchedStatements = Boolean.parseBoolean(
+                        props.getProperty("db.rewriteBatchedStatements", "true").trim());
+                allowBulkLoad = Boolean.parseBoolean(props.getProperty("db.allowBulkLoad", "true").trim());
+                queryCacheMaxKb = longProperty(props, "db.queryCacheMaxKb", queryCacheMaxKb);
+                rescoreChunkSize = intProperty(props, "db.rescoreChunkSize", rescoreChunkSize);
+                rescoreRowsPerSecond = intProperty(props, "db.rescoreRowsPerSecond", rescoreRowsPerSecond);
             } else {
                 // Default configuration
                 url = "jdbc:mysql://localhost:3306/vertebral_db?useSSL=false&serverTimezone=UTC&characterEncoding=UTF-8";
@@ -39,6 +75,7 @@ public class DBUtil {
             // Load MySQL JDBC driver
             Class.forName("com.mysql.cj.jdbc.Driver");
             initialized = true;
+            pool = createPool();
 
         } catch (IOException e) {
             System.err.println("Failed to load database configuration: " + e.getMessage());
@@ -47,14 +84,137 @@ public class DBUtil {
         }
     }
 
+    private static ConnectionPool createPool() {
+        Properties connProps = new Properties();
+        connProps.setProperty("user", user != null ? user : "");
+        connProps.setProperty("password", password != null ? password : "");
+        // Server-side statements stay parsed on MySQL for as long as the cached statement lives
+        connProps.setProperty("useServerPrepStmts", String.valueOf(useServerPrepStmts));
+        if (useCursorFetch && !useServerPrepStmts) {
+            // Connector/J needs server-side statements for cursor fetch and turns them on regardless
+            System.err.println("db.useServerPrepStmts=false is ignored while db.useCursorFetch=true");
+        }
+        // Statements with a positive fetch size read through a server-side cursor instead of buffering all rows
+        connProps.setProperty("useCursorFetch", String.valueOf(useCursorFetch));
+        // Send a JDBC batch of inserts as multi-row INSERT statements
+        connProps.setProperty("rewriteBatchedStatements", String.valueOf(rewriteBatchedStatements));
+        if (allowBulkLoad && (BULK_LOAD_DIR.isDirectory() || BULK_LOAD_DIR.mkdirs())) {
+            // Unlike allowLoadLocalInfile, this keeps the server from requesting files outside the staging dir
+            connProps.setProperty("allowLoadLocalInfileInPath", BULK_LOAD_DIR.getAbsolutePath());
+        }
+        return new ConnectionPool(url, connProps, minPoolSize, maxPoolSize,
+                connectionTimeoutMs, leakDetectionThresholdMs, statementCacheSize);
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    private static long longProperty(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
     /**
-     * 获取数据库连接
+     * 获取数据库连接（从连接池借用，close() 即归还）
      */
     public static Connection getConnection() throws SQLException {
         if (!initialized) {
             throw new SQLException("Database not initialized properly");
         }
-        return DriverManager.getConnection(url, user, password);
+        return pool.getConnection();
+    }
+
+    /**
+     * 连接池的最大连接数
+     */
+    public static int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * 查询结果缓存的容量上限（字节，0 表示不缓存）
+     */
+    public static long getQueryCacheMaxBytes() {
+        return Math.max(0, queryCacheMaxKb) * 1024;
+    }
+
+    /**
+     * 风险重算任务每个事务更新的行数
+     */
+    public static int getRescoreChunkSize() {
+        return Math.max(1, rescoreChunkSize);
+    }
+
+    /**
+     * 风险重算任务每秒最多更新的行数（0 表示不限速）
+     */
+    public static int getRescoreRowsPerSecond() {
+        return Math.max(0, rescoreRowsPerSecond);
+    }
+
+    /**
+     * 流式查询每批读取的行数
+     */
+    public static int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    /**
+     * 批量导入暂存文件目录（LOAD DATA LOCAL INFILE 只允许读取此目录）
+     */
+    public static File getBulkLoadDir() {
+        return BULK_LOAD_DIR;
+    }
+
+    /**
+     * 获取连接池数据源
+     */
+    public static ConnectionPool getDataSource() {
+        return pool;
+    }
+
+    /**
+     * 获取连接池运行指标
+     */
+    public static PoolStats getPoolStats() {
+        ConnectionPool current = pool;
+        return current != null ? current.getStats() : null;
+    }
+
+    /**
+     * 取消指定线程上正在执行的SQL（用于中止被新请求取代的后台查询）
+     */
+    public static boolean cancelStatement(Thread thread) {
+        ConnectionPool current = pool;
+        return current != null && current.cancelStatement(thread);
+    }
+
+    /**
+     * 关闭连接池
+     */
+    public static void shutdown() {
+        ConnectionPool current = pool;
+        if (current != null && !current.isClosed()) {
+            current.close();
+        }
     }
 
     /**
@@ -87,10 +247,17 @@ public class DBUtil {
     /**
      * 更新数据库配置（用于运行时修改）
      */
-    public static void updateConfig(String newUrl, String newUser, String newPassword) {
+    public static synchronized void updateConfig(String newUrl, String newUser, String newPassword) {
         url = newUrl;
         user = newUser;
         password = newPassword;
+
+        // Rebuild the pool so new connections use the new settings
+        ConnectionPool old = pool;
+        pool = createPool();
+        if (old != null) {
+            old.close();
+        }
     }
 
     public static String getUrl() {
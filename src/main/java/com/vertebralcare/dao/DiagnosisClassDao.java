@@ -1,5 +1,6 @@
 package com.vertebralcare.dao;
 
+import com.vertebralcare.dao.QueryCache.Table;
 import com.vertebralcare.model.DiagnosisClass;
 
 import java.sql.*;
@@ -59,8 +60,8 @@ public class DiagnosisClassDao {
         List<DiagnosisClass> list = new ArrayList<>();
 
         try (Connection conn = DBUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
                 list.add(mapRow(rs));
@@ -70,22 +71,29 @@ public class DiagnosisClassDao {
     }
 
     /**
-     * 根据CSV中的类别标签获取class_id
-     * "Normal" -> NO的class_id
-     * "Abnormal" -> AB的class_id
+     * 插入诊断类别
+     * @return 生成的 class_id
      */
-    public int getClassIdByLabel(String label) throws SQLException {
-        String code;
-        if ("Normal".equalsIgnoreCase(label)) {
-            code = "NO";
-        } else if ("Abnormal".equalsIgnoreCase(label)) {
-            code = "AB";
-        } else {
-            code = "AB"; // Default to Abnormal
-        }
+    public int insert(DiagnosisClass dc) throws SQLException {
+        String sql = "INSERT INTO DiagnosisClass (code, description) VALUES (?, ?)";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            ps.setString(1, dc.getCode());
+            ps.setString(2, dc.getDescription());
+            ps.executeUpdate();
+            QueryCache.bump(Table.DIAGNOSIS_CLASS);
 
-        DiagnosisClass dc = findByCode(code);
-        return dc != null ? dc.getClassId() : -1;
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    int id = rs.getInt(1);
+                    dc.setClassId(id);
+                    return id;
+                }
+            }
+        }
+        return -1;
     }
 
     /**
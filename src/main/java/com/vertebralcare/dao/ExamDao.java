@@ -2,6 +2,8 @@ package com.vertebralcare.dao;
 
 import com.vertebralcare.model.Exam;
 
+import com.vertebralcare.dao.QueryCache.Table;
+
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -13,65 +15,78 @@ import java.util.Map;
  */
 public class ExamDao {
 
+    private static final String INSERT_SQL = "INSERT INTO Exam (patient_id, exam_date, pelvic_incidence, pelvic_tilt, " +
+            "lumbar_lordosis_angle, sacral_slope, pelvic_radius, degree_spondylolisthesis, " +
+            "class_id, notes, risk_score, model_version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Shared by every query that maps rows with mapRowWithJoin
+    private static final String SELECT_WITH_JOIN =
+            "SELECT e.*, p.name as patient_name, d.code as diagnosis_code, d.description as diagnosis_desc " +
+            "FROM Exam e " +
+            "JOIN Patient p ON e.patient_id = p.patient_id " +
+            "JOIN DiagnosisClass d ON e.class_id = d.class_id ";
+
+    // Rows strictly after (exam_date, exam_id) in DESC order; the leading <= keeps it a range scan on exam_date
+    private static final String KEYSET_CONDITION =
+            "e.exam_date <= ? AND (e.exam_date < ? OR e.exam_id < ?) ";
+
+    // Same for paging by stored risk, (risk_score DESC, exam_id DESC)
+    private static final String RISK_KEYSET_CONDITION =
+            "e.risk_score <= ? AND (e.risk_score < ? OR e.exam_id < ?) ";
+
+    private final ExamRollupDao rollupDao = new ExamRollupDao();
+
     /**
-     * 新增检查记录
+     * 新增检查记录（与时间汇总在同一事务中更新）
      * @return 新增记录的ID
      */
     public int insert(Exam exam) throws SQLException {
-        String sql = "INSERT INTO Exam (patient_id, exam_date, pelvic_incidence, pelvic_tilt, " +
-                "lumbar_lordosis_angle, sacral_slope, pelvic_radius, degree_spondylolisthesis, " +
-                "class_id, notes) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DBUtil.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            ps.setInt(1, exam.getPatientId());
-            ps.setDate(2, exam.getExamDate());
-            ps.setDouble(3, exam.getPelvicIncidence());
-            ps.setDouble(4, exam.getPelvicTilt());
-            ps.setDouble(5, exam.getLumbarLordosisAngle());
-            ps.setDouble(6, exam.getSacralSlope());
-            ps.setDouble(7, exam.getPelvicRadius());
-            ps.setDouble(8, exam.getDegreeSpondylolisthesis());
-            ps.setInt(9, exam.getClassId());
-            ps.setString(10, exam.getNotes());
+        int id;
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            id = insert(conn, exam);
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        QueryCache.bump(Table.EXAM);
+        return id;
+    }
 
+    /**
+     * 在调用方的事务中新增检查记录并计入时间汇总（不提交）
+     * 提交后需调用 QueryCache.bump(Table.EXAM)
+     * @return 新增记录的ID
+     */
+    public int insert(Connection conn, Exam exam) throws SQLException {
+        int id = -1;
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            setInsertParams(ps, exam);
             ps.executeUpdate();
 
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
-                    return rs.getInt(1);
+                    id = rs.getInt(1);
                 }
             }
         }
-        return -1;
+        if (id > 0) {
+            rollupDao.addExam(conn, id);
+        }
+        return id;
     }
 
     /**
      * 批量插入检查记录
      */
     public int batchInsert(List<Exam> exams) throws SQLException {
-        String sql = "INSERT INTO Exam (patient_id, exam_date, pelvic_incidence, pelvic_tilt, " +
-                "lumbar_lordosis_angle, sacral_slope, pelvic_radius, degree_spondylolisthesis, " +
-                "class_id, notes) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
         int count = 0;
         try (Connection conn = DBUtil.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
             conn.setAutoCommit(false);
 
             for (Exam exam : exams) {
-                ps.setInt(1, exam.getPatientId());
-                ps.setDate(2, exam.getExamDate());
-                ps.setDouble(3, exam.getPelvicIncidence());
-                ps.setDouble(4, exam.getPelvicTilt());
-                ps.setDouble(5, exam.getLumbarLordosisAngle());
-                ps.setDouble(6, exam.getSacralSlope());
-                ps.setDouble(7, exam.getPelvicRadius());
-                ps.setDouble(8, exam.getDegreeSpondylolisthesis());
-                ps.setInt(9, exam.getClassId());
-                ps.setString(10, exam.getNotes());
+                setInsertParams(ps, exam);
                 ps.addBatch();
                 count++;
 
@@ -80,23 +95,53 @@ public class ExamDao {
                 }
             }
             ps.executeBatch();
+            rollupDao.addExams(conn, exams);
             conn.commit();
             conn.setAutoCommit(true);
+            QueryCache.bump(Table.EXAM);
         }
         return count;
     }
 
     /**
-     * 更新检查记录
+     * 在调用方的连接和事务中批量插入检查记录（不提交），并回填生成的ID
+     * 调用方须在同一事务中用 ExamRollupDao.addExams() 计入时间汇总，提交后需调用 QueryCache.bump(Table.EXAM)
+     * @return 插入的记录数
+     */
+    public int batchInsert(Connection conn, List<Exam> exams) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (Exam exam : exams) {
+                setInsertParams(ps, exam);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            int i = 0;
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                while (rs.next() && i < exams.size()) {
+                    exams.get(i++).setExamId(rs.getInt(1));
+                }
+            }
+            if (i != exams.size()) {
+                throw new SQLException("Expected " + exams.size() + " generated exam IDs, got " + i);
+            }
+        }
+        return exams.size();
+    }
+
+    /**
+     * 更新检查记录（与时间汇总在同一事务中更新）
      */
     public boolean update(Exam exam) throws SQLException {
         String sql = "UPDATE Exam SET patient_id=?, exam_date=?, pelvic_incidence=?, pelvic_tilt=?, " +
                 "lumbar_lordosis_angle=?, sacral_slope=?, pelvic_radius=?, degree_spondylolisthesis=?, " +
-                "class_id=?, notes=? WHERE exam_id=?";
+                "class_id=?, notes=?, risk_score=?, model_version=? WHERE exam_id=?";
 
         try (Connection conn = DBUtil.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
+            conn.setAutoCommit(false);
+            rollupDao.removeExam(conn, exam.getExamId());
             ps.setInt(1, exam.getPatientId());
             ps.setDate(2, exam.getExamDate());
             ps.setDouble(3, exam.getPelvicIncidence());
@@ -107,14 +152,20 @@ public class ExamDao {
             ps.setDouble(8, exam.getDegreeSpondylolisthesis());
             ps.setInt(9, exam.getClassId());
             ps.setString(10, exam.getNotes());
-            ps.setInt(11, exam.getExamId());
+            setRiskParams(ps, 11, exam);
+            ps.setInt(13, exam.getExamId());
 
-            return ps.executeUpdate() > 0;
+            boolean updated = ps.executeUpdate() > 0;
+            rollupDao.addExam(conn, exam.getExamId());
+            conn.commit();
+            conn.setAutoCommit(true);
+            QueryCache.bump(Table.EXAM);
+            return updated;
         }
     }
 
     /**
-     * 删除检查记录
+     * 删除检查记录（与时间汇总在同一事务中更新）
      */
     public boolean delete(int examId) throws SQLException {
         String sql = "DELETE FROM Exam WHERE exam_id=?";
@@ -122,8 +173,14 @@ public class ExamDao {
         try (Connection conn = DBUtil.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
+            conn.setAutoCommit(false);
+            rollupDao.removeExam(conn, examId);
             ps.setInt(1, examId);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            conn.commit();
+            conn.setAutoCommit(true);
+            QueryCache.bump(Table.EXAM);
+            return deleted;
         }
     }
 
@@ -131,11 +188,7 @@ public class ExamDao {
      * 根据ID查询
      */
     public Exam findById(int examId) throws SQLException {
-        String sql = "SELECT e.*, p.name as patient_name, d.code as diagnosis_code, d.description as diagnosis_desc " +
-                "FROM Exam e " +
-                "JOIN Patient p ON e.patient_id = p.patient_id " +
-                "JOIN DiagnosisClass d ON e.class_id = d.class_id " +
-                "WHERE e.exam_id=?";
+        String sql = SELECT_WITH_JOIN + "WHERE e.exam_id=?";
 
         try (Connection conn = DBUtil.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -155,10 +208,7 @@ public class ExamDao {
      * 根据病人ID查询所有检查记录
      */
     public List<Exam> findByPatientId(int patientId) throws SQLException {
-        String sql = "SELECT e.*, p.name as patient_name, d.code as diagnosis_code, d.description as diagnosis_desc " +
-                "FROM Exam e " +
-                "JOIN Patient p ON e.patient_id = p.patient_id " +
-                "JOIN DiagnosisClass d ON e.class_id = d.class_id " +
+        String sql = SELECT_WITH_JOIN +
                 "WHERE e.patient_id=? " +
                 "ORDER BY e.exam_date DESC";
 
@@ -182,17 +232,13 @@ public class ExamDao {
      * 查询所有检查记录
      */
     public List<Exam> findAll() throws SQLException {
-        String sql = "SELECT e.*, p.name as patient_name, d.code as diagnosis_code, d.description as diagnosis_desc " +
-                "FROM Exam e " +
-                "JOIN Patient p ON e.patient_id = p.patient_id " +
-                "JOIN DiagnosisClass d ON e.class_id = d.class_id " +
-                "ORDER BY e.exam_date DESC, e.exam_id DESC";
+        String sql = SELECT_WITH_JOIN + "ORDER BY e.exam_date DESC, e.exam_id DESC";
 
         List<Exam> list = new ArrayList<>();
 
         try (Connection conn = DBUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
                 list.add(mapRowWithJoin(rs));
@@ -201,14 +247,255 @@ public class ExamDao {
         return list;
     }
 
+    /**
+     * 键集分页查询检查记录（按 exam_date DESC, exam_id DESC）
+     * 从上一页最后一条记录之后开始读取，走索引定位，与页码无关
+     * @param afterExamDate 上一页最后一条的检查日期，首页传 null
+     * @param afterExamId 上一页最后一条的ID，首页传 null
+     */
+    public List<Exam> findPage(Date afterExamDate, Integer afterExamId, int pageSize) throws SQLException {
+        String sql = SELECT_WITH_JOIN +
+                (afterExamId != null ? "WHERE " + KEYSET_CONDITION : "") +
+                "ORDER BY e.exam_date DESC, e.exam_id DESC LIMIT ?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int idx = 1;
+            if (afterExamId != null) {
+                idx = setKeysetParams(ps, idx, afterExamDate, afterExamId);
+            }
+            ps.setInt(idx, pageSize);
+            return mapAll(ps);
+        }
+    }
+
+    /**
+     * 按诊断类别键集分页查询检查记录
+     * @see #findPage(Date, Integer, int)
+     */
+    public List<Exam> findPageByClassId(int classId, Date afterExamDate, Integer afterExamId, int pageSize)
+            throws SQLException {
+        String sql = SELECT_WITH_JOIN +
+                "WHERE e.class_id=? " +
+                (afterExamId != null ? "AND " + KEYSET_CONDITION : "") +
+                "ORDER BY e.exam_date DESC, e.exam_id DESC LIMIT ?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int idx = 1;
+            ps.setInt(idx++, classId);
+            if (afterExamId != null) {
+                idx = setKeysetParams(ps, idx, afterExamDate, afterExamId);
+            }
+            ps.setInt(idx, pageSize);
+            return mapAll(ps);
+        }
+    }
+
+    /**
+     * 按分页顺序读取检查记录的排序键（只扫描索引，不回表）
+     * @param classId 诊断类别过滤，null 表示全部
+     */
+    public ExamKeys findSortKeys(Integer classId) throws SQLException {
+        String sql = "SELECT exam_date, exam_id FROM Exam " +
+                (classId != null ? "WHERE class_id=? " : "") +
+                "ORDER BY exam_date DESC, exam_id DESC";
+        ExamKeys keys = new ExamKeys();
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            if (classId != null) {
+                ps.setInt(1, classId);
+            }
+            ps.setFetchSize(DBUtil.getStreamFetchSize());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getInt(2), rs.getDate(1).toLocalDate());
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 按风险键集分页查询已打分的检查记录（按 risk_score DESC, exam_id DESC）
+     * @param classId 诊断类别过滤，null 表示全部
+     * @param minRisk 只返回 risk_score 不低于此值的记录
+     * @param afterRisk 上一页最后一条的风险分数，首页传 null
+     * @param afterExamId 上一页最后一条的ID，首页传 null
+     */
+    public List<Exam> findPageByRisk(Integer classId, double minRisk, Double afterRisk, Integer afterExamId,
+                                     int pageSize) throws SQLException {
+        String sql = SELECT_WITH_JOIN +
+                "WHERE e.risk_score >= ? " +
+                (classId != null ? "AND e.class_id=? " : "") +
+                (afterExamId != null ? "AND " + RISK_KEYSET_CONDITION : "") +
+                "ORDER BY e.risk_score DESC, e.exam_id DESC LIMIT ?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int idx = 1;
+            ps.setDouble(idx++, minRisk);
+            if (classId != null) {
+                ps.setInt(idx++, classId);
+            }
+            if (afterExamId != null) {
+                ps.setDouble(idx++, afterRisk);
+                ps.setDouble(idx++, afterRisk);
+                ps.setInt(idx++, afterExamId);
+            }
+            ps.setInt(idx, pageSize);
+            return mapAll(ps);
+        }
+    }
+
+    /**
+     * 按风险分页顺序读取已打分记录的排序键（只扫描 idx_risk 索引）
+     * @param classId 诊断类别过滤，null 表示全部
+     * @param minRisk 只包含 risk_score 不低于此值的记录
+     */
+    public ExamKeys findRiskSortKeys(Integer classId, double minRisk) throws SQLException {
+        String sql = "SELECT risk_score, exam_id FROM Exam WHERE risk_score >= ? " +
+                (classId != null ? "AND class_id=? " : "") +
+                "ORDER BY risk_score DESC, exam_id DESC";
+        ExamKeys keys = new ExamKeys(minRisk);
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setDouble(1, minRisk);
+            if (classId != null) {
+                ps.setInt(2, classId);
+            }
+            ps.setFetchSize(DBUtil.getStreamFetchSize());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getInt(2), rs.getDouble(1));
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 按 exam_id 顺序读取下一段需要重新打分的记录的指标（分数不是由 modelVersion 计算的记录）
+     * @param afterExamId 从此ID之后开始
+     * @param examIds 输出：各行的 exam_id，长度即最多读取的行数
+     * @param columns 输出：按列存放的6个指标，columns[indicator][row]
+     * @return 读取的行数，0 表示已到末尾
+     */
+    public int findStaleRiskChunk(int afterExamId, String modelVersion, int[] examIds, double[][] columns)
+            throws SQLException {
+        String sql = "SELECT exam_id, pelvic_incidence, pelvic_tilt, lumbar_lordosis_angle, sacral_slope, " +
+                "pelvic_radius, degree_spondylolisthesis FROM Exam " +
+                "WHERE exam_id > ? AND (model_version IS NULL OR model_version <> ?) " +
+                "ORDER BY exam_id LIMIT ?";
+        int count = 0;
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, afterExamId);
+            ps.setString(2, modelVersion);
+            ps.setInt(3, examIds.length);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    examIds[count] = rs.getInt(1);
+                    for (int i = 0; i < columns.length; i++) {
+                        columns[i][count] = rs.getDouble(i + 2);
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 统计 exam_id 之后需要用 modelVersion 重新打分的记录数
+     */
+    public int countStaleRisk(int afterExamId, String modelVersion) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM Exam WHERE exam_id > ? AND (model_version IS NULL OR model_version <> ?)";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, afterExamId);
+            ps.setString(2, modelVersion);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * 在调用方的事务中批量写入风险分数（不提交），提交后需调用 QueryCache.bump(Table.EXAM)
+     * 期间已按 modelVersion 重新保存（修改后打分）的记录保持不变
+     * @param count 写入 examIds 和 scores 的前 count 项
+     * @return 实际更新的行数（期间被删除或修改的记录不计）
+     */
+    public int updateRiskScores(Connection conn, int[] examIds, double[] scores, int count, String modelVersion)
+            throws SQLException {
+        String sql = "UPDATE Exam SET risk_score=?, model_version=? " +
+                "WHERE exam_id=? AND (model_version IS NULL OR model_version <> ?)";
+        int updated = 0;
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < count; i++) {
+                ps.setDouble(1, scores[i]);
+                ps.setString(2, modelVersion);
+                ps.setInt(3, examIds[i]);
+                ps.setString(4, modelVersion);
+                ps.addBatch();
+            }
+            for (int rows : ps.executeBatch()) {
+                // Rewritten batches report SUCCESS_NO_INFO rather than a row count
+                updated += rows == Statement.SUCCESS_NO_INFO ? 1 : rows;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * 流式遍历所有检查记录（按 exam_id 顺序）
+     * 使用服务端游标分批读取，内存占用与表大小无关
+     * @param handler 逐行回调，返回 false 时提前终止并关闭游标
+     * @return 已处理的行数
+     */
+    public int streamAll(RowHandler<Exam> handler) throws SQLException {
+        String sql = SELECT_WITH_JOIN + "ORDER BY e.exam_id";
+        int count = 0;
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setFetchSize(DBUtil.getStreamFetchSize());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    count++;
+                    if (!handler.handle(mapRowWithJoin(rs))) {
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      * 按诊断类别查询
      */
     public List<Exam> findByClassId(int classId) throws SQLException {
-        String sql = "SELECT e.*, p.name as patient_name, d.code as diagnosis_code, d.description as diagnosis_desc " +
-                "FROM Exam e " +
-                "JOIN Patient p ON e.patient_id = p.patient_id " +
-                "JOIN DiagnosisClass d ON e.class_id = d.class_id " +
+        String sql = SELECT_WITH_JOIN +
                 "WHERE e.class_id=? " +
                 "ORDER BY e.exam_date DESC";
 
@@ -232,11 +519,16 @@ public class ExamDao {
      * 获取检查记录总数
      */
     public int count() throws SQLException {
+        return QueryCache.getInstance().get("exam.count", result -> 64L,
+                this::queryCount, Table.EXAM);
+    }
+
+    private int queryCount() throws SQLException {
         String sql = "SELECT COUNT(*) FROM Exam";
 
         try (Connection conn = DBUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             if (rs.next()) {
                 return rs.getInt(1);
@@ -259,8 +551,8 @@ public class ExamDao {
         Map<String, Integer> result = new HashMap<>();
 
         try (Connection conn = DBUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
                 result.put(rs.getString("description"), rs.getInt("cnt"));
@@ -287,8 +579,8 @@ public class ExamDao {
         Map<String, double[]> result = new HashMap<>();
 
         try (Connection conn = DBUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
                 double[] avgs = new double[6];
@@ -304,6 +596,113 @@ public class ExamDao {
         return result;
     }
 
+    /**
+     * 按类别计算各指标的样本数、均值和总体方差（用于初始化内存中的统计汇总）
+     * @return Map<class_id, double[13]>：[0] 数量，[1..6] 6个指标的均值，[7..12] 6个指标的总体方差
+     */
+    public Map<Integer, double[]> getMomentsByClass() throws SQLException {
+        String sql = "SELECT class_id, COUNT(*), " +
+                "AVG(pelvic_incidence), AVG(pelvic_tilt), AVG(lumbar_lordosis_angle), " +
+                "AVG(sacral_slope), AVG(pelvic_radius), AVG(degree_spondylolisthesis), " +
+                "VAR_POP(pelvic_incidence), VAR_POP(pelvic_tilt), VAR_POP(lumbar_lordosis_angle), " +
+                "VAR_POP(sacral_slope), VAR_POP(pelvic_radius), VAR_POP(degree_spondylolisthesis) " +
+                "FROM Exam GROUP BY class_id";
+
+        Map<Integer, double[]> result = new HashMap<>();
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                double[] moments = new double[13];
+                for (int i = 0; i < moments.length; i++) {
+                    moments[i] = rs.getDouble(i + 2);
+                }
+                result.put(rs.getInt(1), moments);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 流式读取所有检查记录的分析字段（不关联其他表，不构造 Exam 对象，用于加载列式存储）
+     * @param handler 逐行回调，参数为 double[10]：[0] exam_id，[1] patient_id，[2] class_id，
+     *                [3] 检查日期（epoch day），[4..9] 6个指标；数组在各行间复用
+     * @return 已处理的行数
+     */
+    public int streamColumns(RowHandler<double[]> handler) throws SQLException {
+        String sql = "SELECT exam_id, patient_id, class_id, exam_date, pelvic_incidence, pelvic_tilt, " +
+                "lumbar_lordosis_angle, sacral_slope, pelvic_radius, degree_spondylolisthesis " +
+                "FROM Exam ORDER BY exam_id";
+        double[] row = new double[10];
+        int count = 0;
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setFetchSize(DBUtil.getStreamFetchSize());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    row[0] = rs.getInt(1);
+                    row[1] = rs.getInt(2);
+                    row[2] = rs.getInt(3);
+                    row[3] = rs.getDate(4).toLocalDate().toEpochDay();
+                    for (int i = 4; i < row.length; i++) {
+                        row[i] = rs.getDouble(i + 1);
+                    }
+                    count++;
+                    if (!handler.handle(row)) {
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private void setInsertParams(PreparedStatement ps, Exam exam) throws SQLException {
+        ps.setInt(1, exam.getPatientId());
+        ps.setDate(2, exam.getExamDate());
+        ps.setDouble(3, exam.getPelvicIncidence());
+        ps.setDouble(4, exam.getPelvicTilt());
+        ps.setDouble(5, exam.getLumbarLordosisAngle());
+        ps.setDouble(6, exam.getSacralSlope());
+        ps.setDouble(7, exam.getPelvicRadius());
+        ps.setDouble(8, exam.getDegreeSpondylolisthesis());
+        ps.setInt(9, exam.getClassId());
+        ps.setString(10, exam.getNotes());
+        setRiskParams(ps, 11, exam);
+    }
+
+    private void setRiskParams(PreparedStatement ps, int idx, Exam exam) throws SQLException {
+        if (exam.getRiskScore() != null) {
+            ps.setDouble(idx, exam.getRiskScore());
+        } else {
+            ps.setNull(idx, Types.DOUBLE);
+        }
+        ps.setString(idx + 1, exam.getModelVersion());
+    }
+
+    private int setKeysetParams(PreparedStatement ps, int idx, Date afterExamDate, int afterExamId)
+            throws SQLException {
+        ps.setDate(idx++, afterExamDate);
+        ps.setDate(idx++, afterExamDate);
+        ps.setInt(idx++, afterExamId);
+        return idx;
+    }
+
+    private List<Exam> mapAll(PreparedStatement ps) throws SQLException {
+        List<Exam> list = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(mapRowWithJoin(rs));
+            }
+        }
+        return list;
+    }
+
     /**
      * 映射结果集行到Exam对象（包含关联表字段）
      */
@@ -321,6 +720,9 @@ public class ExamDao {
         exam.setClassId(rs.getInt("class_id"));
         exam.setNotes(rs.getString("notes"));
         exam.setCreatedAt(rs.getTimestamp("created_at"));
+        double riskScore = rs.getDouble("risk_score");
+        exam.setRiskScore(rs.wasNull() ? null : riskScore);
+        exam.setModelVersion(rs.getString("model_version"));
 
         // Joined fields
         exam.setPatientName(rs.getString("patient_name"));
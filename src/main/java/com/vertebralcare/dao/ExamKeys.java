@@ -0,0 +1,81 @@
+package com.vertebralcare.dao;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * 检查记录排序键索引
+ * 按 exam_date DESC, exam_id DESC 顺序保存每行的 (exam_date, exam_id)，每行只占 8 字节；
+ * 或按 risk_score DESC, exam_id DESC 顺序保存 (risk_score, exam_id)，每行 12 字节。
+ * 用于从任意行号构造键集分页的起点
+ */
+public class ExamKeys {
+    private int[] examIds;
+    private int[] epochDays;
+    private double[] riskScores;
+    private final double minRisk;
+    private int size;
+
+    ExamKeys() {
+        this.examIds = new int[1024];
+        this.epochDays = new int[1024];
+        this.minRisk = Double.NaN;
+    }
+
+    ExamKeys(double minRisk) {
+        this.examIds = new int[1024];
+        this.riskScores = new double[1024];
+        this.minRisk = minRisk;
+    }
+
+    void add(int examId, LocalDate examDate) {
+        if (size == examIds.length) {
+            examIds = Arrays.copyOf(examIds, size * 2);
+            epochDays = Arrays.copyOf(epochDays, size * 2);
+        }
+        examIds[size] = examId;
+        epochDays[size] = (int) examDate.toEpochDay();
+        size++;
+    }
+
+    void add(int examId, double riskScore) {
+        if (size == examIds.length) {
+            examIds = Arrays.copyOf(examIds, size * 2);
+            riskScores = Arrays.copyOf(riskScores, size * 2);
+        }
+        examIds[size] = examId;
+        riskScores[size] = riskScore;
+        size++;
+    }
+
+    /**
+     * 是否按风险分数排序
+     */
+    public boolean isRiskOrder() {
+        return riskScores != null;
+    }
+
+    /**
+     * 按风险排序时的最低风险过滤条件
+     */
+    public double getMinRisk() {
+        return minRisk;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getExamId(int index) {
+        return examIds[index];
+    }
+
+    public Date getExamDate(int index) {
+        return Date.valueOf(LocalDate.ofEpochDay(epochDays[index]));
+    }
+
+    public double getRiskScore(int index) {
+        return riskScores[index];
+    }
+}
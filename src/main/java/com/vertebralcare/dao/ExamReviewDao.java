@@ -0,0 +1,147 @@
+package com.vertebralcare.dao;
+
+import com.vertebralcare.model.ExamReview;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 待复核检查记录数据访问对象
+ * 检查记录删除时其复核记录由外键级联删除
+ */
+public class ExamReviewDao {
+
+    private static final String SELECT_WITH_JOIN =
+            "SELECT r.*, p.name AS patient_name, e.exam_date, d.description AS diagnosis_desc " +
+            "FROM ExamReview r " +
+            "JOIN Exam e ON r.exam_id = e.exam_id " +
+            "JOIN Patient p ON e.patient_id = p.patient_id " +
+            "JOIN DiagnosisClass d ON e.class_id = d.class_id ";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ExamReview (exam_id, distance, indicator_index, indicator_value, z_score) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * 添加一条待复核记录
+     */
+    public void insert(ExamReview review) throws SQLException {
+        try (Connection conn = DBUtil.getConnection()) {
+            insert(conn, Collections.singletonList(review));
+        }
+    }
+
+    /**
+     * 在调用方的事务中批量添加待复核记录（不提交）
+     */
+    public void insert(Connection conn, List<ExamReview> reviews) throws SQLException {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (ExamReview review : reviews) {
+                ps.setInt(1, review.getExamId());
+                ps.setDouble(2, review.getDistance());
+                ps.setInt(3, review.getIndicator());
+                ps.setDouble(4, review.getIndicatorValue());
+                ps.setDouble(5, review.getZScore());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * 根据检查记录ID查询复核记录，没有时返回 null
+     */
+    public ExamReview findByExamId(int examId) throws SQLException {
+        String sql = SELECT_WITH_JOIN +
+                "WHERE r.exam_id=?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, examId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * 查询待复核的记录，按马氏距离由大到小
+     * @param limit 最多返回的条数
+     */
+    public List<ExamReview> findPending(int limit) throws SQLException {
+        String sql = SELECT_WITH_JOIN +
+                "WHERE r.reviewed_at IS NULL " +
+                "ORDER BY r.distance DESC LIMIT ?";
+        List<ExamReview> list = new ArrayList<>();
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 待复核的记录数
+     */
+    public int countPending() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM ExamReview WHERE reviewed_at IS NULL";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 标记为已复核
+     */
+    public boolean markReviewed(int examId) throws SQLException {
+        String sql = "UPDATE ExamReview SET reviewed_at=CURRENT_TIMESTAMP WHERE exam_id=? AND reviewed_at IS NULL";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, examId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * 映射结果集行到ExamReview对象（包含关联表字段）
+     */
+    private ExamReview mapRow(ResultSet rs) throws SQLException {
+        ExamReview review = new ExamReview();
+        review.setExamId(rs.getInt("exam_id"));
+        review.setDistance(rs.getDouble("distance"));
+        review.setIndicator(rs.getInt("indicator_index"));
+        review.setIndicatorValue(rs.getDouble("indicator_value"));
+        review.setZScore(rs.getDouble("z_score"));
+        review.setFlaggedAt(rs.getTimestamp("flagged_at"));
+        review.setReviewedAt(rs.getTimestamp("reviewed_at"));
+
+        // Joined fields
+        review.setPatientName(rs.getString("patient_name"));
+        review.setExamDate(rs.getDate("exam_date"));
+        review.setDiagnosisDescription(rs.getString("diagnosis_desc"));
+        return review;
+    }
+}
@@ -0,0 +1,208 @@
+package com.vertebralcare.dao;
+
+import com.vertebralcare.dao.QueryCache.Table;
+import com.vertebralcare.model.Exam;
+import com.vertebralcare.model.ExamRollup;
+import com.vertebralcare.model.ExamRollup.Period;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 检查记录时间汇总数据访问对象
+ * ExamRollup 按月、按周和诊断类别保存检查数量与指标之和，由检查记录的每次增删改在同一事务中增减，
+ * 趋势查询只读汇总行而不扫描 Exam。周以周一为起点。
+ *
+ * 写方法均在调用方的事务中执行（不提交）；删除或修改前的旧值须在修改 Exam 之前扣除。
+ */
+public class ExamRollupDao {
+
+    private static final String COLUMNS =
+            "period_type, period_start, class_id, exam_count, sum_pelvic_incidence, sum_pelvic_tilt, " +
+            "sum_lumbar_lordosis_angle, sum_sacral_slope, sum_pelvic_radius, sum_degree_spondylolisthesis";
+
+    private static final String ON_DUPLICATE_ADD =
+            "ON DUPLICATE KEY UPDATE exam_count = exam_count + VALUES(exam_count), " +
+            "sum_pelvic_incidence = sum_pelvic_incidence + VALUES(sum_pelvic_incidence), " +
+            "sum_pelvic_tilt = sum_pelvic_tilt + VALUES(sum_pelvic_tilt), " +
+            "sum_lumbar_lordosis_angle = sum_lumbar_lordosis_angle + VALUES(sum_lumbar_lordosis_angle), " +
+            "sum_sacral_slope = sum_sacral_slope + VALUES(sum_sacral_slope), " +
+            "sum_pelvic_radius = sum_pelvic_radius + VALUES(sum_pelvic_radius), " +
+            "sum_degree_spondylolisthesis = sum_degree_spondylolisthesis + VALUES(sum_degree_spondylolisthesis)";
+
+    // Adds ? * (count, sums) of the Exam rows matching the appended condition, for both periods.
+    // ORDER BY keeps the rollup rows locked in the same order by every transaction.
+    private static final String APPLY_EXISTING_SQL =
+            "INSERT INTO ExamRollup (" + COLUMNS + ") " +
+            "SELECT p.period_type, " +
+            "CASE p.period_type WHEN 'M' THEN DATE_FORMAT(e.exam_date, '%Y-%m-01') " +
+            "ELSE DATE_SUB(e.exam_date, INTERVAL WEEKDAY(e.exam_date) DAY) END AS period_start, " +
+            "e.class_id, ? * COUNT(*), ? * SUM(e.pelvic_incidence), ? * SUM(e.pelvic_tilt), " +
+            "? * SUM(e.lumbar_lordosis_angle), ? * SUM(e.sacral_slope), ? * SUM(e.pelvic_radius), " +
+            "? * SUM(e.degree_spondylolisthesis) " +
+            "FROM Exam e CROSS JOIN (SELECT 'M' AS period_type UNION ALL SELECT 'W') p " +
+            "WHERE {condition} " +
+            "GROUP BY p.period_type, period_start, e.class_id " +
+            "ORDER BY p.period_type, period_start, e.class_id " +
+            ON_DUPLICATE_ADD;
+
+    /**
+     * 把一条已写入的检查记录计入汇总
+     */
+    public void addExam(Connection conn, int examId) throws SQLException {
+        applyExisting(conn, "e.exam_id = ?", 1, examId);
+    }
+
+    /**
+     * 从汇总中扣除一条检查记录（在修改或删除该记录之前调用）
+     */
+    public void removeExam(Connection conn, int examId) throws SQLException {
+        applyExisting(conn, "e.exam_id = ?", -1, examId);
+    }
+
+    /**
+     * 从汇总中扣除某病人的全部检查记录（在删除病人、级联删除检查之前调用）
+     */
+    public void removePatient(Connection conn, int patientId) throws SQLException {
+        applyExisting(conn, "e.patient_id = ?", -1, patientId);
+    }
+
+    /**
+     * 把一批新写入的检查记录计入汇总：先在内存中按周期和类别合并，再批量更新
+     */
+    public void addExams(Connection conn, List<Exam> exams) throws SQLException {
+        if (exams.isEmpty()) {
+            return;
+        }
+        // Sorted keys lock rollup rows in the same order as every other writer, avoiding deadlocks
+        Map<String, ExamRollup> deltas = new TreeMap<>();
+        for (Exam exam : exams) {
+            LocalDate date = exam.getExamDate().toLocalDate();
+            accumulate(deltas, Period.MONTH, date.withDayOfMonth(1), exam);
+            accumulate(deltas, Period.WEEK, date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)), exam);
+        }
+
+        String sql = "INSERT INTO ExamRollup (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                ON_DUPLICATE_ADD;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (ExamRollup delta : deltas.values()) {
+                ps.setString(1, delta.getPeriod().getCode());
+                ps.setDate(2, delta.getPeriodStart());
+                ps.setInt(3, delta.getClassId());
+                ps.setInt(4, delta.getExamCount());
+                for (int i = 0; i < 6; i++) {
+                    ps.setDouble(5 + i, delta.getSum(i));
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * 查询某种周期的全部汇总行（按周期起点、类别排序，结果经查询缓存共享，只读）
+     */
+    public List<ExamRollup> findByPeriod(Period period) throws SQLException {
+        return QueryCache.getInstance().get("rollup.findByPeriod:" + period.getCode(),
+                list -> 64 + list.size() * 160L, () -> queryByPeriod(period), Table.EXAM, Table.DIAGNOSIS_CLASS);
+    }
+
+    private List<ExamRollup> queryByPeriod(Period period) throws SQLException {
+        String sql = "SELECT r.*, d.description FROM ExamRollup r " +
+                "JOIN DiagnosisClass d ON r.class_id = d.class_id " +
+                "WHERE r.period_type = ? AND r.exam_count > 0 " +
+                "ORDER BY r.period_start, r.class_id";
+        List<ExamRollup> list = new ArrayList<>();
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, period.getCode());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs, period));
+                }
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 由 Exam 全表重新计算汇总（汇总表新建时由 SchemaMigrator 调用）
+     */
+    public void rebuild() throws SQLException {
+        try (Connection conn = DBUtil.getConnection();
+             Statement st = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            st.executeUpdate("DELETE FROM ExamRollup");
+            applyExisting(conn, "1 = 1", 1);
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        QueryCache.bump(Table.EXAM);
+    }
+
+    private void applyExisting(Connection conn, String condition, int sign, int... params) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(APPLY_EXISTING_SQL.replace("{condition}", condition))) {
+            int idx = 1;
+            for (int i = 0; i < 7; i++) {
+                ps.setInt(idx++, sign);
+            }
+            for (int param : params) {
+                ps.setInt(idx++, param);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static void accumulate(Map<String, ExamRollup> deltas, Period period, LocalDate start, Exam exam) {
+        String key = period.getCode() + start + "#" + String.format("%010d", exam.getClassId());
+        ExamRollup delta = deltas.get(key);
+        if (delta == null) {
+            delta = new ExamRollup();
+            delta.setPeriod(period);
+            delta.setPeriodStart(Date.valueOf(start));
+            delta.setClassId(exam.getClassId());
+            deltas.put(key, delta);
+        }
+        delta.setExamCount(delta.getExamCount() + 1);
+        delta.setSum(0, delta.getSum(0) + exam.getPelvicIncidence());
+        delta.setSum(1, delta.getSum(1) + exam.getPelvicTilt());
+        delta.setSum(2, delta.getSum(2) + exam.getLumbarLordosisAngle());
+        delta.setSum(3, delta.getSum(3) + exam.getSacralSlope());
+        delta.setSum(4, delta.getSum(4) + exam.getPelvicRadius());
+        delta.setSum(5, delta.getSum(5) + exam.getDegreeSpondylolisthesis());
+    }
+
+    /**
+     * 映射结果集行到ExamRollup对象
+     */
+    private ExamRollup mapRow(ResultSet rs, Period period) throws SQLException {
+        ExamRollup rollup = new ExamRollup();
+        rollup.setPeriod(period);
+        rollup.setPeriodStart(rs.getDate("period_start"));
+        rollup.setClassId(rs.getInt("class_id"));
+        rollup.setExamCount(rs.getInt("exam_count"));
+        rollup.setSum(0, rs.getDouble("sum_pelvic_incidence"));
+        rollup.setSum(1, rs.getDouble("sum_pelvic_tilt"));
+        rollup.setSum(2, rs.getDouble("sum_lumbar_lordosis_angle"));
+        rollup.setSum(3, rs.getDouble("sum_sacral_slope"));
+        rollup.setSum(4, rs.getDouble("sum_pelvic_radius"));
+        rollup.setSum(5, rs.getDouble("sum_degree_spondylolisthesis"));
+        rollup.setDiagnosisDescription(rs.getString("description"));
+        return rollup;
+    }
+}
@@ -0,0 +1,85 @@
+package com.vertebralcare.dao;
+
+import com.vertebralcare.model.ImportCheckpoint;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 导入检查点数据访问对象
+ * 检查点与导入块的数据在同一事务中写入，因此已记录的块必然已完整提交
+ */
+public class ImportCheckpointDao {
+
+    /**
+     * 在调用方的事务中记录一个已导入的块（不提交）
+     */
+    public void insert(Connection conn, ImportCheckpoint checkpoint) throws SQLException {
+        String sql = "INSERT INTO ImportCheckpoint (file_key, chunk_no, start_offset, end_offset, next_line, rows_imported) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, checkpoint.getFileKey());
+            ps.setInt(2, checkpoint.getChunkNo());
+            ps.setLong(3, checkpoint.getStartOffset());
+            ps.setLong(4, checkpoint.getEndOffset());
+            ps.setLong(5, checkpoint.getNextLine());
+            ps.setInt(6, checkpoint.getRowsImported());
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 查询文件的全部检查点，按起始偏移排序
+     */
+    public List<ImportCheckpoint> findByFileKey(String fileKey) throws SQLException {
+        String sql = "SELECT * FROM ImportCheckpoint WHERE file_key=? ORDER BY start_offset, chunk_no";
+        List<ImportCheckpoint> list = new ArrayList<>();
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, fileKey);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 删除文件的全部检查点（下次导入将从头开始）
+     */
+    public int deleteByFileKey(String fileKey) throws SQLException {
+        String sql = "DELETE FROM ImportCheckpoint WHERE file_key=?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, fileKey);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 映射结果集行到ImportCheckpoint对象
+     */
+    private ImportCheckpoint mapRow(ResultSet rs) throws SQLException {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.setFileKey(rs.getString("file_key"));
+        checkpoint.setChunkNo(rs.getInt("chunk_no"));
+        checkpoint.setStartOffset(rs.getLong("start_offset"));
+        checkpoint.setEndOffset(rs.getLong("end_offset"));
+        checkpoint.setNextLine(rs.getLong("next_line"));
+        checkpoint.setRowsImported(rs.getInt("rows_imported"));
+        checkpoint.setCommittedAt(rs.getTimestamp("committed_at"));
+        return checkpoint;
+    }
+}
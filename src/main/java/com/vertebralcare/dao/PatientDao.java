@@ -1,9 +1,11 @@
 package com.vertebralcare.dao;
 
+import com.vertebralcare.dao.QueryCache.Table;
 import com.vertebralcare.model.Patient;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -11,15 +13,17 @@ import java.util.List;
  */
 public class PatientDao {
 
+    private final ExamRollupDao rollupDao = new ExamRollupDao();
+
+    private static final String INSERT_SQL = "INSERT INTO Patient (name, gender, birth_date, phone) VALUES (?, ?, ?, ?)";
+
     /**
      * 新增病人
      * @return 新增病人的ID
      */
     public int insert(Patient patient) throws SQLException {
-        String sql = "INSERT INTO Patient (name, gender, birth_date, phone) VALUES (?, ?, ?, ?)";
-
         try (Connection conn = DBUtil.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, patient.getName());
             ps.setString(2, patient.getGender());
@@ -27,6 +31,7 @@ public class PatientDao {
             ps.setString(4, patient.getPhone());
 
             ps.executeUpdate();
+            QueryCache.bump(Table.PATIENT);
 
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
@@ -37,6 +42,33 @@ public class PatientDao {
         return -1;
     }
 
+    /**
+     * 在调用方的连接和事务中批量插入病人（不提交），并回填生成的ID
+     * 调用方提交后需调用 QueryCache.bump(Table.PATIENT)
+     */
+    public void batchInsert(Connection conn, List<Patient> patients) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (Patient patient : patients) {
+                ps.setString(1, patient.getName());
+                ps.setString(2, patient.getGender());
+                ps.setDate(3, patient.getBirthDate());
+                ps.setString(4, patient.getPhone());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            int i = 0;
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                while (rs.next() && i < patients.size()) {
+                    patients.get(i++).setPatientId(rs.getInt(1));
+                }
+            }
+            if (i != patients.size()) {
+                throw new SQLException("Expected " + patients.size() + " generated patient IDs, got " + i);
+            }
+        }
+    }
+
     /**
      * 更新病人信息
      */
@@ -52,12 +84,15 @@ public class PatientDao {
             ps.setString(4, patient.getPhone());
             ps.setInt(5, patient.getPatientId());
 
-            return ps.executeUpdate() > 0;
+            boolean updated = ps.executeUpdate() > 0;
+            // Exam queries return the joined patient name
+            QueryCache.bump(Table.PATIENT);
+            return updated;
         }
     }
 
     /**
-     * 删除病人
+     * 删除病人（检查记录随之级联删除，并在同一事务中从时间汇总中扣除）
      */
     public boolean delete(int patientId) throws SQLException {
         String sql = "DELETE FROM Patient WHERE patient_id=?";
@@ -65,8 +100,14 @@ public class PatientDao {
         try (Connection conn = DBUtil.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
+            conn.setAutoCommit(false);
+            rollupDao.removePatient(conn, patientId);
             ps.setInt(1, patientId);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            conn.commit();
+            conn.setAutoCommit(true);
+            QueryCache.bump(Table.PATIENT, Table.EXAM);
+            return deleted;
         }
     }
 
@@ -119,8 +160,8 @@ public class PatientDao {
         List<Patient> list = new ArrayList<>();
 
         try (Connection conn = DBUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
                 list.add(mapRow(rs));
@@ -129,15 +170,72 @@ public class PatientDao {
         return list;
     }
 
+    /**
+     * 键集分页查询病人（按 patient_id DESC）
+     * @param afterPatientId 上一页最后一条的ID，首页传 null
+     */
+    public List<Patient> findPage(Integer afterPatientId, int pageSize) throws SQLException {
+        String sql = "SELECT * FROM Patient " +
+                (afterPatientId != null ? "WHERE patient_id < ? " : "") +
+                "ORDER BY patient_id DESC LIMIT ?";
+        List<Patient> list = new ArrayList<>();
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int idx = 1;
+            if (afterPatientId != null) {
+                ps.setInt(idx++, afterPatientId);
+            }
+            ps.setInt(idx, pageSize);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 按分页顺序（patient_id DESC）读取全部病人ID
+     */
+    public int[] findAllIds() throws SQLException {
+        String sql = "SELECT patient_id FROM Patient ORDER BY patient_id DESC";
+        int[] ids = new int[1024];
+        int size = 0;
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setFetchSize(DBUtil.getStreamFetchSize());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size * 2);
+                    }
+                    ids[size++] = rs.getInt(1);
+                }
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
     /**
      * 获取病人总数
      */
     public int count() throws SQLException {
+        return QueryCache.getInstance().get("patient.count", result -> 64L, this::queryCount, Table.PATIENT);
+    }
+
+    private int queryCount() throws SQLException {
         String sql = "SELECT COUNT(*) FROM Patient";
 
         try (Connection conn = DBUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             if (rs.next()) {
                 return rs.getInt(1);
@@ -0,0 +1,113 @@
+package com.vertebralcare.dao;
+
+/**
+ * 连接池运行指标快照
+ */
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int maxSize;
+    private final int waiting;
+    private final long borrowCount;
+    private final double avgWaitMillis;
+    private final double maxWaitMillis;
+    private final long timeoutCount;
+    private final long leakCount;
+    private final long createdCount;
+    private final long destroyedCount;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    public PoolStats(int active, int idle, int maxSize, int waiting, long borrowCount,
+                     double avgWaitMillis, double maxWaitMillis, long timeoutCount,
+                     long leakCount, long createdCount, long destroyedCount,
+                     long statementCacheHits, long statementCacheMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.maxSize = maxSize;
+        this.waiting = waiting;
+        this.borrowCount = borrowCount;
+        this.avgWaitMillis = avgWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.timeoutCount = timeoutCount;
+        this.leakCount = leakCount;
+        this.createdCount = createdCount;
+        this.destroyedCount = destroyedCount;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getTotal() {
+        return active + idle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** 正在等待连接的线程数 */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public double getAvgWaitMillis() {
+        return avgWaitMillis;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    /** 语句缓存命中率（0~1） */
+    public double getStatementCacheHitRatio() {
+        long lookups = statementCacheHits + statementCacheMisses;
+        return lookups == 0 ? 0.0 : (double) statementCacheHits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pool{active=%d, idle=%d, max=%d, waiting=%d, borrows=%d, " +
+                        "avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, leaks=%d, created=%d, destroyed=%d, " +
+                        "stmtCache=%d/%d hits (%.1f%%)}",
+                active, idle, maxSize, waiting, borrowCount, avgWaitMillis, maxWaitMillis,
+                timeoutCount, leakCount, createdCount, destroyedCount,
+                statementCacheHits, statementCacheHits + statementCacheMisses,
+                getStatementCacheHitRatio() * 100);
+    }
+}
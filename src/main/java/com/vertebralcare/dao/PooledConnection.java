@@ -0,0 +1,225 @@
+package com.vertebralcare.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 池化的物理连接
+ * 每次借出生成一个新的 Connection 代理，代理的 close() 把物理连接归还给连接池
+ */
+final class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection raw;
+    private final StatementCache statementCache;
+
+    private volatile long leasedAt;
+    private volatile long lastReturnedAt;
+    private volatile Throwable leaseTrace;
+    private volatile boolean leakReported;
+    private volatile boolean broken;
+
+    PooledConnection(ConnectionPool pool, Connection raw, int statementCacheSize) {
+        this.pool = pool;
+        this.raw = raw;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize, pool) : null;
+    }
+
+    /**
+     * 借出连接，返回本次借用专属的代理
+     */
+    Connection lease(boolean captureTrace) {
+        leasedAt = System.currentTimeMillis();
+        leakReported = false;
+        leaseTrace = captureTrace ? new Throwable("Connection borrowed here") : null;
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Lease());
+    }
+
+    /**
+     * 归还前恢复连接状态
+     * @return 连接是否可以继续复用
+     */
+    boolean reset() {
+        leaseTrace = null;
+        if (broken) {
+            return false;
+        }
+        try {
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            if (raw.isReadOnly()) {
+                raw.setReadOnly(false);
+            }
+            raw.clearWarnings();
+            markReturned();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void markReturned() {
+        lastReturnedAt = System.currentTimeMillis();
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return raw.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 检查借出时间是否超过阈值（每次借用只报告一次）
+     */
+    boolean checkLeak(long now, long thresholdMs) {
+        if (!leakReported && now - leasedAt > thresholdMs) {
+            leakReported = true;
+            return true;
+        }
+        return false;
+    }
+
+    void closeQuietly() {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        DBUtil.close(raw);
+    }
+
+    long getLeasedAt() {
+        return leasedAt;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    Throwable getLeaseTrace() {
+        return leaseTrace;
+    }
+
+    private Object track(Statement statement, Class<?> type, Object owner) {
+        return Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{type},
+                new ExecutionTracker(statement, (Connection) owner));
+    }
+
+    /**
+     * 语句代理：执行期间在连接池登记，供其他线程取消
+     */
+    private class ExecutionTracker implements InvocationHandler {
+        private final Statement statement;
+        private final Connection owner;
+
+        ExecutionTracker(Statement statement, Connection owner) {
+            this.statement = statement;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            boolean executing = method.getName().startsWith("execute");
+            if (executing) {
+                pool.beginExecute(statement);
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (executing) {
+                    pool.endExecute();
+                }
+            }
+        }
+    }
+
+    /**
+     * 单次借用的连接代理
+     */
+    private class Lease implements InvocationHandler {
+        private boolean closed = false;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + raw + (closed ? ", closed]" : "]");
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (statementCache != null && "prepareStatement".equals(method.getName())) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return track(statementCache.prepare(raw, (Connection) proxy, (String) args[0],
+                            Statement.NO_GENERATED_KEYS), PreparedStatement.class, proxy);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return track(statementCache.prepare(raw, (Connection) proxy, (String) args[0], (Integer) args[1]),
+                            PreparedStatement.class, proxy);
+                }
+            }
+
+            try {
+                Object result = method.invoke(raw, args);
+                // Every statement handed out is tracked, cached or not, so DBUtil.cancelStatement can reach it
+                if (result instanceof Statement) {
+                    return track((Statement) result, method.getReturnType(), proxy);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    // SQLSTATE class 08 = connection exception, never hand this connection out again
+                    if (state != null && state.startsWith("08")) {
+                        broken = true;
+                    }
+                }
+                throw cause;
+            }
+        }
+    }
+}
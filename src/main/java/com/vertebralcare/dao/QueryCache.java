@@ -0,0 +1,179 @@
+package com.vertebralcare.dao;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 查询结果缓存（进程内共享）
+ * 以查询名和参数为键缓存整条查询的结果，并记录查询开始时所依赖各表的版本号；
+ * DAO 的每次增删改都会递增对应表的版本号，版本不一致的结果在下次读取时重新计算。
+ * 缓存按结果的估算字节数限制总大小，超出时淘汰最久未使用的结果。
+ *
+ * 缓存的结果由多个调用方共享，必须是只读的。
+ */
+public final class QueryCache {
+
+    /**
+     * 参与版本控制的表
+     */
+    public enum Table {
+        PATIENT, EXAM, DIAGNOSIS_CLASS
+    }
+
+    /**
+     * 执行查询
+     */
+    @FunctionalInterface
+    public interface Query<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * 估算结果占用的字节数
+     */
+    @FunctionalInterface
+    public interface Weigher<T> {
+        long weigh(T result);
+    }
+
+    private static final AtomicLongArray VERSIONS = new AtomicLongArray(Table.values().length);
+
+    private static final QueryCache INSTANCE = new QueryCache(DBUtil.getQueryCacheMaxBytes());
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    // Metrics, guarded by this
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    QueryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static QueryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 递增表的版本号，使依赖这些表的缓存结果失效
+     * 必须在修改提交之后调用：提交前递增会让并发读取把旧数据记在新版本下
+     */
+    public static void bump(Table... tables) {
+        for (Table table : tables) {
+            VERSIONS.incrementAndGet(table.ordinal());
+        }
+    }
+
+    /**
+     * 表版本号之和，任一表被修改（并调用 bump）后都会变大
+     * 界面据此判断数据是否变化，而不必重新查询
+     */
+    public static long versionOf(Table... tables) {
+        long sum = 0;
+        for (Table table : tables) {
+            sum += VERSIONS.get(table.ordinal());
+        }
+        return sum;
+    }
+
+    /**
+     * 读取缓存结果；不存在或所依赖的表已被修改时执行查询并缓存
+     * @param key 查询名和参数，如 "exam.findByClassId:2"
+     * @param dependsOn 查询读取的所有表
+     */
+    public <T> T get(String key, Weigher<? super T> weigher, Query<T> query, Table... dependsOn)
+            throws SQLException {
+        // Versions are read before the query runs, so a write committed meanwhile makes the result stale
+        long[] versions = versionsOf(dependsOn);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && Arrays.equals(entry.versions, versions)) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.value;
+                return value;
+            }
+            misses++;
+        }
+
+        T value = query.run();
+        long weight = weigher.weigh(value);
+        if (maxBytes > 0 && weight <= maxBytes) {
+            synchronized (this) {
+                Entry old = entries.get(key);
+                // Don't replace a result computed against newer data by a slower concurrent query
+                if (old == null || isOlder(old.versions, versions)) {
+                    if (old != null) {
+                        entries.remove(key);
+                        bytes -= old.weight;
+                    }
+                    entries.put(key, new Entry(value, versions, weight));
+                    bytes += weight;
+                    evict();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        return String.format("Query cache: %d results, %d/%d KB, hit ratio %.0f%% (%d hits, %d misses), %d evictions",
+                entries.size(), (bytes + 1023) / 1024, maxBytes / 1024,
+                total == 0 ? 0.0 : hits * 100.0 / total, hits, misses, evictions);
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().weight;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static long[] versionsOf(Table[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            versions[i] = VERSIONS.get(tables[i].ordinal());
+        }
+        return versions;
+    }
+
+    private static boolean isOlder(long[] cached, long[] candidate) {
+        for (int i = 0; i < cached.length; i++) {
+            if (cached[i] > candidate[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long[] versions;
+        final long weight;
+
+        Entry(Object value, long[] versions, long weight) {
+            this.value = value;
+            this.versions = versions;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.vertebralcare.dao;
+
+import com.vertebralcare.model.RiskModelVersion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 风险模型版本数据访问对象
+ * 重算进度与该块的分数在同一事务中写入，因此 rescored_through 之前的记录必然已用该版本打分
+ */
+public class RiskModelVersionDao {
+
+    /**
+     * 保存一个新训练的模型
+     */
+    public void insert(RiskModelVersion version) throws SQLException {
+        String sql = "INSERT INTO RiskModelVersion (model_version, parameters, training_rows, training_positives, " +
+                "training_accuracy, training_log_loss, iterations, trained_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, version.getModelVersion());
+            ps.setString(2, version.getParameters());
+            ps.setLong(3, version.getTrainingRows());
+            ps.setLong(4, version.getTrainingPositives());
+            ps.setDouble(5, version.getTrainingAccuracy());
+            ps.setDouble(6, version.getTrainingLogLoss());
+            ps.setInt(7, version.getIterations());
+            ps.setTimestamp(8, version.getTrainedAt());
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 查询最近训练的模型，没有时返回 null
+     */
+    public RiskModelVersion findLatest() throws SQLException {
+        String sql = "SELECT * FROM RiskModelVersion ORDER BY trained_at DESC, model_version DESC LIMIT 1";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            return rs.next() ? mapRow(rs) : null;
+        }
+    }
+
+    /**
+     * 根据版本查询模型
+     */
+    public RiskModelVersion findByVersion(String modelVersion) throws SQLException {
+        String sql = "SELECT * FROM RiskModelVersion WHERE model_version=?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, modelVersion);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * 在调用方的事务中推进重算进度（不提交）
+     * @param rescoredThrough 本块最后一条记录的 exam_id
+     * @param rows 本块检查过的行数（含无需更新的行）
+     */
+    public void advanceRescore(Connection conn, String modelVersion, int rescoredThrough, int rows)
+            throws SQLException {
+        String sql = "UPDATE RiskModelVersion SET rescored_through=?, rescored_rows=rescored_rows+? " +
+                "WHERE model_version=?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, rescoredThrough);
+            ps.setInt(2, rows);
+            ps.setString(3, modelVersion);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 标记重算完成
+     */
+    public void completeRescore(String modelVersion) throws SQLException {
+        String sql = "UPDATE RiskModelVersion SET rescore_completed_at=CURRENT_TIMESTAMP WHERE model_version=?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, modelVersion);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 清除重算进度（下次重算将从头开始，只更新分数版本不一致的记录）
+     */
+    public void restartRescore(String modelVersion) throws SQLException {
+        String sql = "UPDATE RiskModelVersion SET rescored_through=0, rescored_rows=0, rescore_completed_at=NULL " +
+                "WHERE model_version=?";
+
+        try (Connection conn = DBUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setString(1, modelVersion);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 映射结果集行到RiskModelVersion对象
+     */
+    private RiskModelVersion mapRow(ResultSet rs) throws SQLException {
+        RiskModelVersion version = new RiskModelVersion();
+        version.setModelVersion(rs.getString("model_version"));
+        version.setParameters(rs.getString("parameters"));
+        version.setTrainingRows(rs.getLong("training_rows"));
+        version.setTrainingPositives(rs.getLong("training_positives"));
+        version.setTrainingAccuracy(rs.getDouble("training_accuracy"));
+        version.setTrainingLogLoss(rs.getDouble("training_log_loss"));
+        version.setIterations(rs.getInt("iterations"));
+        version.setTrainedAt(rs.getTimestamp("trained_at"));
+        version.setRescoredThrough(rs.getInt("rescored_through"));
+        version.setRescoredRows(rs.getLong("rescored_rows"));
+        version.setRescoreCompletedAt(rs.getTimestamp("rescore_completed_at"));
+        return version;
+    }
+}
@@ -0,0 +1,16 @@
+package com.vertebralcare.dao;
+
+import java.sql.SQLException;
+
+/**
+ * 流式查询的逐行回调
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+    /**
+     * 处理一行数据
+     * @return true 继续读取，false 提前终止遍历
+     */
+    boolean handle(T row) throws SQLException;
+}
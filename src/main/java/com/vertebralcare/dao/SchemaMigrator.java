@@ -0,0 +1,123 @@
+package com.vertebralcare.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 数据库结构升级
+ * 程序启动时（打开界面、开启任何事务之前）调用一次，为由旧版 init.sql 创建的数据库补建之后新增的表和列；
+ * 各数据访问对象不再逐次检查表结构。修改表结构要等待该表上所有未提交的事务，因此不能放在事务中执行。
+ */
+public final class SchemaMigrator {
+
+    // Definitions below are the same as in init.sql, so databases created before a table existed keep working
+    private static final String CREATE_ROLLUP_SQL =
+            "CREATE TABLE ExamRollup (" +
+            "period_type CHAR(1) NOT NULL, " +
+            "period_start DATE NOT NULL, " +
+            "class_id INT NOT NULL, " +
+            "exam_count INT NOT NULL, " +
+            "sum_pelvic_incidence DOUBLE NOT NULL, " +
+            "sum_pelvic_tilt DOUBLE NOT NULL, " +
+            "sum_lumbar_lordosis_angle DOUBLE NOT NULL, " +
+            "sum_sacral_slope DOUBLE NOT NULL, " +
+            "sum_pelvic_radius DOUBLE NOT NULL, " +
+            "sum_degree_spondylolisthesis DOUBLE NOT NULL, " +
+            "PRIMARY KEY (period_type, period_start, class_id)" +
+            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+
+    private static final String CREATE_REVIEW_SQL =
+            "CREATE TABLE IF NOT EXISTS ExamReview (" +
+            "exam_id INT PRIMARY KEY, " +
+            "distance DOUBLE NOT NULL, " +
+            "indicator_index TINYINT NOT NULL, " +
+            "indicator_value DOUBLE NOT NULL, " +
+            "z_score DOUBLE NOT NULL, " +
+            "flagged_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "reviewed_at TIMESTAMP NULL, " +
+            "INDEX idx_reviewed_at (reviewed_at), " +
+            "CONSTRAINT fk_review_exam FOREIGN KEY (exam_id) REFERENCES Exam(exam_id) " +
+            "ON DELETE CASCADE ON UPDATE CASCADE" +
+            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+
+    private static final String CREATE_CHECKPOINT_SQL =
+            "CREATE TABLE IF NOT EXISTS ImportCheckpoint (" +
+            "file_key VARCHAR(100) NOT NULL, " +
+            "chunk_no INT NOT NULL, " +
+            "start_offset BIGINT NOT NULL, " +
+            "end_offset BIGINT NOT NULL, " +
+            "next_line BIGINT NOT NULL, " +
+            "rows_imported INT NOT NULL, " +
+            "committed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "PRIMARY KEY (file_key, chunk_no)" +
+            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+
+    private static final String CREATE_MODEL_VERSION_SQL =
+            "CREATE TABLE IF NOT EXISTS RiskModelVersion (" +
+            "model_version VARCHAR(32) PRIMARY KEY, " +
+            "parameters VARCHAR(2000) NOT NULL, " +
+            "training_rows BIGINT NOT NULL, " +
+            "training_positives BIGINT NOT NULL, " +
+            "training_accuracy DOUBLE NOT NULL, " +
+            "training_log_loss DOUBLE NOT NULL, " +
+            "iterations INT NOT NULL, " +
+            "trained_at TIMESTAMP NOT NULL, " +
+            "rescored_through INT NOT NULL DEFAULT 0, " +
+            "rescored_rows BIGINT NOT NULL DEFAULT 0, " +
+            "rescore_completed_at TIMESTAMP NULL, " +
+            "INDEX idx_trained_at (trained_at)" +
+            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+
+    private static final String ADD_IMPORT_ROW_SQL =
+            "ALTER TABLE Patient ADD COLUMN import_row BIGINT NULL, ADD UNIQUE KEY uk_import_row (import_row)";
+
+    private static final String ADD_RISK_COLUMNS_SQL =
+            "ALTER TABLE Exam ADD COLUMN risk_score DOUBLE NULL, ADD COLUMN model_version VARCHAR(32) NULL, " +
+            "ADD INDEX idx_risk (risk_score)";
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * 补建缺少的表和列；汇总表是新建的则由现有检查记录填充
+     */
+    public static void migrate() throws SQLException {
+        boolean rollupCreated;
+        try (Connection conn = DBUtil.getConnection();
+             Statement st = conn.createStatement()) {
+
+            if (!columnExists(st, "Patient", "import_row")) {
+                st.execute(ADD_IMPORT_ROW_SQL);
+            }
+            if (!columnExists(st, "Exam", "risk_score")) {
+                st.execute(ADD_RISK_COLUMNS_SQL);
+            }
+            rollupCreated = !tableExists(st, "ExamRollup");
+            if (rollupCreated) {
+                st.execute(CREATE_ROLLUP_SQL);
+            }
+            st.execute(CREATE_REVIEW_SQL);
+            st.execute(CREATE_CHECKPOINT_SQL);
+            st.execute(CREATE_MODEL_VERSION_SQL);
+        }
+        if (rollupCreated) {
+            new ExamRollupDao().rebuild();
+        }
+    }
+
+    private static boolean tableExists(Statement st, String table) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "'")) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private static boolean columnExists(Statement st, String table, String column) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND COLUMN_NAME = '" + column + "'")) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.vertebralcare.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个物理连接上的 PreparedStatement LRU 缓存，按 SQL 文本索引
+ * 调用方 close() 语句时只清空参数并放回缓存，物理语句在被淘汰或连接关闭时才真正关闭
+ */
+final class StatementCache {
+
+    private final int maxSize;
+    private final ConnectionPool pool;
+    private final LinkedHashMap<String, CachedStatement> entries;
+
+    StatementCache(int maxSize, ConnectionPool pool) {
+        this.maxSize = maxSize;
+        this.pool = pool;
+        this.entries = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取得 SQL 对应的语句，命中时复用已解析的物理语句
+     */
+    PreparedStatement prepare(Connection raw, Connection owner, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+        CachedStatement entry = entries.get(key);
+
+        if (entry != null && !entry.inUse) {
+            pool.recordStatementCacheHit(true);
+        } else {
+            pool.recordStatementCacheHit(false);
+            PreparedStatement ps = raw.prepareStatement(sql, autoGeneratedKeys);
+            if (entry != null) {
+                // Same SQL already checked out on this connection (nested use): don't cache the twin
+                return ps;
+            }
+            entry = new CachedStatement(key, ps);
+            entries.put(key, entry);
+        }
+
+        entry.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new StatementLease(entry, owner));
+    }
+
+    /**
+     * 关闭全部缓存语句
+     */
+    void clear() {
+        Iterator<CachedStatement> it = entries.values().iterator();
+        while (it.hasNext()) {
+            it.next().evict();
+            it.remove();
+        }
+    }
+
+    private void checkIn(CachedStatement entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            DBUtil.close(entry.statement);
+            return;
+        }
+        try {
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+            entry.statement.clearWarnings();
+            entry.statement.setFetchSize(0);
+            entry.statement.setMaxRows(0);
+            entry.statement.setQueryTimeout(0);
+        } catch (SQLException e) {
+            entries.remove(entry.key);
+            entry.evict();
+        }
+    }
+
+    private static final class CachedStatement {
+        final String key;
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                DBUtil.close(statement);
+            }
+        }
+    }
+
+    /**
+     * 单次使用的语句代理
+     */
+    private class StatementLease implements InvocationHandler {
+        private final CachedStatement entry;
+        private final Connection owner;
+        private boolean closed = false;
+
+        StatementLease(CachedStatement entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        checkIn(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -24,6 +24,10 @@ public class Exam {
     private String notes;
     private Timestamp createdAt;
 
+    // Stored abnormal probability and the risk model version that computed it (null until scored)
+    private Double riskScore;
+    private String modelVersion;
+
     // Transient fields for display (joined from other tables)
     private String patientName;
     private String diagnosisCode;
@@ -142,6 +146,22 @@ public class Exam {
         this.createdAt = createdAt;
     }
 
+    public Double getRiskScore() {
+        return riskScore;
+    }
+
+    public void setRiskScore(Double riskScore) {
+        this.riskScore = riskScore;
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
     public String getPatientName() {
         return patientName;
     }
@@ -0,0 +1,123 @@
+package com.vertebralcare.model;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+
+/**
+ * 待复核检查记录实体类
+ * 对应数据库表 ExamReview，每条记录表示一条录入或导入时被判为离群的检查记录
+ */
+public class ExamReview {
+    private Integer examId;
+    private double distance;        // 与同类别记录的马氏距离
+    private int indicator;          // 偏离最大的指标（顺序同 StatisticsService.getIndicatorNames）
+    private double indicatorValue;
+    private double zScore;          // 该指标的标准分
+    private Timestamp flaggedAt;
+    private Timestamp reviewedAt;   // 复核时间，null 表示待复核
+
+    // Transient fields for display (joined from other tables)
+    private String patientName;
+    private Date examDate;
+    private String diagnosisDescription;
+
+    public ExamReview() {}
+
+    public ExamReview(double distance, int indicator, double indicatorValue, double zScore) {
+        this.distance = distance;
+        this.indicator = indicator;
+        this.indicatorValue = indicatorValue;
+        this.zScore = zScore;
+    }
+
+    // Getters and Setters
+    public Integer getExamId() {
+        return examId;
+    }
+
+    public void setExamId(Integer examId) {
+        this.examId = examId;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public void setDistance(double distance) {
+        this.distance = distance;
+    }
+
+    public int getIndicator() {
+        return indicator;
+    }
+
+    public void setIndicator(int indicator) {
+        this.indicator = indicator;
+    }
+
+    public double getIndicatorValue() {
+        return indicatorValue;
+    }
+
+    public void setIndicatorValue(double indicatorValue) {
+        this.indicatorValue = indicatorValue;
+    }
+
+    public double getZScore() {
+        return zScore;
+    }
+
+    public void setZScore(double zScore) {
+        this.zScore = zScore;
+    }
+
+    public Timestamp getFlaggedAt() {
+        return flaggedAt;
+    }
+
+    public void setFlaggedAt(Timestamp flaggedAt) {
+        this.flaggedAt = flaggedAt;
+    }
+
+    public Timestamp getReviewedAt() {
+        return reviewedAt;
+    }
+
+    public void setReviewedAt(Timestamp reviewedAt) {
+        this.reviewedAt = reviewedAt;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public void setPatientName(String patientName) {
+        this.patientName = patientName;
+    }
+
+    public Date getExamDate() {
+        return examDate;
+    }
+
+    public void setExamDate(Date examDate) {
+        this.examDate = examDate;
+    }
+
+    public String getDiagnosisDescription() {
+        return diagnosisDescription;
+    }
+
+    public void setDiagnosisDescription(String diagnosisDescription) {
+        this.diagnosisDescription = diagnosisDescription;
+    }
+
+    @Override
+    public String toString() {
+        return "ExamReview{" +
+                "examId=" + examId +
+                ", distance=" + distance +
+                ", indicator=" + indicator +
+                ", zScore=" + zScore +
+                '}';
+    }
+}
@@ -0,0 +1,111 @@
+package com.vertebralcare.model;
+
+import java.sql.Date;
+
+/**
+ * 检查记录时间汇总实体类
+ * 对应数据库表 ExamRollup，每条记录是某诊断类别在某月或某周内的检查数量和6个指标之和
+ */
+public class ExamRollup {
+
+    /**
+     * 汇总周期
+     */
+    public enum Period {
+        MONTH("M", "Monthly"),
+        WEEK("W", "Weekly");
+
+        private final String code;
+        private final String label;
+
+        Period(String code, String label) {
+            this.code = code;
+            this.label = label;
+        }
+
+        /** 数据库中 period_type 列的取值 */
+        public String getCode() {
+            return code;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private Period period;
+    private Date periodStart;       // 月的第一天，或周一
+    private int classId;
+    private int examCount;
+    private double[] sums = new double[6];
+
+    // Joined field
+    private String diagnosisDescription;
+
+    public ExamRollup() {}
+
+    // Getters and Setters
+    public Period getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(Period period) {
+        this.period = period;
+    }
+
+    public Date getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(Date periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public int getClassId() {
+        return classId;
+    }
+
+    public void setClassId(int classId) {
+        this.classId = classId;
+    }
+
+    public int getExamCount() {
+        return examCount;
+    }
+
+    public void setExamCount(int examCount) {
+        this.examCount = examCount;
+    }
+
+    /**
+     * 第 indicator 个指标之和（顺序同 StatisticsService.getIndicatorNames）
+     */
+    public double getSum(int indicator) {
+        return sums[indicator];
+    }
+
+    public void setSum(int indicator, double sum) {
+        sums[indicator] = sum;
+    }
+
+    /**
+     * 第 indicator 个指标在该周期内的平均值
+     */
+    public double getAverage(int indicator) {
+        return examCount == 0 ? Double.NaN : sums[indicator] / examCount;
+    }
+
+    public String getDiagnosisDescription() {
+        return diagnosisDescription;
+    }
+
+    public void setDiagnosisDescription(String diagnosisDescription) {
+        this.diagnosisDescription = diagnosisDescription;
+    }
+
+    @Override
+    public String toString() {
+        return period.getCode() + " " + periodStart + " class " + classId + ": " + examCount + " exams";
+    }
+}
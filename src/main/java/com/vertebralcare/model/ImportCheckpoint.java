@@ -0,0 +1,95 @@
+package com.vertebralcare.model;
+
+import java.sql.Timestamp;
+
+/**
+ * 导入检查点实体类
+ * 对应数据库表 ImportCheckpoint，每条记录表示一个已提交的导入块
+ */
+public class ImportCheckpoint {
+    private String fileKey;
+    private int chunkNo;
+    private long startOffset;   // 块覆盖的文件字节范围 [startOffset, endOffset)
+    private long endOffset;
+    private long nextLine;      // endOffset 处记录的行号
+    private int rowsImported;
+    private Timestamp committedAt;
+
+    public ImportCheckpoint() {}
+
+    public ImportCheckpoint(String fileKey, int chunkNo, long startOffset, long endOffset,
+                            long nextLine, int rowsImported) {
+        this.fileKey = fileKey;
+        this.chunkNo = chunkNo;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.nextLine = nextLine;
+        this.rowsImported = rowsImported;
+    }
+
+    // Getters and Setters
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    public void setFileKey(String fileKey) {
+        this.fileKey = fileKey;
+    }
+
+    public int getChunkNo() {
+        return chunkNo;
+    }
+
+    public void setChunkNo(int chunkNo) {
+        this.chunkNo = chunkNo;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public void setStartOffset(long startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public void setEndOffset(long endOffset) {
+        this.endOffset = endOffset;
+    }
+
+    public long getNextLine() {
+        return nextLine;
+    }
+
+    public void setNextLine(long nextLine) {
+        this.nextLine = nextLine;
+    }
+
+    public int getRowsImported() {
+        return rowsImported;
+    }
+
+    public void setRowsImported(int rowsImported) {
+        this.rowsImported = rowsImported;
+    }
+
+    public Timestamp getCommittedAt() {
+        return committedAt;
+    }
+
+    public void setCommittedAt(Timestamp committedAt) {
+        this.committedAt = committedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportCheckpoint{" +
+                "chunkNo=" + chunkNo +
+                ", bytes=[" + startOffset + ", " + endOffset + ")" +
+                ", rowsImported=" + rowsImported +
+                '}';
+    }
+}
@@ -0,0 +1,127 @@
+package com.vertebralcare.model;
+
+import java.sql.Timestamp;
+
+/**
+ * 风险模型版本实体类
+ * 对应数据库表 RiskModelVersion，保存一个训练好的模型的参数、训练指标，以及用它重算 Exam.risk_score 的进度
+ */
+public class RiskModelVersion {
+    private String modelVersion;
+    private String parameters;          // 序列化的均值、标准差、标准化权重和截距
+    private long trainingRows;
+    private long trainingPositives;
+    private double trainingAccuracy;
+    private double trainingLogLoss;
+    private int iterations;
+    private Timestamp trainedAt;
+
+    private int rescoredThrough;        // 已重算到的最大 exam_id，0 表示尚未开始
+    private long rescoredRows;          // 已检查的行数
+    private Timestamp rescoreCompletedAt; // 重算完成时间，null 表示未完成
+
+    public RiskModelVersion() {}
+
+    // Getters and Setters
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    public long getTrainingRows() {
+        return trainingRows;
+    }
+
+    public void setTrainingRows(long trainingRows) {
+        this.trainingRows = trainingRows;
+    }
+
+    public long getTrainingPositives() {
+        return trainingPositives;
+    }
+
+    public void setTrainingPositives(long trainingPositives) {
+        this.trainingPositives = trainingPositives;
+    }
+
+    public double getTrainingAccuracy() {
+        return trainingAccuracy;
+    }
+
+    public void setTrainingAccuracy(double trainingAccuracy) {
+        this.trainingAccuracy = trainingAccuracy;
+    }
+
+    public double getTrainingLogLoss() {
+        return trainingLogLoss;
+    }
+
+    public void setTrainingLogLoss(double trainingLogLoss) {
+        this.trainingLogLoss = trainingLogLoss;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public Timestamp getTrainedAt() {
+        return trainedAt;
+    }
+
+    public void setTrainedAt(Timestamp trainedAt) {
+        this.trainedAt = trainedAt;
+    }
+
+    public int getRescoredThrough() {
+        return rescoredThrough;
+    }
+
+    public void setRescoredThrough(int rescoredThrough) {
+        this.rescoredThrough = rescoredThrough;
+    }
+
+    public long getRescoredRows() {
+        return rescoredRows;
+    }
+
+    public void setRescoredRows(long rescoredRows) {
+        this.rescoredRows = rescoredRows;
+    }
+
+    public Timestamp getRescoreCompletedAt() {
+        return rescoreCompletedAt;
+    }
+
+    public void setRescoreCompletedAt(Timestamp rescoreCompletedAt) {
+        this.rescoreCompletedAt = rescoreCompletedAt;
+    }
+
+    public boolean isRescoreComplete() {
+        return rescoreCompletedAt != null;
+    }
+
+    @Override
+    public String toString() {
+        return "RiskModelVersion{" +
+                "modelVersion='" + modelVersion + '\'' +
+                ", trainingRows=" + trainingRows +
+                ", rescoredThrough=" + rescoredThrough +
+                ", rescoreComplete=" + isRescoreComplete() +
+                '}';
+    }
+}
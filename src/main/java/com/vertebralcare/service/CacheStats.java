@@ -0,0 +1,66 @@
+package com.vertebralcare.service;
+
+/**
+ * 缓存运行指标快照
+ */
+public class CacheStats {
+    private final String name;
+    private final int size;
+    private final int maxSize;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+
+    public CacheStats(String name, int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /** 因容量上限被淘汰的条目数 */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** 因过期被丢弃的条目数 */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /** 命中率（0~1） */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{size=%d/%d, hits=%d/%d (%.1f%%), evictions=%d, expired=%d}",
+                name, size, maxSize, hits, hits + misses, getHitRatio() * 100, evictions, expirations);
+    }
+}
@@ -0,0 +1,138 @@
+package com.vertebralcare.service;
+
+import java.util.Arrays;
+
+/**
+ * Metrics for binary probability predictions over a subset of rows
+ * Predictions p[row] are probabilities of label 1; labels y[row] are 0 or 1.
+ */
+public final class ClassificationMetrics {
+
+    private static final double EPSILON = 1e-15;
+
+    private ClassificationMetrics() {
+    }
+
+    /**
+     * ROC AUC by the Mann-Whitney statistic: sort positive and negative scores separately, then merge
+     * O(n log n) on primitive arrays; ties between a positive and a negative count one half.
+     * @return NaN if either class is absent
+     */
+    public static double auc(double[] p, byte[] y, int[] rows) {
+        int positives = 0;
+        for (int row : rows) {
+            positives += y[row];
+        }
+        int negatives = rows.length - positives;
+        if (positives == 0 || negatives == 0) {
+            return Double.NaN;
+        }
+        double[] pos = new double[positives];
+        double[] neg = new double[negatives];
+        int ip = 0;
+        int in = 0;
+        for (int row : rows) {
+            if (y[row] == 1) {
+                pos[ip++] = p[row];
+            } else {
+                neg[in++] = p[row];
+            }
+        }
+        Arrays.sort(pos);
+        Arrays.sort(neg);
+
+        // For each run of equal positive scores: negatives strictly below win, equal ones tie
+        double wins = 0;
+        int below = 0;
+        int i = 0;
+        while (i < positives) {
+            double score = pos[i];
+            int run = 1;
+            while (i + run < positives && pos[i + run] == score) {
+                run++;
+            }
+            while (below < negatives && neg[below] < score) {
+                below++;
+            }
+            int equal = 0;
+            while (below + equal < negatives && neg[below + equal] == score) {
+                equal++;
+            }
+            wins += run * (below + 0.5 * equal);
+            i += run;
+        }
+        return wins / ((double) positives * negatives);
+    }
+
+    /**
+     * Share of rows where p >= threshold agrees with the label
+     */
+    public static double accuracy(double[] p, byte[] y, int[] rows, double threshold) {
+        long correct = 0;
+        for (int row : rows) {
+            if ((p[row] >= threshold) == (y[row] == 1)) {
+                correct++;
+            }
+        }
+        return rows.length == 0 ? Double.NaN : (double) correct / rows.length;
+    }
+
+    /**
+     * Mean negative log likelihood, with probabilities clipped away from 0 and 1
+     */
+    public static double logLoss(double[] p, byte[] y, int[] rows) {
+        double sum = 0;
+        for (int row : rows) {
+            double q = Math.min(Math.max(p[row], EPSILON), 1 - EPSILON);
+            sum -= y[row] == 1 ? Math.log(q) : Math.log(1 - q);
+        }
+        return rows.length == 0 ? Double.NaN : sum / rows.length;
+    }
+
+    /**
+     * Mean squared error of the probabilities
+     */
+    public static double brier(double[] p, byte[] y, int[] rows) {
+        double sum = 0;
+        for (int row : rows) {
+            double diff = p[row] - y[row];
+            sum += diff * diff;
+        }
+        return rows.length == 0 ? Double.NaN : sum / rows.length;
+    }
+
+    /**
+     * Reliability table over equal-width probability bins
+     * @return [bin][0] row count, [bin][1] mean predicted probability, [bin][2] observed share of label 1
+     */
+    public static double[][] calibration(double[] p, byte[] y, int[] rows, int bins) {
+        double[][] table = new double[bins][3];
+        for (int row : rows) {
+            int bin = Math.min((int) (p[row] * bins), bins - 1);
+            table[bin][0]++;
+            table[bin][1] += p[row];
+            table[bin][2] += y[row];
+        }
+        for (double[] bin : table) {
+            if (bin[0] > 0) {
+                bin[1] /= bin[0];
+                bin[2] /= bin[0];
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Expected calibration error: count-weighted mean gap between predicted and observed rates
+     * @param calibration table from {@link #calibration}
+     */
+    public static double expectedCalibrationError(double[][] calibration) {
+        double total = 0;
+        double gap = 0;
+        for (double[] bin : calibration) {
+            total += bin[0];
+            gap += bin[0] * Math.abs(bin[1] - bin[2]);
+        }
+        return total == 0 ? Double.NaN : gap / total;
+    }
+}
@@ -0,0 +1,210 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.dao.ExamDao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Stratified k-fold cross-validation of the logistic risk model over an L2 grid
+ * Every (grid point, fold) pair is an independent fork/join task: it fits on the other folds and writes
+ * its held-out predictions into that grid point's out-of-fold array (folds own disjoint rows). Each fit
+ * also forks its own row passes, so small grids still use all workers. Metrics are computed once all
+ * folds of a grid point are in.
+ *
+ * The data set is loaded once with a single streaming query into primitive column arrays.
+ */
+public final class CrossValidation {
+
+    public static final double[] DEFAULT_GRID = {0.01, 0.1, 1, 10, 100};
+    public static final int CALIBRATION_BINS = 10;
+
+    private CrossValidation() {
+    }
+
+    /**
+     * Column-major indicators and 0/1 labels (1 = any class other than the normal one)
+     */
+    public static final class Dataset {
+        final double[][] x;
+        final byte[] y;
+        final int size;
+
+        Dataset(double[][] x, byte[] y, int size) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long positives() {
+            long positives = 0;
+            for (int row = 0; row < size; row++) {
+                positives += y[row];
+            }
+            return positives;
+        }
+    }
+
+    /**
+     * Read every exam with one streaming query
+     */
+    public static Dataset load(ExamDao examDao, int normalClassId) throws SQLException {
+        int dims = ExamAggregates.INDICATORS;
+        int[] size = {0};
+        double[][][] x = {new double[dims][1024]};
+        byte[][] y = {new byte[1024]};
+        examDao.streamColumns(row -> {
+            int n = size[0];
+            if (n == y[0].length) {
+                y[0] = Arrays.copyOf(y[0], n * 2);
+                for (int d = 0; d < dims; d++) {
+                    x[0][d] = Arrays.copyOf(x[0][d], n * 2);
+                }
+            }
+            for (int d = 0; d < dims; d++) {
+                x[0][d][n] = row[4 + d];
+            }
+            y[0][n] = (int) row[2] == normalClassId ? (byte) 0 : (byte) 1;
+            size[0] = n + 1;
+            return true;
+        });
+        return new Dataset(x[0], y[0], size[0]);
+    }
+
+    /**
+     * Stratified fold of every row: positives and negatives are shuffled separately and dealt round-robin
+     */
+    static byte[] assignFolds(byte[] y, int size, int folds, long seed) {
+        Random random = new Random(seed);
+        byte[] fold = new byte[size];
+        int[] next = {0, 0};
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        for (int row : order) {
+            int label = y[row];
+            fold[row] = (byte) next[label];
+            next[label] = (next[label] + 1) % folds;
+        }
+        return fold;
+    }
+
+    /**
+     * Run k-fold cross-validation for every L2 value in the grid
+     */
+    public static CrossValidationReport run(Dataset data, int folds, double[] grid, long seed, ForkJoinPool pool) {
+        if (folds < 2 || folds > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Fold count must be between 2 and " + Byte.MAX_VALUE);
+        }
+        if (grid.length == 0) {
+            throw new IllegalArgumentException("Empty hyperparameter grid");
+        }
+        long start = System.nanoTime();
+
+        byte[] fold = assignFolds(data.y, data.size, folds, seed);
+        int[][] trainRows = new int[folds][];
+        int[][] testRows = new int[folds][];
+        int[] testCount = new int[folds];
+        for (int row = 0; row < data.size; row++) {
+            testCount[fold[row]]++;
+        }
+        for (int f = 0; f < folds; f++) {
+            testRows[f] = new int[testCount[f]];
+            trainRows[f] = new int[data.size - testCount[f]];
+        }
+        int[] testFill = new int[folds];
+        int[] trainFill = new int[folds];
+        for (int row = 0; row < data.size; row++) {
+            for (int f = 0; f < folds; f++) {
+                if (fold[row] == f) {
+                    testRows[f][testFill[f]++] = row;
+                } else {
+                    trainRows[f][trainFill[f]++] = row;
+                }
+            }
+        }
+        int[] allRows = new int[data.size];
+        for (int row = 0; row < data.size; row++) {
+            allRows[row] = row;
+        }
+
+        double[][] outOfFold = new double[grid.length][data.size];
+        double[][] foldAuc = new double[grid.length][folds];
+        List<FoldTask> tasks = new ArrayList<>();
+        for (int g = 0; g < grid.length; g++) {
+            for (int f = 0; f < folds; f++) {
+                tasks.add(new FoldTask(data, grid[g], trainRows[f], testRows[f], outOfFold[g], pool));
+            }
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+                return null;
+            }
+        });
+        for (int g = 0; g < grid.length; g++) {
+            for (int f = 0; f < folds; f++) {
+                foldAuc[g][f] = tasks.get(g * folds + f).join();
+            }
+        }
+
+        List<CrossValidationReport.GridPoint> points = new ArrayList<>();
+        for (int g = 0; g < grid.length; g++) {
+            double[] p = outOfFold[g];
+            points.add(new CrossValidationReport.GridPoint(grid[g], foldAuc[g],
+                    ClassificationMetrics.auc(p, data.y, allRows),
+                    ClassificationMetrics.accuracy(p, data.y, allRows, 0.5),
+                    ClassificationMetrics.logLoss(p, data.y, allRows),
+                    ClassificationMetrics.brier(p, data.y, allRows),
+                    ClassificationMetrics.calibration(p, data.y, allRows, CALIBRATION_BINS)));
+        }
+        return new CrossValidationReport(data.size, data.positives(), folds, pool.getParallelism(),
+                System.nanoTime() - start, points);
+    }
+
+    /**
+     * Fit on one fold's training rows, predict its held-out rows; result is the held-out AUC
+     */
+    private static final class FoldTask extends RecursiveTask<Double> {
+        private final Dataset data;
+        private final double l2;
+        private final int[] trainRows;
+        private final int[] testRows;
+        private final double[] outOfFold;
+        private final ForkJoinPool pool;
+
+        FoldTask(Dataset data, double l2, int[] trainRows, int[] testRows, double[] outOfFold, ForkJoinPool pool) {
+            this.data = data;
+            this.l2 = l2;
+            this.trainRows = trainRows;
+            this.testRows = testRows;
+            this.outOfFold = outOfFold;
+            this.pool = pool;
+        }
+
+        @Override
+        protected Double compute() {
+            RiskModel model = LogisticRegression.fit(data.x, data.y, trainRows, l2, pool, "cv");
+            model.score(data.x, testRows, outOfFold);
+            return ClassificationMetrics.auc(outOfFold, data.y, testRows);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.vertebralcare.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 交叉验证结果（不可变）
+ * 每个超参数取值一行：各折 AUC 的均值和标准差，以及所有折的折外预测合并后的 AUC、准确率、对数损失、
+ * Brier 分数和校准表。
+ */
+public final class CrossValidationReport {
+
+    private final int rows;
+    private final long positives;
+    private final int folds;
+    private final int parallelism;
+    private final long wallNanos;
+    private final List<GridPoint> gridPoints;
+
+    CrossValidationReport(int rows, long positives, int folds, int parallelism, long wallNanos,
+                          List<GridPoint> gridPoints) {
+        this.rows = rows;
+        this.positives = positives;
+        this.folds = folds;
+        this.parallelism = parallelism;
+        this.wallNanos = wallNanos;
+        this.gridPoints = Collections.unmodifiableList(new ArrayList<>(gridPoints));
+    }
+
+    /** 参与交叉验证的检查记录数 */
+    public int getRows() {
+        return rows;
+    }
+
+    /** 其中异常记录数 */
+    public long getPositives() {
+        return positives;
+    }
+
+    public int getFolds() {
+        return folds;
+    }
+
+    /** 线程池并行度 */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** 全部训练和评估的墙钟耗时（纳秒，不含加载数据） */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public List<GridPoint> getGridPoints() {
+        return gridPoints;
+    }
+
+    /**
+     * 合并 AUC 最高的超参数取值（相同时取对数损失较小者）
+     */
+    public GridPoint getBest() {
+        GridPoint best = null;
+        for (GridPoint point : gridPoints) {
+            if (best == null || point.auc > best.auc || (point.auc == best.auc && point.logLoss < best.logLoss)) {
+                best = point;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 一个超参数取值的评估结果
+     */
+    public static final class GridPoint {
+        private final double l2;
+        private final double[] foldAuc;
+        private final double auc;
+        private final double accuracy;
+        private final double logLoss;
+        private final double brier;
+        private final double[][] calibration;
+        private final double calibrationError;
+
+        GridPoint(double l2, double[] foldAuc, double auc, double accuracy, double logLoss, double brier,
+                  double[][] calibration) {
+            this.l2 = l2;
+            this.foldAuc = foldAuc.clone();
+            this.auc = auc;
+            this.accuracy = accuracy;
+            this.logLoss = logLoss;
+            this.brier = brier;
+            this.calibration = new double[calibration.length][];
+            for (int i = 0; i < calibration.length; i++) {
+                this.calibration[i] = calibration[i].clone();
+            }
+            this.calibrationError = ClassificationMetrics.expectedCalibrationError(calibration);
+        }
+
+        /** L2 正则系数 */
+        public double getL2() {
+            return l2;
+        }
+
+        /** 第 fold 折的 AUC */
+        public double getFoldAuc(int fold) {
+            return foldAuc[fold];
+        }
+
+        /** 各折 AUC 的均值 */
+        public double getMeanFoldAuc() {
+            double sum = 0;
+            for (double a : foldAuc) {
+                sum += a;
+            }
+            return sum / foldAuc.length;
+        }
+
+        /** 各折 AUC 的样本标准差 */
+        public double getFoldAucStdDev() {
+            if (foldAuc.length < 2) {
+                return Double.NaN;
+            }
+            double mean = getMeanFoldAuc();
+            double ss = 0;
+            for (double a : foldAuc) {
+                ss += (a - mean) * (a - mean);
+            }
+            return Math.sqrt(ss / (foldAuc.length - 1));
+        }
+
+        /** 折外预测合并后的 AUC */
+        public double getAuc() {
+            return auc;
+        }
+
+        /** 以 0.5 为阈值的准确率 */
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        public double getLogLoss() {
+            return logLoss;
+        }
+
+        public double getBrier() {
+            return brier;
+        }
+
+        /** 校准分箱数 */
+        public int getCalibrationBins() {
+            return calibration.length;
+        }
+
+        /** 第 bin 个校准分箱的记录数 */
+        public long getCalibrationCount(int bin) {
+            return (long) calibration[bin][0];
+        }
+
+        /** 第 bin 个校准分箱的平均预测概率 */
+        public double getCalibrationPredicted(int bin) {
+            return calibration[bin][1];
+        }
+
+        /** 第 bin 个校准分箱的实际异常比例 */
+        public double getCalibrationObserved(int bin) {
+            return calibration[bin][2];
+        }
+
+        /** 期望校准误差（各分箱预测与实际比例之差的加权平均） */
+        public double getCalibrationError() {
+            return calibrationError;
+        }
+    }
+}
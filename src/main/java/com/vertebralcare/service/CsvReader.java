@@ -0,0 +1,181 @@
+package com.vertebralcare.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming CSV tokenizer over a FileChannel
+ * Reads through a fixed-size buffer and fills a caller-supplied CsvRow, so heap use stays
+ * bounded regardless of file size. Handles RFC 4180 quoting ("" inside quoted fields,
+ * separators and line breaks inside quotes), LF and CRLF line endings and a UTF-8 BOM.
+ */
+public class CsvReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final byte QUOTE = '"';
+    private static final byte SEPARATOR = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    // Offset in the file of bytes[0]
+    private long bufferOffset;
+    private long lineNumber = 1;
+
+    public CsvReader(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvReader(FileChannel channel, int bufferSize) throws IOException {
+        this.channel = channel;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(bytes);
+        this.bufferOffset = channel.position();
+        skipBom();
+    }
+
+    /**
+     * Byte offset of the next unread record
+     */
+    public long position() {
+        return bufferOffset + pos;
+    }
+
+    /**
+     * Line number (1-based) of the next unread record
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Continue reading from the given byte offset, which must be the start of a record
+     * @param lineNumber line number of that record, used in row diagnostics
+     */
+    public void seek(long offset, long lineNumber) throws IOException {
+        channel.position(offset);
+        bufferOffset = offset;
+        pos = 0;
+        limit = 0;
+        eof = false;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Read the next record into row
+     * @return false at end of file
+     */
+    public boolean next(CsvRow row) throws IOException {
+        int b = read();
+        if (b < 0) {
+            return false;
+        }
+        row.begin(lineNumber, position() - 1);
+
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (b < 0) {
+                    throw new IOException("Unterminated quoted field starting on line " + row.getLineNumber());
+                }
+                if (b == QUOTE) {
+                    if (peek() == QUOTE) {
+                        read();
+                        row.append(QUOTE);
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (b == LF) {
+                        lineNumber++;
+                    }
+                    row.append((byte) b);
+                }
+            } else if (b < 0 || b == LF) {
+                row.endField();
+                lineNumber++;
+                break;
+            } else if (b == CR) {
+                if (peek() == LF) {
+                    read();
+                }
+                row.endField();
+                lineNumber++;
+                break;
+            } else if (b == SEPARATOR) {
+                row.endField();
+                row.startField();
+            } else if (b == QUOTE) {
+                quoted = true;
+            } else {
+                row.append((byte) b);
+            }
+            b = read();
+        }
+
+        row.end(position());
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return bytes[pos++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return bytes[pos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        bufferOffset += limit;
+        pos = 0;
+        limit = 0;
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private void skipBom() throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(3);
+        while (head.hasRemaining() && channel.read(head, bufferOffset + head.position()) > 0) {
+            // keep reading until three bytes or end of file
+        }
+        if (head.position() == 3 && head.get(0) == (byte) 0xEF && head.get(1) == (byte) 0xBB
+                && head.get(2) == (byte) 0xBF) {
+            bufferOffset += 3;
+            channel.position(bufferOffset);
+        }
+    }
+}
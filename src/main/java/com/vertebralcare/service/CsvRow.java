@@ -0,0 +1,163 @@
+package com.vertebralcare.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One CSV record, reused by CsvReader for every row
+ * Field contents are kept as raw bytes with quotes already removed; values are only
+ * decoded when asked for, so numeric columns never become Strings.
+ */
+public final class CsvRow {
+
+    private byte[] data = new byte[256];
+    private int length;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+    private long lineNumber;
+    private long startOffset;
+    private long endOffset;
+
+    /**
+     * Number of fields in the record
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Line number (1-based) on which the record starts
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Byte offset of the first byte of the record
+     */
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Byte offset just past the record's line terminator
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Field value as a String with surrounding whitespace removed
+     */
+    public String getString(int field) {
+        int start = trimmedStart(field);
+        int end = trimmedEnd(field, start);
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse a field as a double straight from its bytes
+     * @throws NumberFormatException if the field is not a valid number
+     */
+    public double getDouble(int field) {
+        checkField(field);
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        return DoubleParser.parse(data, start, end);
+    }
+
+    /**
+     * Whether the trimmed field equals the given ASCII text, ignoring case, without decoding it
+     */
+    public boolean fieldEqualsIgnoreCase(int field, String text) {
+        int start = trimmedStart(field);
+        int end = trimmedEnd(field, start);
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            int a = data[i];
+            int b = text.charAt(i - start);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether every field is blank (e.g. an empty line)
+     */
+    public boolean isBlank() {
+        for (int f = 0; f < fieldCount; f++) {
+            if (trimmedStart(f) < fieldEnd[f]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int trimmedStart(int field) {
+        checkField(field);
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        while (start < end && data[start] <= ' ' && data[start] >= 0) {
+            start++;
+        }
+        return start;
+    }
+
+    int trimmedEnd(int field, int trimmedStart) {
+        int end = fieldEnd[field];
+        while (end > trimmedStart && data[end - 1] <= ' ' && data[end - 1] >= 0) {
+            end--;
+        }
+        return end;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " not present on line " + lineNumber +
+                    " (" + fieldCount + " fields)");
+        }
+    }
+
+    // Filled by CsvReader
+
+    void begin(long lineNumber, long startOffset) {
+        this.lineNumber = lineNumber;
+        this.startOffset = startOffset;
+        this.length = 0;
+        this.fieldCount = 0;
+        startField();
+    }
+
+    void append(byte b) {
+        if (length == data.length) {
+            data = Arrays.copyOf(data, length * 2);
+        }
+        data[length++] = b;
+    }
+
+    void endField() {
+        fieldEnd[fieldCount] = length;
+        fieldCount++;
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+        }
+    }
+
+    void startField() {
+        fieldStart[fieldCount] = length;
+    }
+
+    void end(long endOffset) {
+        this.endOffset = endOffset;
+    }
+}
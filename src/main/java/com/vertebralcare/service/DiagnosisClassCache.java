@@ -0,0 +1,197 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.dao.DiagnosisClassDao;
+import com.vertebralcare.model.DiagnosisClass;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 诊断类别参考数据缓存（进程内共享）
+ * 首次使用时整表加载，之后按 ID、代码和标签（description）在内存中查找；
+ * 超过有效期或经本缓存新增类别后重新加载。读取无锁，加载和新增互斥。
+ */
+public final class DiagnosisClassCache {
+
+    private static final long DEFAULT_TTL_MS = 10 * 60 * 1000L;
+    private static final int MAX_CODE_LENGTH = 10;
+
+    private static final DiagnosisClassCache INSTANCE = new DiagnosisClassCache(new DiagnosisClassDao(), DEFAULT_TTL_MS);
+
+    private final DiagnosisClassDao diagnosisClassDao;
+    private final long ttlMs;
+    private volatile Snapshot snapshot;
+
+    DiagnosisClassCache(DiagnosisClassDao diagnosisClassDao, long ttlMs) {
+        this.diagnosisClassDao = diagnosisClassDao;
+        this.ttlMs = ttlMs;
+    }
+
+    public static DiagnosisClassCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取所有诊断类别（按 class_id 排序，只读）
+     */
+    public List<DiagnosisClass> getAll() throws SQLException {
+        return current().all;
+    }
+
+    /**
+     * 根据ID查找
+     */
+    public DiagnosisClass getById(int classId) throws SQLException {
+        return current().byId.get(classId);
+    }
+
+    /**
+     * 根据代码查找（不区分大小写）
+     */
+    public DiagnosisClass getByCode(String code) throws SQLException {
+        return code == null ? null : current().byCode.get(normalize(code));
+    }
+
+    /**
+     * 根据标签查找：先匹配 description，再匹配 code（均不区分大小写）
+     */
+    public DiagnosisClass getByLabel(String label) throws SQLException {
+        if (label == null) {
+            return null;
+        }
+        Snapshot s = current();
+        String key = normalize(label);
+        DiagnosisClass dc = s.byLabel.get(key);
+        return dc != null ? dc : s.byCode.get(key);
+    }
+
+    /**
+     * 根据标签查找诊断类别，不存在时新建
+     * 用于导入：CSV 中出现的新类别标签会作为新的诊断类别写入数据库
+     */
+    public DiagnosisClass getOrCreate(String label) throws SQLException {
+        String description = label == null ? "" : label.trim();
+        if (description.isEmpty()) {
+            throw new IllegalArgumentException("诊断类别标签不能为空");
+        }
+        DiagnosisClass dc = getByLabel(description);
+        if (dc != null) {
+            return dc;
+        }
+
+        synchronized (this) {
+            // Another thread or process may have added it meanwhile
+            reload();
+            dc = getByLabel(description);
+            if (dc != null) {
+                return dc;
+            }
+
+            DiagnosisClass created = new DiagnosisClass(uniqueCode(description, snapshot), description);
+            try {
+                diagnosisClassDao.insert(created);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Code taken concurrently by another process: pick up its row
+                reload();
+                dc = getByLabel(description);
+                if (dc != null) {
+                    return dc;
+                }
+                throw e;
+            }
+            reload();
+            return created;
+        }
+    }
+
+    /**
+     * 使缓存失效，下次访问时重新加载（在缓存之外修改了 DiagnosisClass 表时调用）
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot current() throws SQLException {
+        Snapshot s = snapshot;
+        if (s != null && System.currentTimeMillis() - s.loadedAt < ttlMs) {
+            return s;
+        }
+        synchronized (this) {
+            s = snapshot;
+            if (s == null || System.currentTimeMillis() - s.loadedAt >= ttlMs) {
+                s = reload();
+            }
+            return s;
+        }
+    }
+
+    private synchronized Snapshot reload() throws SQLException {
+        Snapshot s = new Snapshot(diagnosisClassDao.findAll());
+        snapshot = s;
+        return s;
+    }
+
+    /**
+     * 由标签生成未被占用的类别代码：取标签中的字母数字，优先使用前两位，冲突时加长或追加序号
+     */
+    private static String uniqueCode(String label, Snapshot s) {
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < label.length() && letters.length() < MAX_CODE_LENGTH; i++) {
+            char c = label.charAt(i);
+            if (c < 0x80 && Character.isLetterOrDigit(c)) {
+                letters.append(Character.toUpperCase(c));
+            }
+        }
+        if (letters.length() == 0) {
+            letters.append("C");
+        }
+
+        for (int len = Math.min(2, letters.length()); len <= letters.length(); len++) {
+            String code = letters.substring(0, len);
+            if (!s.byCode.containsKey(code)) {
+                return code;
+            }
+        }
+        String base = letters.substring(0, Math.min(letters.length(), MAX_CODE_LENGTH - 3));
+        for (int n = 1; ; n++) {
+            String code = base + n;
+            if (!s.byCode.containsKey(code)) {
+                return code;
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 某一时刻的整表快照，加载后不再修改
+     */
+    private static final class Snapshot {
+        final long loadedAt = System.currentTimeMillis();
+        final List<DiagnosisClass> all;
+        final Map<Integer, DiagnosisClass> byId = new HashMap<>();
+        final Map<String, DiagnosisClass> byCode = new HashMap<>();
+        final Map<String, DiagnosisClass> byLabel = new HashMap<>();
+
+        Snapshot(List<DiagnosisClass> classes) {
+            this.all = Collections.unmodifiableList(new ArrayList<>(classes));
+            for (DiagnosisClass dc : classes) {
+                byId.put(dc.getClassId(), dc);
+                if (dc.getCode() != null) {
+                    byCode.put(normalize(dc.getCode()), dc);
+                }
+                if (dc.getDescription() != null) {
+                    byLabel.putIfAbsent(normalize(dc.getDescription()), dc);
+                }
+            }
+        }
+    }
+}
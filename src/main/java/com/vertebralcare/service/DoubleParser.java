@@ -0,0 +1,145 @@
+package com.vertebralcare.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decimal parser working directly on byte ranges
+ * Plain decimals of up to 18 significant digits with a small exponent (everything the
+ * indicator columns contain) take a fast path: the digits are accumulated into a long and
+ * scaled by one exact power of ten. When the digits fit in 53 bits and the power is at most
+ * 10^22 both operands are exact doubles, so the single IEEE division or multiplication is
+ * correctly rounded and the result matches Double.parseDouble bit for bit. Anything else
+ * (long mantissas, large exponents, hex) falls back to Double.parseDouble. Only finite values
+ * are accepted: NaN, Infinity, overflowing exponents and Java's f/d type suffixes are rejected.
+ */
+public final class DoubleParser {
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_POWER = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+    static {
+        double p = 1.0;
+        for (int i = 0; i <= MAX_EXACT_POWER; i++) {
+            POWERS_OF_TEN[i] = p;
+            p *= 10.0;
+        }
+    }
+
+    private DoubleParser() {
+    }
+
+    /**
+     * Parse bytes [start, end) as a double, ignoring surrounding whitespace
+     * @throws NumberFormatException if the range is not a valid, finite number
+     */
+    public static double parse(byte[] buf, int start, int end) {
+        while (start < end && isSpace(buf[start])) {
+            start++;
+        }
+        while (end > start && isSpace(buf[end - 1])) {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("empty value");
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+
+        for (; i < end; i++) {
+            int c = buf[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    // Leading zeros are not significant
+                    if (seenPoint) {
+                        scale--;
+                    }
+                    continue;
+                }
+                if (++digits > 18) {
+                    return fallback(buf, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    scale--;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+
+        if (!seenDigit) {
+            return fallback(buf, start, end);
+        }
+
+        if (i < end) {
+            if ((buf[i] != 'e' && buf[i] != 'E') || i + 1 == end) {
+                return fallback(buf, start, end);
+            }
+            i++;
+            boolean negativeExp = false;
+            if (buf[i] == '-' || buf[i] == '+') {
+                negativeExp = buf[i] == '-';
+                i++;
+            }
+            int exp = 0;
+            int expStart = i;
+            for (; i < end && i - expStart < 4; i++) {
+                int c = buf[i];
+                if (c < '0' || c > '9') {
+                    return fallback(buf, start, end);
+                }
+                exp = exp * 10 + (c - '0');
+            }
+            if (i != end || i == expStart) {
+                return fallback(buf, start, end);
+            }
+            scale += negativeExp ? -exp : exp;
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (mantissa <= MAX_EXACT_MANTISSA && scale >= -MAX_EXACT_POWER && scale <= MAX_EXACT_POWER) {
+            value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+        } else {
+            return fallback(buf, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double fallback(byte[] buf, int start, int end) {
+        // Double.parseDouble takes a trailing f/F/d/D as a Java literal suffix, which a data file never means
+        int last = buf[end - 1] | 0x20;
+        if (last == 'f' || last == 'd') {
+            throw new NumberFormatException("type suffix in '" + text(buf, start, end) + "'");
+        }
+        double value = Double.parseDouble(text(buf, start, end));
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new NumberFormatException("not a finite number: '" + text(buf, start, end) + "'");
+        }
+        return value;
+    }
+
+    private static String text(byte[] buf, int start, int end) {
+        return new String(buf, start, end - start, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isSpace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+}
@@ -0,0 +1,155 @@
+package com.vertebralcare.service;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 按主键缓存实体的 LRU 缓存，条目数有上限并带有效期
+ * 缓存的实体对象由多个调用方共享，调用方不应修改；写操作通过 invalidate 使对应条目失效。
+ */
+public class EntityCache<K, V> {
+
+    /**
+     * 未命中时加载实体
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<K, CachedValue<V>> entries;
+
+    // Bumped on every invalidation, so a value loaded concurrently with a write is not cached
+    private long invalidations = 0;
+
+    // Metrics, guarded by this
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    public EntityCache(String name, int maxEntries, long ttlMs) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                if (size() > EntityCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取实体，未命中或已过期时通过 loader 加载并缓存（加载过程不持有锁）
+     * @return 实体，不存在时返回 null（不缓存 null）
+     */
+    public V get(K key, Loader<K, V> loader) throws SQLException {
+        long generation;
+        synchronized (this) {
+            CachedValue<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() < entry.expiresAt) {
+                    hits++;
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            generation = invalidations;
+        }
+
+        V value = loader.load(key);
+        if (value != null) {
+            synchronized (this) {
+                if (generation == invalidations) {
+                    entries.put(key, new CachedValue<>(value, System.currentTimeMillis() + ttlMs));
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 当前失效代数，在查询数据库之前读取，传给 putAll
+     */
+    public synchronized long generation() {
+        return invalidations;
+    }
+
+    /**
+     * 批量放入刚从数据库读取的实体（例如分页查询的结果）
+     * @param generation 查询前通过 generation() 取得；期间发生过失效则不放入，以免缓存旧数据
+     */
+    public synchronized void putAll(Iterable<? extends V> values, Function<? super V, ? extends K> keyOf,
+                                    long generation) {
+        if (generation != invalidations) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMs;
+        for (V value : values) {
+            entries.put(keyOf.apply(value), new CachedValue<>(value, expiresAt));
+        }
+    }
+
+    /**
+     * 使单个条目失效
+     */
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        entries.remove(key);
+    }
+
+    /**
+     * 使满足条件的条目失效
+     */
+    public synchronized void invalidateIf(Predicate<? super V> predicate) {
+        invalidations++;
+        Iterator<CachedValue<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (predicate.test(it.next().value)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    /**
+     * 获取缓存运行指标快照
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(name, entries.size(), maxEntries, hits, misses, evictions, expirations);
+    }
+
+    private static final class CachedValue<V> {
+        final V value;
+        final long expiresAt;
+
+        CachedValue(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
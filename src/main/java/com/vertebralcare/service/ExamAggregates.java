@@ -0,0 +1,346 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.dao.ExamDao;
+import com.vertebralcare.model.DiagnosisClass;
+import com.vertebralcare.model.Exam;
+import com.vertebralcare.model.ExamReview;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 检查记录统计汇总（进程内共享）
+ * 按诊断类别维护检查数量以及6个指标的均值和方差（Welford 算法），
+ * 首次读取时用一次 GROUP BY 查询初始化，之后随增删改增量更新，读取耗时只与类别数有关。
+ * 另按类别、指标维护分位数草图和固定分箱直方图，首次读取时由 ExamColumnStore 扫描一遍构建，内存占用与记录数无关；
+ * 新增记录增量计入，修改或删除记录后草图无法扣除旧值，下次读取时重新扫描构建。
+ *
+ * 检查记录的写操作必须通过 write() 执行：写入与汇总、列式存储、相似病例索引的更新在同一把锁内完成，
+ * 保证初始化查询和增量更新不会重复或遗漏同一条记录。
+ * 对已有行的修改、汇总行（ExamRollup）的更新和事务提交都要在 write() 内执行；write() 之外只能插入本事务的新行
+ * （如导入块先插入新的病人和检查记录，再进入 write() 更新汇总并提交）。持有别的写操作需要的行锁再等待这把锁，
+ * 会与锁内等待同一行锁的写操作互相等待，而 InnoDB 看不到 Java 锁，无法检测和打破这种死锁。
+ */
+public final class ExamAggregates {
+
+    static final int INDICATORS = 6;
+
+    // Histogram range and bin count per indicator, covering the clinical range of each measure
+    private static final double[][] HISTOGRAM_RANGES = {
+            {20, 140}, {-10, 55}, {10, 130}, {10, 125}, {70, 165}, {-20, 160}
+    };
+    private static final int HISTOGRAM_BINS = 24;
+
+    private static final ExamAggregates INSTANCE = new ExamAggregates(new ExamDao(), ExamColumnStore.getInstance(),
+            SimilarExamIndex.getInstance(), OutlierDetector.getInstance());
+
+    private final ExamDao examDao;
+    private final ExamColumnStore columnStore;
+    private final SimilarExamIndex similarIndex;
+    private final OutlierDetector outlierDetector;
+
+    // class_id -> running statistics; null until seeded, guarded by this
+    private Map<Integer, RunningStats> byClass;
+
+    // class_id -> sketches and histograms; null until built or after a removal, guarded by this
+    private Map<Integer, Distributions> distributions;
+
+    ExamAggregates(ExamDao examDao, ExamColumnStore columnStore, SimilarExamIndex similarIndex,
+                   OutlierDetector outlierDetector) {
+        this.examDao = examDao;
+        this.columnStore = columnStore;
+        this.similarIndex = similarIndex;
+        this.outlierDetector = outlierDetector;
+    }
+
+    public static ExamAggregates getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 执行检查记录的写操作，并在其成功返回后把记录的变化计入汇总
+     */
+    @FunctionalInterface
+    public interface Write<T> {
+        T run(Changes changes) throws SQLException;
+    }
+
+    /**
+     * 写操作中登记的记录变化，写操作成功后才生效
+     */
+    public static final class Changes {
+        private final List<Exam> added = new ArrayList<>();
+        private final List<Exam> removed = new ArrayList<>();
+
+        /** 登记新增（或修改后）的记录 */
+        public void added(Exam exam) {
+            added.add(exam);
+        }
+
+        /** 登记批量新增的记录 */
+        public void addedAll(List<Exam> exams) {
+            added.addAll(exams);
+        }
+
+        /** 登记删除（或修改前）的记录 */
+        public void removed(Exam exam) {
+            removed.add(exam);
+        }
+    }
+
+    /**
+     * 在汇总锁内执行写操作；写操作抛出异常时汇总保持不变
+     */
+    public synchronized <T> T write(Write<T> write) throws SQLException {
+        Changes changes = new Changes();
+        T result = write.run(changes);
+        columnStore.apply(changes.removed, changes.added);
+        similarIndex.apply(changes.removed, changes.added);
+        outlierDetector.apply(changes.removed, changes.added);
+        if (distributions != null) {
+            if (changes.removed.isEmpty()) {
+                for (Exam exam : changes.added) {
+                    distributions.computeIfAbsent(exam.getClassId(), id -> new Distributions()).add(indicators(exam));
+                }
+            } else {
+                // Sketches can't forget a value: rebuild on the next read
+                distributions = null;
+            }
+        }
+        if (byClass != null) {
+            for (Exam exam : changes.removed) {
+                RunningStats stats = byClass.get(exam.getClassId());
+                if (stats != null) {
+                    stats.remove(indicators(exam));
+                    if (stats.count == 0) {
+                        byClass.remove(exam.getClassId());
+                    }
+                }
+            }
+            for (Exam exam : changes.added) {
+                byClass.computeIfAbsent(exam.getClassId(), id -> new RunningStats()).add(indicators(exam));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 判断一条检查记录是否离群（见 OutlierDetector）
+     * 离群统计量首次使用时由列式存储构建，在这把锁内构建才不会读入另一个写操作已提交、尚未登记的记录而重复计入。
+     * 新增记录时在 write() 内、写入之前调用，按写入前的统计量判断。
+     */
+    public synchronized ExamReview screen(Exam exam) throws SQLException {
+        return outlierDetector.screen(exam);
+    }
+
+    /**
+     * 丢弃汇总，下次读取时重新初始化（在 write() 之外修改了检查记录，或写入后无法确定记录变化时调用）
+     */
+    public synchronized void invalidate() {
+        byClass = null;
+        distributions = null;
+        columnStore.invalidate();
+        similarIndex.invalidate();
+        outlierDetector.invalidate();
+    }
+
+    /**
+     * 检查记录总数
+     */
+    public synchronized long getTotalCount() throws SQLException {
+        long total = 0;
+        for (RunningStats stats : seeded().values()) {
+            total += stats.count;
+        }
+        return total;
+    }
+
+    /**
+     * 在一次加锁读取中取得所有汇总数字，保证互相一致
+     * @param patientCount 病人总数（不属于本汇总，由调用方提供）
+     */
+    public synchronized StatisticsSnapshot snapshot(int patientCount) throws SQLException {
+        return new StatisticsSnapshot(patientCount, getCountByClass(), getAveragesByClass(), getStdDevsByClass(),
+                getDistributionsByClass());
+    }
+
+    /**
+     * 按类别获取各指标的分布摘要（中位数、P90、P99 和直方图）
+     * @return Map<类别描述, IndicatorDistribution[6]>
+     */
+    public synchronized Map<String, IndicatorDistribution[]> getDistributionsByClass() throws SQLException {
+        Map<String, IndicatorDistribution[]> result = new HashMap<>();
+        for (Map.Entry<Integer, Distributions> entry : built().entrySet()) {
+            result.put(describe(entry.getKey()), entry.getValue().summarize());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 按类别统计检查数量（按数量降序）
+     * @return Map<类别描述, 数量>
+     */
+    public synchronized Map<String, Integer> getCountByClass() throws SQLException {
+        List<Map.Entry<Integer, RunningStats>> entries = new ArrayList<>(seeded().entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().count, a.getValue().count));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, RunningStats> entry : entries) {
+            result.put(describe(entry.getKey()), (int) entry.getValue().count);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 按类别获取各指标平均值
+     * @return Map<类别描述, double[6]>
+     */
+    public synchronized Map<String, double[]> getAveragesByClass() throws SQLException {
+        Map<String, double[]> result = new HashMap<>();
+        for (Map.Entry<Integer, RunningStats> entry : seeded().entrySet()) {
+            result.put(describe(entry.getKey()), entry.getValue().mean.clone());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 按类别获取各指标的样本标准差（数量不足2时为 NaN）
+     * @return Map<类别描述, double[6]>
+     */
+    public synchronized Map<String, double[]> getStdDevsByClass() throws SQLException {
+        Map<String, double[]> result = new HashMap<>();
+        for (Map.Entry<Integer, RunningStats> entry : seeded().entrySet()) {
+            RunningStats stats = entry.getValue();
+            double[] sd = new double[INDICATORS];
+            for (int i = 0; i < INDICATORS; i++) {
+                sd[i] = stats.count < 2 ? Double.NaN : Math.sqrt(stats.m2[i] / (stats.count - 1));
+            }
+            result.put(describe(entry.getKey()), sd);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private Map<Integer, RunningStats> seeded() throws SQLException {
+        if (byClass == null) {
+            Map<Integer, RunningStats> seeded = new HashMap<>();
+            for (Map.Entry<Integer, double[]> entry : examDao.getMomentsByClass().entrySet()) {
+                seeded.put(entry.getKey(), RunningStats.of(entry.getValue()));
+            }
+            byClass = seeded;
+        }
+        return byClass;
+    }
+
+    private Map<Integer, Distributions> built() throws SQLException {
+        if (distributions == null) {
+            distributions = columnStore.read(columns -> {
+                Map<Integer, Distributions> built = new HashMap<>();
+                double[] values = new double[INDICATORS];
+                for (int row = 0; row < columns.size(); row++) {
+                    columns.values(row, values);
+                    built.computeIfAbsent(columns.classId(row), id -> new Distributions()).add(values);
+                }
+                return built;
+            });
+        }
+        return distributions;
+    }
+
+    static String describe(int classId) throws SQLException {
+        DiagnosisClass dc = DiagnosisClassCache.getInstance().getById(classId);
+        return dc != null ? dc.getDescription() : "Class " + classId;
+    }
+
+    static double[] indicators(Exam exam) {
+        return new double[]{
+                exam.getPelvicIncidence(),
+                exam.getPelvicTilt(),
+                exam.getLumbarLordosisAngle(),
+                exam.getSacralSlope(),
+                exam.getPelvicRadius(),
+                exam.getDegreeSpondylolisthesis()
+        };
+    }
+
+    /**
+     * 一个类别6个指标的分位数草图和直方图
+     */
+    static final class Distributions {
+        final QuantileSketch[] sketches = new QuantileSketch[INDICATORS];
+        final Histogram[] histograms = new Histogram[INDICATORS];
+
+        Distributions() {
+            for (int i = 0; i < INDICATORS; i++) {
+                sketches[i] = new QuantileSketch();
+                histograms[i] = new Histogram(HISTOGRAM_RANGES[i][0], HISTOGRAM_RANGES[i][1], HISTOGRAM_BINS);
+            }
+        }
+
+        void add(double[] x) {
+            for (int i = 0; i < INDICATORS; i++) {
+                sketches[i].add(x[i]);
+                histograms[i].add(x[i]);
+            }
+        }
+
+        IndicatorDistribution[] summarize() {
+            IndicatorDistribution[] result = new IndicatorDistribution[INDICATORS];
+            for (int i = 0; i < INDICATORS; i++) {
+                result[i] = new IndicatorDistribution(sketches[i], histograms[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 一个类别的样本数、均值和离差平方和（M2），按 Welford 算法增减
+     */
+    static final class RunningStats {
+        long count;
+        final double[] mean = new double[INDICATORS];
+        final double[] m2 = new double[INDICATORS];
+
+        /**
+         * 由 ExamDao.getMomentsByClass 的一行（数量、均值、总体方差）构造
+         */
+        static RunningStats of(double[] moments) {
+            RunningStats stats = new RunningStats();
+            stats.count = (long) moments[0];
+            for (int i = 0; i < INDICATORS; i++) {
+                stats.mean[i] = moments[1 + i];
+                stats.m2[i] = moments[1 + INDICATORS + i] * stats.count;
+            }
+            return stats;
+        }
+
+        void add(double[] x) {
+            count++;
+            for (int i = 0; i < INDICATORS; i++) {
+                double delta = x[i] - mean[i];
+                mean[i] += delta / count;
+                m2[i] += delta * (x[i] - mean[i]);
+            }
+        }
+
+        void remove(double[] x) {
+            if (count <= 1) {
+                count = 0;
+                Arrays.fill(mean, 0.0);
+                Arrays.fill(m2, 0.0);
+                return;
+            }
+            count--;
+            for (int i = 0; i < INDICATORS; i++) {
+                double oldMean = mean[i];
+                mean[i] = oldMean - (x[i] - oldMean) / count;
+                // Rounding can leave a tiny negative sum of squares
+                m2[i] = Math.max(0.0, m2[i] - (x[i] - oldMean) * (x[i] - mean[i]));
+            }
+        }
+    }
+}
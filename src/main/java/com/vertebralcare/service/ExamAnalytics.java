@@ -0,0 +1,280 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.dao.ExamDao;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 检查记录并行分析服务
+ * 在 ExamColumnStore 的读锁内把行区间递归二分为 fork/join 子任务，每个子任务对自己的行区间
+ * 按列扫描两遍（先求和与极值，再求离差平方和与协方差），得到局部结果后两两合并（Chan 等人的并行方差公式），
+ * 一次扫描同时得到按类别的均值、方差、最小值、最大值和6个指标的相关系数矩阵。
+ *
+ * 按类别平均值也可用原有的 SQL 聚合查询（ExamDao.getAveragesByClass）计算，供基准测试对比两种方式的结果和耗时；
+ * 界面上的统计直接读取 ExamAggregates 增量维护的结果。
+ */
+public class ExamAnalytics {
+
+    private static final int INDICATORS = ExamAggregates.INDICATORS;
+
+    // Rows per leaf task: six double columns of this length stay within a core's L2 cache
+    private static final int LEAF_ROWS = 4096;
+
+    /**
+     * 计算方式
+     */
+    public enum Engine {
+        PARALLEL, SQL
+    }
+
+    private final ExamDao examDao;
+    private final ExamColumnStore columnStore;
+    private final ForkJoinPool pool;
+
+    public ExamAnalytics() {
+        this(new ExamDao(), ExamColumnStore.getInstance(), ForkJoinPool.commonPool());
+    }
+
+    ExamAnalytics(ExamDao examDao, ExamColumnStore columnStore, ForkJoinPool pool) {
+        this.examDao = examDao;
+        this.columnStore = columnStore;
+        this.pool = pool;
+    }
+
+    /**
+     * 按指定计算方式获取各类别的指标平均值
+     * @return Map<类别描述, double[6]>
+     */
+    public Map<String, double[]> getAveragesByClass(Engine engine) throws SQLException {
+        if (engine == Engine.SQL) {
+            return examDao.getAveragesByClass();
+        }
+        return summarize().getAveragesByClass();
+    }
+
+    /**
+     * 并行扫描全部检查记录，得到按类别的描述统计和相关系数矩阵
+     */
+    public ExamSummary summarize() throws SQLException {
+        long[] elapsed = new long[1];
+        Partial total = columnStore.read(columns -> {
+            long start = System.nanoTime();
+            Partial result = scan(columns, pool);
+            elapsed[0] = System.nanoTime() - start;
+            return result;
+        });
+        return toSummary(total, elapsed[0]);
+    }
+
+    /**
+     * 在给定线程池中并行扫描全部行（调用方须持有列式存储的读锁）
+     */
+    static Partial scan(ExamColumnStore.Columns columns, ForkJoinPool pool) {
+        int classCount = columns.maxClassId() + 1;
+        return pool.invoke(new ScanTask(columns, classCount, 0, columns.size()));
+    }
+
+    private ExamSummary toSummary(Partial total, long elapsedNanos) throws SQLException {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        Map<String, double[]> averages = new LinkedHashMap<>();
+        Map<String, double[]> stdDevs = new LinkedHashMap<>();
+        Map<String, double[]> mins = new LinkedHashMap<>();
+        Map<String, double[]> maxs = new LinkedHashMap<>();
+
+        for (int c = 0; c < total.classCount; c++) {
+            long n = total.count[c];
+            if (n == 0) {
+                continue;
+            }
+            String description = ExamAggregates.describe(c);
+            double[] sd = new double[INDICATORS];
+            for (int i = 0; i < INDICATORS; i++) {
+                sd[i] = n < 2 ? Double.NaN : Math.sqrt(total.m2[c][i] / (n - 1));
+            }
+            counts.put(description, (int) n);
+            averages.put(description, total.mean[c].clone());
+            stdDevs.put(description, sd);
+            mins.put(description, total.min[c].clone());
+            maxs.put(description, total.max[c].clone());
+        }
+
+        double[][] correlation = new double[INDICATORS][INDICATORS];
+        for (int i = 0; i < INDICATORS; i++) {
+            for (int j = 0; j < INDICATORS; j++) {
+                double denominator = Math.sqrt(total.comoment[i][i] * total.comoment[j][j]);
+                correlation[i][j] = denominator > 0 ? total.comoment[i][j] / denominator : Double.NaN;
+            }
+        }
+        return new ExamSummary((int) total.total, elapsedNanos, pool.getParallelism(), counts, averages, stdDevs,
+                mins, maxs, correlation);
+    }
+
+    /**
+     * Splits [from, to) until it is at most LEAF_ROWS long, then scans the leaf directly
+     */
+    private static final class ScanTask extends RecursiveTask<Partial> {
+        private final ExamColumnStore.Columns columns;
+        private final int classCount;
+        private final int from;
+        private final int to;
+
+        ScanTask(ExamColumnStore.Columns columns, int classCount, int from, int to) {
+            this.columns = columns;
+            this.classCount = classCount;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= LEAF_ROWS) {
+                return Partial.scan(columns, classCount, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(columns, classCount, from, mid);
+            left.fork();
+            Partial right = new ScanTask(columns, classCount, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * 一个行区间的局部结果：按类别的数量、均值、离差平方和、极值，以及全体的均值和协离差矩阵
+     */
+    static final class Partial {
+        final int classCount;
+        final long[] count;
+        final double[][] mean;
+        final double[][] m2;
+        final double[][] min;
+        final double[][] max;
+        long total;
+        final double[] totalMean = new double[INDICATORS];
+        // Sum of (x_i - mean_i)(x_j - mean_j); only the upper triangle is accumulated, then mirrored
+        final double[][] comoment = new double[INDICATORS][INDICATORS];
+
+        Partial(int classCount) {
+            this.classCount = classCount;
+            count = new long[classCount];
+            mean = new double[classCount][INDICATORS];
+            m2 = new double[classCount][INDICATORS];
+            min = new double[classCount][INDICATORS];
+            max = new double[classCount][INDICATORS];
+            for (int c = 0; c < classCount; c++) {
+                Arrays.fill(min[c], Double.POSITIVE_INFINITY);
+                Arrays.fill(max[c], Double.NEGATIVE_INFINITY);
+            }
+        }
+
+        /**
+         * Two passes over each column of [from, to): sums and extremes, then squared deviations
+         */
+        static Partial scan(ExamColumnStore.Columns columns, int classCount, int from, int to) {
+            Partial p = new Partial(classCount);
+            int[] classIds = columns.classIdColumn();
+            p.total = to - from;
+            if (p.total == 0) {
+                return p;
+            }
+
+            for (int row = from; row < to; row++) {
+                p.count[classIds[row]]++;
+            }
+
+            for (int i = 0; i < INDICATORS; i++) {
+                double[] x = columns.indicatorColumn(i);
+                double[] sum = new double[classCount];
+                double totalSum = 0;
+                for (int row = from; row < to; row++) {
+                    int c = classIds[row];
+                    double v = x[row];
+                    sum[c] += v;
+                    totalSum += v;
+                    if (v < p.min[c][i]) {
+                        p.min[c][i] = v;
+                    }
+                    if (v > p.max[c][i]) {
+                        p.max[c][i] = v;
+                    }
+                }
+                for (int c = 0; c < classCount; c++) {
+                    p.mean[c][i] = p.count[c] > 0 ? sum[c] / p.count[c] : 0.0;
+                }
+                p.totalMean[i] = totalSum / p.total;
+            }
+
+            for (int i = 0; i < INDICATORS; i++) {
+                double[] x = columns.indicatorColumn(i);
+                double[] ss = new double[classCount];
+                for (int row = from; row < to; row++) {
+                    int c = classIds[row];
+                    double d = x[row] - p.mean[c][i];
+                    ss[c] += d * d;
+                }
+                for (int c = 0; c < classCount; c++) {
+                    p.m2[c][i] = ss[c];
+                }
+
+                double mi = p.totalMean[i];
+                for (int j = i; j < INDICATORS; j++) {
+                    double[] y = columns.indicatorColumn(j);
+                    double mj = p.totalMean[j];
+                    double s = 0;
+                    for (int row = from; row < to; row++) {
+                        s += (x[row] - mi) * (y[row] - mj);
+                    }
+                    p.comoment[i][j] = s;
+                    p.comoment[j][i] = s;
+                }
+            }
+            return p;
+        }
+
+        /**
+         * Combine with another range's result (Chan et al. pairwise update); returns this
+         */
+        Partial merge(Partial other) {
+            for (int c = 0; c < classCount; c++) {
+                long na = count[c];
+                long nb = other.count[c];
+                if (nb == 0) {
+                    continue;
+                }
+                long n = na + nb;
+                for (int i = 0; i < INDICATORS; i++) {
+                    double delta = other.mean[c][i] - mean[c][i];
+                    mean[c][i] += delta * nb / n;
+                    m2[c][i] += other.m2[c][i] + delta * delta * ((double) na * nb / n);
+                    min[c][i] = Math.min(min[c][i], other.min[c][i]);
+                    max[c][i] = Math.max(max[c][i], other.max[c][i]);
+                }
+                count[c] = n;
+            }
+
+            long na = total;
+            long nb = other.total;
+            if (nb == 0) {
+                return this;
+            }
+            long n = na + nb;
+            double weight = (double) na * nb / n;
+            double[] delta = new double[INDICATORS];
+            for (int i = 0; i < INDICATORS; i++) {
+                delta[i] = other.totalMean[i] - totalMean[i];
+            }
+            for (int i = 0; i < INDICATORS; i++) {
+                for (int j = 0; j < INDICATORS; j++) {
+                    comoment[i][j] += other.comoment[i][j] + delta[i] * delta[j] * weight;
+                }
+                totalMean[i] += delta[i] * nb / n;
+            }
+            total = n;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.dao.ExamDao;
+import com.vertebralcare.model.Exam;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 检查记录列式内存存储（进程内共享）
+ * 按列保存检查记录的分析字段：ID、病人、类别为 int[]，检查日期为 epoch day 的 int[]，
+ * 6个指标各一个 double[]，每行约 52 字节（List<Exam> 每行 300 字节以上）。
+ * 首次使用时从 ExamDao 流式加载，之后由 ExamAggregates.write() 在同一把写锁内同步增删改；
+ * 无法逐行同步的变化（如导入块已提交但登记失败）会使存储失效，下次使用时重新加载。
+ *
+ * 分析通过 read() 在读锁内执行，Columns 上的扫描都是对原始数组的顺序循环，便于 JIT 向量化。
+ */
+public final class ExamColumnStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final ExamColumnStore INSTANCE = new ExamColumnStore(new ExamDao());
+
+    private final ExamDao examDao;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock; null until loaded or after invalidate()
+    private Columns columns;
+
+    ExamColumnStore(ExamDao examDao) {
+        this.examDao = examDao;
+    }
+
+    public static ExamColumnStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 在读锁内对列数据执行分析，Columns 只在回调期间有效，不得保存或修改
+     */
+    @FunctionalInterface
+    public interface Scan<T> {
+        T run(Columns columns);
+    }
+
+    /**
+     * 对列数据执行只读分析（未加载时先加载）
+     */
+    public <T> T read(Scan<T> scan) throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (columns != null) {
+                return scan.run(columns);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (columns == null) {
+                columns = load();
+            }
+            // Downgrade so the scan doesn't block other readers
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            return scan.run(columns);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 同步一次写操作的结果（由 ExamAggregates.write() 在写入成功后调用）
+     * 新增记录缺少 exam_id 时无法定位，整个存储失效
+     */
+    void apply(List<Exam> removed, List<Exam> added) {
+        lock.writeLock().lock();
+        try {
+            if (columns == null) {
+                return;
+            }
+            for (Exam exam : removed) {
+                if (exam.getExamId() == null) {
+                    columns = null;
+                    return;
+                }
+                columns.remove(exam.getExamId());
+            }
+            for (Exam exam : added) {
+                if (exam.getExamId() == null) {
+                    columns = null;
+                    return;
+                }
+                columns.put(exam);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 丢弃已加载的数据，下次使用时重新加载
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            columns = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Columns load() throws SQLException {
+        Columns loaded = new Columns(INITIAL_CAPACITY);
+        examDao.streamColumns(row -> {
+            loaded.append((int) row[0], (int) row[1], (int) row[2], (int) row[3], row, 4);
+            return true;
+        });
+        return loaded;
+    }
+
+    /**
+     * 列数据：第 row 行的各字段分别位于各数组的同一下标，行顺序无业务含义
+     */
+    public static final class Columns {
+        private int size;
+        private int[] examIds;
+        private int[] patientIds;
+        private int[] classIds;
+        private int[] examDays;
+        private final double[][] indicators = new double[ExamAggregates.INDICATORS][];
+        private final IntIndex rowByExamId;
+
+        Columns(int capacity) {
+            examIds = new int[capacity];
+            patientIds = new int[capacity];
+            classIds = new int[capacity];
+            examDays = new int[capacity];
+            for (int i = 0; i < indicators.length; i++) {
+                indicators[i] = new double[capacity];
+            }
+            rowByExamId = new IntIndex(capacity);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int examId(int row) {
+            return examIds[row];
+        }
+
+        public int patientId(int row) {
+            return patientIds[row];
+        }
+
+        public int classId(int row) {
+            return classIds[row];
+        }
+
+        public LocalDate examDate(int row) {
+            return LocalDate.ofEpochDay(examDays[row]);
+        }
+
+        /**
+         * 第 row 行第 indicator 个指标（顺序同 StatisticsService.getIndicatorNames）
+         */
+        public double value(int indicator, int row) {
+            return indicators[indicator][row];
+        }
+
+        /**
+         * 把第 row 行的6个指标复制到 out
+         */
+        public void values(int row, double[] out) {
+            for (int i = 0; i < indicators.length; i++) {
+                out[i] = indicators[i][row];
+            }
+        }
+
+        /**
+         * 检查记录ID列的底层数组（只读，有效长度为 size()）
+         */
+        int[] examIdColumn() {
+            return examIds;
+        }
+
+        /**
+         * 类别列的底层数组（只读，有效长度为 size()，供并行扫描直接按下标访问）
+         */
+        int[] classIdColumn() {
+            return classIds;
+        }
+
+        /**
+         * 第 indicator 个指标列的底层数组（只读，有效长度为 size()）
+         */
+        double[] indicatorColumn(int indicator) {
+            return indicators[indicator];
+        }
+
+        /**
+         * 检查记录所在行，不存在时返回 -1
+         */
+        public int rowOf(int examId) {
+            return rowByExamId.get(examId);
+        }
+
+        /**
+         * 属于某类别的行号
+         */
+        public int[] rowsOfClass(int classId) {
+            int[] rows = new int[size];
+            int n = 0;
+            for (int row = 0; row < size; row++) {
+                if (classIds[row] == classId) {
+                    rows[n++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, n);
+        }
+
+        /**
+         * 检查日期在 [from, to] 之间的行号
+         */
+        public int[] rowsBetween(LocalDate from, LocalDate to) {
+            int lo = (int) from.toEpochDay();
+            int hi = (int) to.toEpochDay();
+            int[] rows = new int[size];
+            int n = 0;
+            for (int row = 0; row < size; row++) {
+                int day = examDays[row];
+                if (day >= lo && day <= hi) {
+                    rows[n++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, n);
+        }
+
+        /**
+         * 某指标在全部行上的和
+         */
+        public double sum(int indicator) {
+            double[] column = indicators[indicator];
+            double sum = 0;
+            for (int row = 0; row < size; row++) {
+                sum += column[row];
+            }
+            return sum;
+        }
+
+        /**
+         * 某指标在给定行上的和
+         */
+        public double sum(int indicator, int[] rows) {
+            double[] column = indicators[indicator];
+            double sum = 0;
+            for (int row : rows) {
+                sum += column[row];
+            }
+            return sum;
+        }
+
+        /**
+         * 按类别统计行数
+         * @param classCount class_id 的上界（不含）
+         */
+        public int[] countByClass(int classCount) {
+            int[] counts = new int[classCount];
+            for (int row = 0; row < size; row++) {
+                int classId = classIds[row];
+                if (classId >= 0 && classId < classCount) {
+                    counts[classId]++;
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * 最大的 class_id（无数据时为 0）
+         */
+        public int maxClassId() {
+            int max = 0;
+            for (int row = 0; row < size; row++) {
+                max = Math.max(max, classIds[row]);
+            }
+            return max;
+        }
+
+        /**
+         * 估算占用的堆内存（字节）
+         */
+        public long estimatedBytes() {
+            long perRow = 4L * 4 + 8L * indicators.length;
+            return examIds.length * perRow + rowByExamId.size() * 16L;
+        }
+
+        void put(Exam exam) {
+            double[] values = ExamAggregates.indicators(exam);
+            int day = (int) exam.getExamDate().toLocalDate().toEpochDay();
+            int row = rowByExamId.get(exam.getExamId());
+            if (row >= 0) {
+                set(row, exam.getExamId(), exam.getPatientId(), exam.getClassId(), day, values, 0);
+            } else {
+                append(exam.getExamId(), exam.getPatientId(), exam.getClassId(), day, values, 0);
+            }
+        }
+
+        void append(int examId, int patientId, int classId, int examDay, double[] values, int offset) {
+            if (size == examIds.length) {
+                grow();
+            }
+            set(size, examId, patientId, classId, examDay, values, offset);
+            rowByExamId.put(examId, size);
+            size++;
+        }
+
+        /**
+         * Remove by moving the last row into the hole
+         */
+        void remove(int examId) {
+            int row = rowByExamId.remove(examId);
+            if (row < 0) {
+                return;
+            }
+            int last = --size;
+            if (row != last) {
+                examIds[row] = examIds[last];
+                patientIds[row] = patientIds[last];
+                classIds[row] = classIds[last];
+                examDays[row] = examDays[last];
+                for (double[] column : indicators) {
+                    column[row] = column[last];
+                }
+                rowByExamId.put(examIds[row], row);
+            }
+        }
+
+        private void set(int row, int examId, int patientId, int classId, int examDay,
+                         double[] values, int offset) {
+            examIds[row] = examId;
+            patientIds[row] = patientId;
+            classIds[row] = classId;
+            examDays[row] = examDay;
+            for (int i = 0; i < indicators.length; i++) {
+                indicators[i][row] = values[offset + i];
+            }
+        }
+
+        private void grow() {
+            int capacity = examIds.length * 2;
+            examIds = Arrays.copyOf(examIds, capacity);
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            classIds = Arrays.copyOf(classIds, capacity);
+            examDays = Arrays.copyOf(examDays, capacity);
+            for (int i = 0; i < indicators.length; i++) {
+                indicators[i] = Arrays.copyOf(indicators[i], capacity);
+            }
+        }
+    }
+}
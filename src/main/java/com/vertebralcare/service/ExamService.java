@@ -1,11 +1,21 @@
 package com.vertebralcare.service;
 
-import com.vertebralcare.dao.DiagnosisClassDao;
+import com.vertebralcare.dao.DBUtil;
 import com.vertebralcare.dao.ExamDao;
+import com.vertebralcare.dao.ExamKeys;
+import com.vertebralcare.dao.ExamReviewDao;
+import com.vertebralcare.dao.QueryCache;
+import com.vertebralcare.dao.QueryCache.Table;
+import com.vertebralcare.dao.RowHandler;
 import com.vertebralcare.model.DiagnosisClass;
 import com.vertebralcare.model.Exam;
+import com.vertebralcare.model.ExamReview;
 
+import java.sql.Connection;
+import java.sql.Date;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,20 +23,49 @@ import java.util.List;
  */
 public class ExamService {
 
+    // Shared by all service instances so invalidation is seen everywhere
+    private static final EntityCache<Integer, Exam> EXAM_CACHE =
+            new EntityCache<>("exams", 5000, 5 * 60 * 1000L);
+
     private final ExamDao examDao;
-    private final DiagnosisClassDao diagnosisClassDao;
+    private final DiagnosisClassCache diagnosisClassCache;
+    private final ExamAggregates aggregates;
+    private final SimilarExamIndex similarIndex;
+    private final ExamReviewDao reviewDao;
 
     public ExamService() {
         this.examDao = new ExamDao();
-        this.diagnosisClassDao = new DiagnosisClassDao();
+        this.diagnosisClassCache = DiagnosisClassCache.getInstance();
+        this.aggregates = ExamAggregates.getInstance();
+        this.similarIndex = SimilarExamIndex.getInstance();
+        this.reviewDao = new ExamReviewDao();
     }
 
     /**
-     * 添加检查记录
+     * 添加检查记录，离群的记录在同一事务中加入待复核列表（可用 getReview 查询）
      */
     public int addExam(Exam exam) throws SQLException {
         validateExam(exam);
-        return examDao.insert(exam);
+        RiskService.stampRisk(exam);
+        return aggregates.write(changes -> {
+            // Judged against the statistics before this exam is counted in them
+            ExamReview review = aggregates.screen(exam);
+            int examId;
+            try (Connection conn = DBUtil.getConnection()) {
+                conn.setAutoCommit(false);
+                examId = examDao.insert(conn, exam);
+                if (review != null) {
+                    review.setExamId(examId);
+                    reviewDao.insert(conn, Collections.singletonList(review));
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+            }
+            QueryCache.bump(Table.EXAM);
+            exam.setExamId(examId);
+            changes.added(exam);
+            return examId;
+        });
     }
 
     /**
@@ -34,21 +73,66 @@ public class ExamService {
      */
     public boolean updateExam(Exam exam) throws SQLException {
         validateExam(exam);
-        return examDao.update(exam);
+        RiskService.stampRisk(exam);
+        try {
+            return aggregates.write(changes -> {
+                // Read the stored row rather than the entity cache: its values are what the aggregates hold
+                Exam old = examDao.findById(exam.getExamId());
+                boolean updated = examDao.update(exam);
+                if (updated && old != null) {
+                    changes.removed(old);
+                    changes.added(exam);
+                }
+                return updated;
+            });
+        } finally {
+            if (exam.getExamId() != null) {
+                EXAM_CACHE.invalidate(exam.getExamId());
+            }
+        }
     }
 
     /**
      * 删除检查记录
      */
     public boolean deleteExam(int examId) throws SQLException {
-        return examDao.delete(examId);
+        try {
+            return aggregates.write(changes -> {
+                Exam old = examDao.findById(examId);
+                boolean deleted = examDao.delete(examId);
+                if (deleted && old != null) {
+                    changes.removed(old);
+                }
+                return deleted;
+            });
+        } finally {
+            EXAM_CACHE.invalidate(examId);
+        }
     }
 
     /**
-     * 根据ID获取检查记录
+     * 根据ID获取检查记录（优先读缓存，返回的对象不应修改）
      */
     public Exam getExamById(int examId) throws SQLException {
-        return examDao.findById(examId);
+        return EXAM_CACHE.get(examId, examDao::findById);
+    }
+
+    /**
+     * 查找指标最相似的 k 条历史检查记录（按标准化欧氏距离由近到远，不含该记录本身）
+     * @param exam 查询记录，可以是尚未保存的记录
+     */
+    public List<SimilarExam> findSimilarExams(Exam exam, int k) throws SQLException {
+        int excludeId = exam.getExamId() != null ? exam.getExamId() : 0;
+        List<SimilarExam> nearest = similarIndex.nearest(ExamAggregates.indicators(exam), k, excludeId);
+        List<SimilarExam> result = new ArrayList<>(nearest.size());
+        for (SimilarExam similar : nearest) {
+            Exam found = getExamById(similar.getExamId());
+            // Skip exams deleted since the index answered
+            if (found != null) {
+                result.add(similar.withExam(found));
+            }
+        }
+        return result;
     }
 
     /**
@@ -65,6 +149,92 @@ public class ExamService {
         return examDao.findAll();
     }
 
+    /**
+     * 分页获取检查记录（键集分页）
+     * @param lastSeen 上一页的最后一条记录，首页传 null
+     */
+    public List<Exam> getExamPage(Exam lastSeen, int pageSize) throws SQLException {
+        validatePageSize(pageSize);
+        if (lastSeen == null) {
+            return examDao.findPage(null, null, pageSize);
+        }
+        return examDao.findPage(lastSeen.getExamDate(), lastSeen.getExamId(), pageSize);
+    }
+
+    /**
+     * 按诊断类别分页获取检查记录（键集分页）
+     * @param lastSeen 上一页的最后一条记录，首页传 null
+     */
+    public List<Exam> getExamPageByClassId(int classId, Exam lastSeen, int pageSize) throws SQLException {
+        validatePageSize(pageSize);
+        if (lastSeen == null) {
+            return examDao.findPageByClassId(classId, null, null, pageSize);
+        }
+        return examDao.findPageByClassId(classId, lastSeen.getExamDate(), lastSeen.getExamId(), pageSize);
+    }
+
+    /**
+     * 获取分页排序键索引，配合 getExamPage 实现任意位置跳页
+     * @param classId 诊断类别过滤，null 表示全部
+     */
+    public ExamKeys getExamSortKeys(Integer classId) throws SQLException {
+        return examDao.findSortKeys(classId);
+    }
+
+    /**
+     * 获取按已保存风险分数排序（由高到低）的排序键索引，只包含已打分的记录
+     * @param classId 诊断类别过滤，null 表示全部
+     * @param minRisk 只包含风险不低于此值的记录，0 表示全部已打分记录
+     */
+    public ExamKeys getExamRiskSortKeys(Integer classId, double minRisk) throws SQLException {
+        return examDao.findRiskSortKeys(classId, minRisk);
+    }
+
+    /**
+     * 从排序键索引的第 firstRow 行开始读取一页，耗时与所在位置无关
+     * @param classId 与 keys 相同的诊断类别过滤，null 表示全部
+     */
+    public List<Exam> getExamPageAt(ExamKeys keys, int firstRow, Integer classId, int pageSize)
+            throws SQLException {
+        validatePageSize(pageSize);
+        Date afterDate = firstRow > 0 ? keys.getExamDate(firstRow - 1) : null;
+        Integer afterId = firstRow > 0 ? keys.getExamId(firstRow - 1) : null;
+        long generation = EXAM_CACHE.generation();
+        List<Exam> page = classId != null
+                ? examDao.findPageByClassId(classId, afterDate, afterId, pageSize)
+                : examDao.findPage(afterDate, afterId, pageSize);
+        // Rows just shown in the table are the ones most likely to be opened next
+        EXAM_CACHE.putAll(page, Exam::getExamId, generation);
+        return page;
+    }
+
+    /**
+     * 从排序键索引的第 firstRow 行开始按风险读取一页（keys 须来自 getExamRiskSortKeys）
+     * @param classId 与 keys 相同的诊断类别过滤，null 表示全部
+     */
+    public List<Exam> getExamRiskPageAt(ExamKeys keys, int firstRow, Integer classId, int pageSize)
+            throws SQLException {
+        validatePageSize(pageSize);
+        if (!keys.isRiskOrder()) {
+            throw new IllegalArgumentException("排序键索引不是按风险排序的");
+        }
+        Double afterRisk = firstRow > 0 ? keys.getRiskScore(firstRow - 1) : null;
+        Integer afterId = firstRow > 0 ? keys.getExamId(firstRow - 1) : null;
+        long generation = EXAM_CACHE.generation();
+        List<Exam> page = examDao.findPageByRisk(classId, keys.getMinRisk(), afterRisk, afterId, pageSize);
+        EXAM_CACHE.putAll(page, Exam::getExamId, generation);
+        return page;
+    }
+
+    /**
+     * 流式遍历所有检查记录，适用于导出、统计等批处理，内存占用恒定
+     * @param handler 逐行回调，返回 false 提前终止
+     * @return 已处理的行数
+     */
+    public int forEachExam(RowHandler<Exam> handler) throws SQLException {
+        return examDao.streamAll(handler);
+    }
+
     /**
      * 按诊断类别查询检查记录
      */
@@ -80,17 +250,77 @@ public class ExamService {
     }
 
     /**
-     * 获取所有诊断类别
+     * 获取所有诊断类别（来自参考数据缓存，只读列表）
      */
     public List<DiagnosisClass> getAllDiagnosisClasses() throws SQLException {
-        return diagnosisClassDao.findAll();
+        return diagnosisClassCache.getAll();
     }
 
     /**
      * 根据类别代码获取诊断类别
      */
     public DiagnosisClass getDiagnosisClassByCode(String code) throws SQLException {
-        return diagnosisClassDao.findByCode(code);
+        return diagnosisClassCache.getByCode(code);
+    }
+
+    /**
+     * 检查记录的复核记录，未被判为离群时返回 null
+     */
+    public ExamReview getReview(int examId) throws SQLException {
+        return reviewDao.findByExamId(examId);
+    }
+
+    /**
+     * 待复核的离群记录，按偏离程度由大到小
+     */
+    public List<ExamReview> getPendingReviews(int limit) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("条数必须大于0");
+        }
+        return reviewDao.findPending(limit);
+    }
+
+    /**
+     * 待复核的离群记录数
+     */
+    public int countPendingReviews() throws SQLException {
+        return reviewDao.countPending();
+    }
+
+    /**
+     * 标记离群记录已复核
+     */
+    public boolean markReviewed(int examId) throws SQLException {
+        return reviewDao.markReviewed(examId);
+    }
+
+    /**
+     * 检查记录缓存运行指标
+     */
+    public CacheStats getCacheStats() {
+        return EXAM_CACHE.getStats();
+    }
+
+    /**
+     * 使某病人的所有检查记录缓存失效（病人修改或删除时调用）
+     */
+    static void evictExamsOfPatient(int patientId) {
+        EXAM_CACHE.invalidateIf(exam -> exam.getPatientId() != null && exam.getPatientId() == patientId);
+    }
+
+    /**
+     * 使一批检查记录的缓存失效（风险分数重算后调用）
+     */
+    static void evictExams(int[] examIds, int count) {
+        for (int i = 0; i < count; i++) {
+            EXAM_CACHE.invalidate(examIds[i]);
+        }
+    }
+
+    private void validatePageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("每页条数必须大于0");
+        }
     }
 
     /**
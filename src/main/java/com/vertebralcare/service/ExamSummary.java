@@ -0,0 +1,105 @@
+package com.vertebralcare.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 检查记录全量分析结果（不可变）
+ * 由 ExamAnalytics 对列式存储并行扫描一遍得到：按类别的数量、均值、样本标准差、最小值、最大值，
+ * 以及全部记录上6个指标两两之间的 Pearson 相关系数。
+ */
+public final class ExamSummary {
+
+    private final int rowCount;
+    private final long elapsedNanos;
+    private final int parallelism;
+    private final Map<String, Integer> countByClass;
+    private final Map<String, double[]> averagesByClass;
+    private final Map<String, double[]> stdDevsByClass;
+    private final Map<String, double[]> minByClass;
+    private final Map<String, double[]> maxByClass;
+    private final double[][] correlation;
+
+    ExamSummary(int rowCount, long elapsedNanos, int parallelism, Map<String, Integer> countByClass,
+                Map<String, double[]> averagesByClass, Map<String, double[]> stdDevsByClass,
+                Map<String, double[]> minByClass, Map<String, double[]> maxByClass, double[][] correlation) {
+        this.rowCount = rowCount;
+        this.elapsedNanos = elapsedNanos;
+        this.parallelism = parallelism;
+        this.countByClass = Collections.unmodifiableMap(new LinkedHashMap<>(countByClass));
+        this.averagesByClass = copy(averagesByClass);
+        this.stdDevsByClass = copy(stdDevsByClass);
+        this.minByClass = copy(minByClass);
+        this.maxByClass = copy(maxByClass);
+        this.correlation = new double[correlation.length][];
+        for (int i = 0; i < correlation.length; i++) {
+            this.correlation[i] = correlation[i].clone();
+        }
+    }
+
+    /** 参与分析的检查记录数 */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /** 扫描耗时（纳秒，不含首次加载列式存储） */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** 扫描使用的并行度 */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return Map<类别描述, 数量>
+     */
+    public Map<String, Integer> getCountByClass() {
+        return countByClass;
+    }
+
+    /**
+     * @return Map<类别描述, double[6]> 6个指标的平均值
+     */
+    public Map<String, double[]> getAveragesByClass() {
+        return averagesByClass;
+    }
+
+    /**
+     * @return Map<类别描述, double[6]> 样本标准差，数量不足2的类别为 NaN
+     */
+    public Map<String, double[]> getStdDevsByClass() {
+        return stdDevsByClass;
+    }
+
+    /**
+     * @return Map<类别描述, double[6]> 6个指标的最小值
+     */
+    public Map<String, double[]> getMinByClass() {
+        return minByClass;
+    }
+
+    /**
+     * @return Map<类别描述, double[6]> 6个指标的最大值
+     */
+    public Map<String, double[]> getMaxByClass() {
+        return maxByClass;
+    }
+
+    /**
+     * 第 i、j 个指标的相关系数（顺序同 StatisticsService.getIndicatorNames），任一指标方差为0时为 NaN
+     */
+    public double getCorrelation(int i, int j) {
+        return correlation[i][j];
+    }
+
+    private static Map<String, double[]> copy(Map<String, double[]> source) {
+        Map<String, double[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> entry : source.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().clone());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+}
@@ -0,0 +1,90 @@
+package com.vertebralcare.service;
+
+import java.util.Arrays;
+
+/**
+ * Histogram with fixed, equal-width bins over [low, high)
+ * Values outside the range are counted separately as below/above, so outliers don't
+ * stretch the bins. Histograms with the same layout can be merged. Not thread-safe.
+ */
+public final class Histogram {
+
+    private final double low;
+    private final double high;
+    private final long[] counts;
+    private long below;
+    private long above;
+
+    public Histogram(double low, double high, int bins) {
+        if (!(high > low) || bins <= 0) {
+            throw new IllegalArgumentException("Invalid histogram layout: [" + low + ", " + high + ") / " + bins);
+        }
+        this.low = low;
+        this.high = high;
+        this.counts = new long[bins];
+    }
+
+    /**
+     * Count one value (NaN is ignored)
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value < low) {
+            below++;
+        } else if (value >= high) {
+            above++;
+        } else {
+            int bin = (int) ((value - low) / getBinWidth());
+            counts[Math.min(bin, counts.length - 1)]++;
+        }
+    }
+
+    /**
+     * Fold another histogram with the same layout into this one
+     */
+    public void merge(Histogram other) {
+        if (other.low != low || other.high != high || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bins");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        below += other.below;
+        above += other.above;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public double getBinWidth() {
+        return (high - low) / counts.length;
+    }
+
+    /**
+     * Per-bin counts (a copy)
+     */
+    public long[] getCounts() {
+        return Arrays.copyOf(counts, counts.length);
+    }
+
+    /**
+     * Values below low
+     */
+    public long getBelow() {
+        return below;
+    }
+
+    /**
+     * Values at or above high
+     */
+    public long getAbove() {
+        return above;
+    }
+}
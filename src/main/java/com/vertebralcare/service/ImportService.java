@@ -1,32 +1,102 @@
 package com.vertebralcare.service;
 
-import com.vertebralcare.dao.DiagnosisClassDao;
+import com.vertebralcare.dao.BulkLoadDao;
+import com.vertebralcare.dao.DBUtil;
 import com.vertebralcare.dao.ExamDao;
+import com.vertebralcare.dao.ExamReviewDao;
+import com.vertebralcare.dao.ExamRollupDao;
+import com.vertebralcare.dao.ImportCheckpointDao;
 import com.vertebralcare.dao.PatientDao;
+import com.vertebralcare.dao.QueryCache;
+import com.vertebralcare.dao.QueryCache.Table;
+import com.vertebralcare.model.DiagnosisClass;
 import com.vertebralcare.model.Exam;
+import com.vertebralcare.model.ExamReview;
+import com.vertebralcare.model.ImportCheckpoint;
 import com.vertebralcare.model.Patient;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * CSV Data Import Service
  */
 public class ImportService {
 
+    /**
+     * How parsed rows are written to the database
+     */
+    public enum Engine {
+        /** Batched INSERTs per chunk, patient keys read back from the driver */
+        BATCH_INSERT("Row batches (INSERT)"),
+        /** LOAD DATA LOCAL INFILE into a staging table, then set-based INSERT ... SELECT */
+        BULK_LOAD("Bulk load (LOAD DATA)");
+
+        private final String label;
+
+        Engine(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
     private final PatientDao patientDao;
     private final ExamDao examDao;
-    private final DiagnosisClassDao diagnosisClassDao;
+    private final DiagnosisClassCache diagnosisClassCache;
+    private final ExamAggregates aggregates;
+    private final BulkLoadDao bulkLoadDao;
+    private final ImportCheckpointDao checkpointDao;
+    private final ExamReviewDao reviewDao;
+    private final ExamRollupDao rollupDao;
     private final Random random = new Random();
 
+    // Read buffer for hashing a whole file into its key
+    private static final int FILE_KEY_BUFFER_BYTES = 64 * 1024;
+
+    // Expected CSV columns, in file order
+    private static final String[] COLUMNS = {
+            "pelvic incidence", "pelvic tilt", "lumbar lordosis angle", "sacral slope",
+            "pelvic radius", "grade of spondylolisthesis", "class"
+    };
+
+    private volatile int chunkSize = 1000;
+    private volatile int writerThreads = 2;
+    private volatile Engine engine = Engine.BATCH_INSERT;
+
     // Names for generating virtual patients
     private static final String[] FIRST_NAMES = {
             "James", "John", "Robert", "Michael", "William", "David", "Richard", "Joseph", "Thomas", "Charles",
@@ -44,83 +114,484 @@ public class ImportService {
     public ImportService() {
         this.patientDao = new PatientDao();
         this.examDao = new ExamDao();
-        this.diagnosisClassDao = new DiagnosisClassDao();
+        this.diagnosisClassCache = DiagnosisClassCache.getInstance();
+        this.aggregates = ExamAggregates.getInstance();
+        this.bulkLoadDao = new BulkLoadDao();
+        this.checkpointDao = new ImportCheckpointDao();
+        this.reviewDao = new ExamReviewDao();
+        this.rollupDao = new ExamRollupDao();
     }
 
     /**
-     * Import CSV file
-     * @param csvFile CSV file
-     * @param progressCallback Progress callback (current, total)
-     * @return Number of imported records
+     * Rows written per transaction
      */
-    public int importCSV(File csvFile, ProgressCallback progressCallback) throws IOException, SQLException {
-        List<String[]> records = parseCSV(csvFile);
+    public int getChunkSize() {
+        return chunkSize;
+    }
 
-        if (records.isEmpty()) {
-            return 0;
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
         }
+        this.chunkSize = chunkSize;
+    }
 
-        int total = records.size();
-        int imported = 0;
+    /**
+     * Number of chunk writer threads
+     * Writers write staging files and insert their chunks in parallel, each on its own connection;
+     * only the rollup update and commit of each chunk run one at a time under the ExamAggregates lock.
+     */
+    public int getWriterThreads() {
+        return Math.min(writerThreads, getMaxWriterThreads());
+    }
 
-        for (int i = 0; i < records.size(); i++) {
-            String[] row = records.get(i);
+    public void setWriterThreads(int writerThreads) {
+        if (writerThreads <= 0 || writerThreads > getMaxWriterThreads()) {
+            throw new IllegalArgumentException("Writer thread count must be between 1 and " + getMaxWriterThreads());
+        }
+        this.writerThreads = writerThreads;
+    }
 
-            try {
-                // 1. Generate virtual patient
-                Patient patient = generateVirtualPatient();
-                int patientId = patientDao.insert(patient);
+    /**
+     * Most writer threads the connection pool can serve
+     * Each writer holds a connection while it waits for the ExamAggregates lock. One connection is
+     * left over so the lock holder can still borrow one, e.g. to seed the outlier statistics.
+     */
+    public static int getMaxWriterThreads() {
+        return Math.max(1, DBUtil.getMaxPoolSize() - 1);
+    }
 
-                // 2. Parse exam data
-                Exam exam = parseExamFromRow(row, patientId);
+    public Engine getEngine() {
+        return engine;
+    }
 
-                // 3. Insert exam record
-                examDao.insert(exam);
+    public void setEngine(Engine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Engine must not be null");
+        }
+        this.engine = engine;
+    }
 
-                imported++;
+    /**
+     * Progress left behind by earlier imports of this file
+     * @return null if the file has never been (partly) imported
+     */
+    public ResumePoint getResumePoint(File csvFile) throws IOException, SQLException {
+        List<ImportCheckpoint> checkpoints = checkpointDao.findByFileKey(fileKey(csvFile));
+        if (checkpoints.isEmpty()) {
+            return null;
+        }
+        CommittedRanges ranges = new CommittedRanges(checkpoints);
+        long rows = 0;
+        Timestamp last = null;
+        for (ImportCheckpoint checkpoint : checkpoints) {
+            rows += checkpoint.getRowsImported();
+            if (last == null || (checkpoint.getCommittedAt() != null && checkpoint.getCommittedAt().after(last))) {
+                last = checkpoint.getCommittedAt();
+            }
+        }
+        // The first chunk starts after an optional 3-byte BOM
+        boolean complete = ranges.size() == 1 && ranges.start(0) <= 3 && ranges.end(0) >= csvFile.length();
+        return new ResumePoint(checkpoints.size(), rows, ranges.coveredBytes(), csvFile.length(), complete, last);
+    }
 
-                // 4. Progress callback
-                if (progressCallback != null) {
-                    progressCallback.onProgress(i + 1, total);
-                }
+    /**
+     * Forget the import progress of this file, the next import starts from the beginning
+     */
+    public void clearCheckpoints(File csvFile) throws IOException, SQLException {
+        checkpointDao.deleteByFileKey(fileKey(csvFile));
+    }
 
-            } catch (Exception e) {
-                System.err.println("Failed to import row " + (i + 1) + ": " + e.getMessage());
+    /**
+     * Identify a file by its length and a hash of its whole content
+     * A file that is edited anywhere or appended to gets a new key and is imported from scratch.
+     * Hashing reads the file once, which is cheap next to parsing and inserting it.
+     */
+    private String fileKey(File csvFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[FILE_KEY_BUFFER_BYTES];
+        try (InputStream in = new FileInputStream(csvFile)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
             }
         }
 
-        return imported;
+        StringBuilder key = new StringBuilder(Long.toHexString(csvFile.length())).append('-');
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
     }
 
     /**
-     * Parse CSV file
+     * Import CSV file
+     * The calling thread parses the file into chunks and hands them to writer threads over a
+     * bounded queue. Each chunk is written in its own transaction: patients are batch-inserted
+     * first, their generated keys are attached to the exams, then the exams are batch-inserted.
+     * Writers insert their chunks concurrently; each chunk then updates the rollup and commits
+     * inside ExamAggregates.write(), one chunk at a time.
+     * A failed chunk is rolled back on its own and the import carries on; failures are reported
+     * through ProgressCallback.onChunkFailed and in the returned ImportResult. A failed chunk
+     * records no checkpoint, so running the import again retries it.
+     * With the BULK_LOAD engine each chunk is instead written to a staging file and loaded
+     * with LOAD DATA LOCAL INFILE, see BulkLoadDao.
+     * Every row is screened by OutlierDetector before its chunk is written; outliers are still
+     * imported, and their ExamReview rows are inserted in the chunk's transaction.
+     * Every chunk records an ImportCheckpoint in its own transaction. If the same file was
+     * partly imported before, byte ranges already committed are skipped, so re-running an
+     * interrupted import continues where it stopped without duplicating rows.
+     * Use clearCheckpoints() to import a file again from the start.
+     * @param csvFile CSV file
+     * @param progressCallback Progress callback (bytes processed, file size)
+     * @return Imported row count and the chunks that failed
      */
-    private List<String[]> parseCSV(File csvFile) throws IOException {
-        List<String[]> records = new ArrayList<>();
+    public ImportResult importCSV(File csvFile, ProgressCallback progressCallback) throws IOException, SQLException {
+        final int writers = getWriterThreads();
+        final Engine chunkEngine = engine;
+        final long totalBytes = Math.max(1, csvFile.length());
+        final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(writers * 2);
+        final AtomicInteger imported = new AtomicInteger();
+        final List<ChunkFailure> failures = Collections.synchronizedList(new ArrayList<>());
+        final String fileKey = fileKey(csvFile);
+        final CommittedRanges committed = new CommittedRanges(checkpointDao.findByFileKey(fileKey));
+        final AtomicLong bytesDone = new AtomicLong(committed.coveredBytes());
+
+        ExecutorService pool = Executors.newFixedThreadPool(writers, new ThreadFactory() {
+            private final AtomicInteger seq = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "csv-import-writer-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            futures.add(pool.submit(() -> {
+                Chunk chunk;
+                while ((chunk = queue.take()) != Chunk.END) {
+                    imported.addAndGet(writeChunk(chunk, chunkEngine, fileKey, progressCallback, failures));
+                    long done = bytesDone.addAndGet(chunk.endOffset - chunk.startOffset);
+                    if (progressCallback != null) {
+                        progressCallback.onProgress(Math.min(done, totalBytes), totalBytes);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        try {
+            parseChunks(csvFile, committed, queue, progressCallback);
+            for (int i = 0; i < writers; i++) {
+                queue.put(Chunk.END);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Import writer failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
-            String line;
-            boolean isFirstLine = true;
+        List<ChunkFailure> failed = new ArrayList<>(failures);
+        failed.sort((a, b) -> Long.compare(a.getFirstLine(), b.getFirstLine()));
+        return new ImportResult(imported.get(), failed);
+    }
 
-            while ((line = br.readLine()) != null) {
-                // Skip header row
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    // Check if header row
-                    if (line.toLowerCase().contains("pelvic") || line.toLowerCase().contains("class")) {
-                        continue;
+    /**
+     * Stream the CSV file into chunks and put them on the queue, skipping committed ranges
+     */
+    private void parseChunks(File csvFile, CommittedRanges committed, BlockingQueue<Chunk> queue,
+                             ProgressCallback progressCallback)
+            throws IOException, SQLException, InterruptedException {
+        final int rowsPerChunk = chunkSize;
+        // Class labels repeat on every row, resolve each one once per import
+        Map<String, DiagnosisClass> classes = new LinkedHashMap<>();
+        CsvRow row = new CsvRow();
+        int chunkNo = committed.maxChunkNo();
+        int nextRange = 0;
+
+        try (CsvReader reader = new CsvReader(csvFile)) {
+            final long dataStart = reader.position();
+            Chunk chunk = new Chunk(++chunkNo, reader.getLineNumber(), dataStart, rowsPerChunk);
+
+            while (true) {
+                // Jump over byte ranges committed by an earlier run
+                while (nextRange < committed.size() && reader.position() >= committed.start(nextRange)) {
+                    if (reader.position() < committed.end(nextRange)) {
+                        if (chunk.endOffset > chunk.startOffset) {
+                            queue.put(chunk);
+                        }
+                        reader.seek(committed.end(nextRange), committed.nextLine(nextRange));
+                        chunk = new Chunk(++chunkNo, reader.getLineNumber(), reader.position(), rowsPerChunk);
                     }
+                    nextRange++;
+                }
+
+                if (!reader.next(row)) {
+                    break;
+                }
+                chunk.endOffset = row.getEndOffset();
+                chunk.nextLine = reader.getLineNumber();
+                if (row.isBlank()) {
+                    continue;
+                }
+
+                // Skip header row: the first record whose first field is not a number
+                if (row.getStartOffset() == dataStart && isHeader(row)) {
+                    continue;
+                }
+
+                if (row.getFieldCount() < COLUMNS.length) {
+                    rejectRow(progressCallback, row.getLineNumber(), row.getFieldCount() + 1,
+                            "expected " + COLUMNS.length + " columns, found " + row.getFieldCount());
+                    continue;
                 }
 
-                // Parse CSV row
-                String[] values = line.split(",");
-                if (values.length >= 7) {
-                    records.add(values);
+                try {
+                    DiagnosisClass diagnosisClass = resolveClass(row, classes);
+                    Exam exam = parseExamFromRow(row, diagnosisClass.getClassId());
+                    chunk.patients.add(generateVirtualPatient());
+                    chunk.exams.add(exam);
+                    chunk.lines.add(row.getLineNumber());
+                } catch (InvalidValueException e) {
+                    rejectRow(progressCallback, row.getLineNumber(), e.column + 1,
+                            "invalid " + COLUMNS[e.column] + " '" + row.getString(e.column) + "'");
+                }
+
+                if (chunk.exams.size() >= rowsPerChunk) {
+                    queue.put(chunk);
+                    chunk = new Chunk(++chunkNo, reader.getLineNumber(), chunk.endOffset, rowsPerChunk);
+                }
+            }
+
+            if (chunk.endOffset > chunk.startOffset) {
+                queue.put(chunk);
+            }
+        }
+    }
+
+    private void rejectRow(ProgressCallback progressCallback, long line, int column, String reason) {
+        System.err.println("Skipped line " + line + ", column " + column + ": " + reason);
+        if (progressCallback != null) {
+            progressCallback.onRowRejected(line, column, reason);
+        }
+    }
+
+    private boolean isHeader(CsvRow row) {
+        try {
+            row.getDouble(0);
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Write one chunk in a single transaction
+     * A failure is added to failures and reported to the callback instead of stopping the import.
+     * @return Number of rows committed, 0 if the chunk failed
+     */
+    private int writeChunk(Chunk chunk, Engine chunkEngine, String fileKey, ProgressCallback progressCallback,
+                           List<ChunkFailure> failures) {
+        File stagingFile = null;
+        // Set once the transaction is rolled back, or committed; a failure is described by whichever happened
+        final boolean[] rolledBack = {false};
+        final boolean[] committed = {false};
+        try {
+            // Screened against the statistics before this chunk, without holding a connection: the first
+            // screen seeds the statistics and borrows one while it holds the aggregates lock
+            ExamReview[] flagged = new ExamReview[chunk.exams.size()];
+            List<ExamReview> reviews = new ArrayList<>();
+            for (int i = 0; i < flagged.length; i++) {
+                flagged[i] = aggregates.screen(chunk.exams.get(i));
+                if (flagged[i] != null) {
+                    reviews.add(flagged[i]);
+                }
+            }
+            // Write the staging file before borrowing a connection so it isn't held during file I/O
+            if (chunkEngine == Engine.BULK_LOAD && !chunk.exams.isEmpty()) {
+                stagingFile = writeStagingFile(chunk);
+            }
+            try (Connection conn = DBUtil.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    // Writers insert in parallel: these rows are new, so no other writer waits for their locks
+                    int rows = 0;
+                    if (stagingFile != null) {
+                        rows = loadStagingFile(conn, stagingFile, chunk);
+                    } else if (!chunk.exams.isEmpty()) {
+                        rows = insertBatches(conn, chunk);
+                    }
+                    for (int i = 0; i < flagged.length; i++) {
+                        if (flagged[i] != null) {
+                            flagged[i].setExamId(chunk.exams.get(i).getExamId());
+                        }
+                    }
+                    reviewDao.insert(conn, reviews);
+                    // Recorded even for chunks with only rejected rows, so the range isn't parsed again
+                    checkpointDao.insert(conn, new ImportCheckpoint(fileKey, chunk.chunkNo,
+                            chunk.startOffset, chunk.endOffset, chunk.nextLine, rows));
+
+                    // Rollup rows are shared with every other writer: take them only under the aggregates
+                    // lock, as interactive writes do, and keep them until the commit
+                    final int inserted = rows;
+                    int written = aggregates.write(changes -> {
+                        rollupDao.addExams(conn, chunk.exams);
+                        conn.commit();
+                        committed[0] = true;
+                        if (inserted > 0) {
+                            changes.addedAll(chunk.exams);
+                        }
+                        return inserted;
+                    });
+                    if (written > 0) {
+                        QueryCache.bump(Table.PATIENT, Table.EXAM);
+                    }
+                    if (progressCallback != null) {
+                        for (int i = 0; i < flagged.length; i++) {
+                            if (flagged[i] != null) {
+                                progressCallback.onRowFlagged(chunk.lines.get(i), flagged[i]);
+                            }
+                        }
+                    }
+                    return written;
+                } catch (SQLException | RuntimeException e) {
+                    if (!committed[0]) {
+                        try {
+                            conn.rollback();
+                            rolledBack[0] = true;
+                        } catch (SQLException rollbackFailure) {
+                            e.addSuppressed(rollbackFailure);
+                        }
+                    }
+                    throw e;
                 }
             }
+        } catch (IOException | SQLException | RuntimeException e) {
+            if (committed[0]) {
+                // The rows are in the database but the in-memory aggregates missed them: rebuild those instead
+                aggregates.invalidate();
+                QueryCache.bump(Table.PATIENT, Table.EXAM);
+                System.err.println("Chunk starting at line " + chunk.firstLine + " was committed, " +
+                        "but updating the in-memory statistics failed: " + e.getMessage());
+                return chunk.exams.size();
+            }
+            ChunkFailure failure = new ChunkFailure(chunk.firstLine, chunk.nextLine, chunk.exams.size(),
+                    rolledBack[0], e.getMessage());
+            System.err.println(failure);
+            failures.add(failure);
+            if (progressCallback != null) {
+                progressCallback.onChunkFailed(failure);
+            }
+            return 0;
+        } finally {
+            if (stagingFile != null && !stagingFile.delete()) {
+                stagingFile.deleteOnExit();
+            }
+        }
+    }
+
+    private int loadStagingFile(Connection conn, File stagingFile, Chunk chunk) throws SQLException {
+        int[] patientIds = new int[chunk.exams.size()];
+        int[] examIds = new int[chunk.exams.size()];
+        int written = bulkLoadDao.load(conn, stagingFile, patientIds, examIds);
+        for (int i = 0; i < chunk.exams.size(); i++) {
+            chunk.patients.get(i).setPatientId(patientIds[i]);
+            chunk.exams.get(i).setPatientId(patientIds[i]);
+            chunk.exams.get(i).setExamId(examIds[i]);
+        }
+        return written;
+    }
+
+    private int insertBatches(Connection conn, Chunk chunk) throws SQLException {
+        patientDao.batchInsert(conn, chunk.patients);
+        for (int i = 0; i < chunk.exams.size(); i++) {
+            Exam exam = chunk.exams.get(i);
+            exam.setPatientId(chunk.patients.get(i).getPatientId());
+            RiskService.stampRisk(exam);
+        }
+        return examDao.batchInsert(conn, chunk.exams);
+    }
+
+    /**
+     * Write the chunk as a tab-separated staging file in BulkLoadDao.STAGING_COLUMNS order
+     */
+    private File writeStagingFile(Chunk chunk) throws IOException {
+        File dir = DBUtil.getBulkLoadDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create bulk load directory " + dir);
+        }
+        File file = File.createTempFile("import-", ".tsv", dir);
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            for (int i = 0; i < chunk.exams.size(); i++) {
+                Patient patient = chunk.patients.get(i);
+                Exam exam = chunk.exams.get(i);
+                RiskService.stampRisk(exam);
+                out.write(Integer.toString(i + 1));
+                writeField(out, patient.getName());
+                writeField(out, patient.getGender());
+                writeField(out, patient.getBirthDate());
+                writeField(out, patient.getPhone());
+                writeField(out, exam.getExamDate());
+                writeField(out, exam.getPelvicIncidence());
+                writeField(out, exam.getPelvicTilt());
+                writeField(out, exam.getLumbarLordosisAngle());
+                writeField(out, exam.getSacralSlope());
+                writeField(out, exam.getPelvicRadius());
+                writeField(out, exam.getDegreeSpondylolisthesis());
+                writeField(out, exam.getClassId());
+                writeField(out, exam.getNotes());
+                writeField(out, exam.getRiskScore());
+                writeField(out, exam.getModelVersion());
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
         }
+        return file;
+    }
 
-        return records;
+    private void writeField(Writer out, Object value) throws IOException {
+        out.write('\t');
+        if (value == null) {
+            out.write("\\N");
+            return;
+        }
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
     }
 
     /**
@@ -155,11 +626,9 @@ public class ImportService {
     /**
      * Parse exam record from CSV row
      */
-    private Exam parseExamFromRow(String[] row, int patientId) throws SQLException {
+    private Exam parseExamFromRow(CsvRow row, int classId) {
         Exam exam = new Exam();
 
-        exam.setPatientId(patientId);
-
         // Random exam date (within last 5 years)
         long minDay = Date.valueOf("2020-01-01").getTime();
         long maxDay = Date.valueOf("2025-12-01").getTime();
@@ -167,16 +636,14 @@ public class ImportService {
         exam.setExamDate(new Date(randomDay));
 
         // 6 indicators
-        exam.setPelvicIncidence(parseDouble(row[0]));
-        exam.setPelvicTilt(parseDouble(row[1]));
-        exam.setLumbarLordosisAngle(parseDouble(row[2]));
-        exam.setSacralSlope(parseDouble(row[3]));
-        exam.setPelvicRadius(parseDouble(row[4]));
-        exam.setDegreeSpondylolisthesis(parseDouble(row[5]));
+        exam.setPelvicIncidence(parseDouble(row, 0));
+        exam.setPelvicTilt(parseDouble(row, 1));
+        exam.setLumbarLordosisAngle(parseDouble(row, 2));
+        exam.setSacralSlope(parseDouble(row, 3));
+        exam.setPelvicRadius(parseDouble(row, 4));
+        exam.setDegreeSpondylolisthesis(parseDouble(row, 5));
 
         // Diagnosis class
-        String classLabel = row[6].trim();
-        int classId = diagnosisClassDao.getClassIdByLabel(classLabel);
         exam.setClassId(classId);
 
         // Notes
@@ -186,13 +653,34 @@ public class ImportService {
     }
 
     /**
-     * Safely parse double
+     * Diagnosis class of the row, matched against labels already seen without decoding the field
+     * A label seen for the first time is looked up in the class cache, and added as a new
+     * diagnosis class if it doesn't exist yet
+     */
+    private DiagnosisClass resolveClass(CsvRow row, Map<String, DiagnosisClass> classes) throws SQLException {
+        for (Map.Entry<String, DiagnosisClass> entry : classes.entrySet()) {
+            if (row.fieldEqualsIgnoreCase(6, entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        String classLabel = row.getString(6);
+        if (classLabel.isEmpty()) {
+            throw new InvalidValueException(6);
+        }
+        DiagnosisClass diagnosisClass = diagnosisClassCache.getOrCreate(classLabel);
+        classes.put(classLabel, diagnosisClass);
+        return diagnosisClass;
+    }
+
+    /**
+     * Parse an indicator column
+     * @throws InvalidValueException if the value is not a number
      */
-    private double parseDouble(String s) {
+    private double parseDouble(CsvRow row, int field) {
         try {
-            return Double.parseDouble(s.trim());
+            return row.getDouble(field);
         } catch (NumberFormatException e) {
-            return 0.0;
+            throw new InvalidValueException(field);
         }
     }
 
@@ -200,6 +688,250 @@ public class ImportService {
      * Progress callback interface
      */
     public interface ProgressCallback {
-        void onProgress(int current, int total);
+        void onProgress(long current, long total);
+
+        /**
+         * A row was skipped because it could not be parsed
+         * @param line 1-based line number in the file
+         * @param column 1-based column number
+         */
+        default void onRowRejected(long line, int column, String reason) {
+        }
+
+        /**
+         * A chunk could not be written; its rows are not imported and no checkpoint is recorded
+         */
+        default void onChunkFailed(ChunkFailure failure) {
+        }
+
+        /**
+         * A row was imported but judged an outlier and added to the review list
+         * @param line 1-based line number in the file
+         */
+        default void onRowFlagged(long line, ExamReview review) {
+        }
+    }
+
+    /**
+     * Unparseable value in a known column, turned into a row rejection by the parser loop
+     */
+    private static class InvalidValueException extends RuntimeException {
+        final int column;
+
+        InvalidValueException(int column) {
+            super(null, null, false, false);
+            this.column = column;
+        }
+    }
+
+    /**
+     * Rows parsed from a contiguous range of the file, written in one transaction
+     */
+    private static class Chunk {
+        static final Chunk END = new Chunk(0, 0, 0, 0);
+
+        final int chunkNo;
+        final long firstLine;
+        final long startOffset;
+        final List<Patient> patients;
+        final List<Exam> exams;
+        final List<Long> lines;
+        long endOffset;
+        long nextLine;
+
+        Chunk(int chunkNo, long firstLine, long startOffset, int capacity) {
+            this.chunkNo = chunkNo;
+            this.firstLine = firstLine;
+            this.nextLine = firstLine;
+            this.startOffset = startOffset;
+            this.endOffset = startOffset;
+            this.patients = new ArrayList<>(capacity);
+            this.exams = new ArrayList<>(capacity);
+            this.lines = new ArrayList<>(capacity);
+        }
+    }
+
+    /**
+     * Outcome of an import run
+     */
+    public static class ImportResult {
+        private final int importedRows;
+        private final List<ChunkFailure> failures;
+
+        ImportResult(int importedRows, List<ChunkFailure> failures) {
+            this.importedRows = importedRows;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public int getImportedRows() {
+            return importedRows;
+        }
+
+        /** Failed chunks in file order, empty if every chunk was written */
+        public List<ChunkFailure> getFailures() {
+            return failures;
+        }
+
+        public int getFailedRows() {
+            int rows = 0;
+            for (ChunkFailure failure : failures) {
+                rows += failure.getRows();
+            }
+            return rows;
+        }
+
+        public boolean hasFailures() {
+            return !failures.isEmpty();
+        }
+    }
+
+    /**
+     * A chunk that could not be written
+     */
+    public static class ChunkFailure {
+        private final long firstLine;
+        private final long nextLine;
+        private final int rows;
+        private final boolean rolledBack;
+        private final String reason;
+
+        ChunkFailure(long firstLine, long nextLine, int rows, boolean rolledBack, String reason) {
+            this.firstLine = firstLine;
+            this.nextLine = nextLine;
+            this.rows = rows;
+            this.rolledBack = rolledBack;
+            this.reason = reason;
+        }
+
+        /** 1-based line number of the chunk's first line */
+        public long getFirstLine() {
+            return firstLine;
+        }
+
+        /** 1-based line number of the chunk's last line */
+        public long getLastLine() {
+            return Math.max(firstLine, nextLine - 1);
+        }
+
+        /** Parsed rows in the chunk, none of which were imported */
+        public int getRows() {
+            return rows;
+        }
+
+        /** Whether a transaction was started and rolled back, rather than failing before any write */
+        public boolean isRolledBack() {
+            return rolledBack;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Failed to import lines " + firstLine + "-" + getLastLine() + " (" + rows + " rows " +
+                    (rolledBack ? "rolled back" : "not written") + "): " + reason;
+        }
+    }
+
+    /**
+     * Summary of an earlier, possibly interrupted, import of a file
+     */
+    public static class ResumePoint {
+        private final int committedChunks;
+        private final long importedRows;
+        private final long bytesDone;
+        private final long fileLength;
+        private final boolean complete;
+        private final Timestamp lastCommittedAt;
+
+        ResumePoint(int committedChunks, long importedRows, long bytesDone, long fileLength,
+                    boolean complete, Timestamp lastCommittedAt) {
+            this.committedChunks = committedChunks;
+            this.importedRows = importedRows;
+            this.bytesDone = bytesDone;
+            this.fileLength = fileLength;
+            this.complete = complete;
+            this.lastCommittedAt = lastCommittedAt;
+        }
+
+        public int getCommittedChunks() {
+            return committedChunks;
+        }
+
+        public long getImportedRows() {
+            return importedRows;
+        }
+
+        public long getBytesDone() {
+            return bytesDone;
+        }
+
+        public long getFileLength() {
+            return fileLength;
+        }
+
+        /** Whether the whole file has already been imported */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public Timestamp getLastCommittedAt() {
+            return lastCommittedAt;
+        }
+    }
+
+    /**
+     * Committed chunk byte ranges merged into sorted, disjoint ranges
+     */
+    private static class CommittedRanges {
+        private final List<long[]> ranges = new ArrayList<>();    // {start, end, nextLine}
+        private int maxChunkNo = 0;
+
+        CommittedRanges(List<ImportCheckpoint> checkpoints) {
+            List<ImportCheckpoint> sorted = new ArrayList<>(checkpoints);
+            sorted.sort((a, b) -> Long.compare(a.getStartOffset(), b.getStartOffset()));
+            for (ImportCheckpoint checkpoint : sorted) {
+                maxChunkNo = Math.max(maxChunkNo, checkpoint.getChunkNo());
+                long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                if (last != null && checkpoint.getStartOffset() <= last[1]) {
+                    if (checkpoint.getEndOffset() > last[1]) {
+                        last[1] = checkpoint.getEndOffset();
+                        last[2] = checkpoint.getNextLine();
+                    }
+                } else {
+                    ranges.add(new long[]{checkpoint.getStartOffset(), checkpoint.getEndOffset(),
+                            checkpoint.getNextLine()});
+                }
+            }
+        }
+
+        int size() {
+            return ranges.size();
+        }
+
+        long start(int i) {
+            return ranges.get(i)[0];
+        }
+
+        long end(int i) {
+            return ranges.get(i)[1];
+        }
+
+        long nextLine(int i) {
+            return ranges.get(i)[2];
+        }
+
+        int maxChunkNo() {
+            return maxChunkNo;
+        }
+
+        long coveredBytes() {
+            long total = 0;
+            for (long[] range : ranges) {
+                total += range[1] - range[0];
+            }
+            return total;
+        }
     }
 }
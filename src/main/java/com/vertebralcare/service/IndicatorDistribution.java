@@ -0,0 +1,87 @@
+package com.vertebralcare.service;
+
+/**
+ * 某类别某指标的分布摘要（不可变）
+ * 分位数来自 QuantileSketch（近似值，秩误差约 1%），直方图为固定分箱，超出范围的值单独计数。
+ */
+public final class IndicatorDistribution {
+
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double median;
+    private final double p90;
+    private final double p99;
+    private final double histogramLow;
+    private final double binWidth;
+    private final long[] binCounts;
+    private final long below;
+    private final long above;
+
+    IndicatorDistribution(QuantileSketch sketch, Histogram histogram) {
+        this.count = sketch.getCount();
+        this.min = sketch.getMin();
+        this.max = sketch.getMax();
+        this.median = sketch.quantile(0.5);
+        this.p90 = sketch.quantile(0.9);
+        this.p99 = sketch.quantile(0.99);
+        this.histogramLow = histogram.getLow();
+        this.binWidth = histogram.getBinWidth();
+        this.binCounts = histogram.getCounts();
+        this.below = histogram.getBelow();
+        this.above = histogram.getAbove();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    /** 分箱数 */
+    public int getBinCount() {
+        return binCounts.length;
+    }
+
+    /** 第 bin 个分箱的下界 */
+    public double getBinStart(int bin) {
+        return histogramLow + bin * binWidth;
+    }
+
+    public double getBinWidth() {
+        return binWidth;
+    }
+
+    /** 第 bin 个分箱的计数 */
+    public long getBinValue(int bin) {
+        return binCounts[bin];
+    }
+
+    /** 低于直方图下界的值的个数 */
+    public long getBelow() {
+        return below;
+    }
+
+    /** 不低于直方图上界的值的个数 */
+    public long getAbove() {
+        return above;
+    }
+}
@@ -0,0 +1,281 @@
+package com.vertebralcare.service;
+
+/**
+ * Static k-d tree over fixed-dimension float points, stored implicitly in flat arrays
+ * The points of [lo, hi) are arranged so that the middle one splits the range on the dimension
+ * with the widest spread; left of it are the smaller values, right of it the larger ones.
+ * Ranges of at most {@link #LEAF_SIZE} points are scanned linearly.
+ * No node objects: the tree is the permuted point array plus one split dimension per point.
+ */
+final class KdTree {
+
+    private static final int LEAF_SIZE = 8;
+
+    private final int dims;
+    private final int size;
+    private final float[] points;
+    private final int[] ids;
+    private final byte[] splitDim;
+
+    /**
+     * @param points flat coordinates, point i at [i * dims, (i + 1) * dims); reordered in place
+     * @param ids id of each point; reordered with the points
+     */
+    KdTree(float[] points, int[] ids, int size, int dims) {
+        this.dims = dims;
+        this.size = size;
+        this.points = points;
+        this.ids = ids;
+        this.splitDim = new byte[size];
+        build(0, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Offer the nearest points to the query into the result, skipping ids the filter rejects
+     */
+    void search(float[] query, Neighbors result, IdFilter filter) {
+        if (size > 0) {
+            search(query, result, filter, 0, size);
+        }
+    }
+
+    /**
+     * Ids that must not be returned (e.g. deleted since the tree was built)
+     */
+    interface IdFilter {
+        boolean skip(int id);
+    }
+
+    private void search(float[] query, Neighbors result, IdFilter filter, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                offer(query, result, filter, i);
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int dim = splitDim[mid];
+        float diff = query[dim] - points[mid * dims + dim];
+
+        // Nearer side first so the far side is usually pruned
+        if (diff < 0) {
+            search(query, result, filter, lo, mid);
+            offer(query, result, filter, mid);
+            if (diff * diff < result.bound()) {
+                search(query, result, filter, mid + 1, hi);
+            }
+        } else {
+            search(query, result, filter, mid + 1, hi);
+            offer(query, result, filter, mid);
+            if (diff * diff < result.bound()) {
+                search(query, result, filter, lo, mid);
+            }
+        }
+    }
+
+    private void offer(float[] query, Neighbors result, IdFilter filter, int i) {
+        int id = ids[i];
+        if (filter != null && filter.skip(id)) {
+            return;
+        }
+        result.offer(id, distanceSquared(query, points, i * dims, dims));
+    }
+
+    static float distanceSquared(float[] query, float[] points, int offset, int dims) {
+        float sum = 0;
+        for (int d = 0; d < dims; d++) {
+            float diff = query[d] - points[offset + d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private void build(int lo, int hi) {
+        // Iterative on the larger half keeps recursion depth at log2(n)
+        while (hi - lo > LEAF_SIZE) {
+            int dim = widestDimension(lo, hi);
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, dim);
+            splitDim[mid] = (byte) dim;
+            build(lo, mid);
+            lo = mid + 1;
+        }
+    }
+
+    private int widestDimension(int lo, int hi) {
+        int best = 0;
+        float bestSpread = -1;
+        for (int d = 0; d < dims; d++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                float v = points[i * dims + d];
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+            if (max - min > bestSpread) {
+                bestSpread = max - min;
+                best = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Quickselect: put the k-th smallest point by dimension dim at k, smaller ones before, larger after
+     */
+    private void select(int left, int right, int k, int dim) {
+        while (right > left) {
+            // Median of three as pivot guards against sorted input
+            int mid = (left + right) >>> 1;
+            if (value(mid, dim) < value(left, dim)) {
+                swap(mid, left);
+            }
+            if (value(right, dim) < value(left, dim)) {
+                swap(right, left);
+            }
+            if (value(right, dim) < value(mid, dim)) {
+                swap(right, mid);
+            }
+            float pivot = value(mid, dim);
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (value(i, dim) < pivot) {
+                    i++;
+                }
+                while (value(j, dim) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private float value(int i, int dim) {
+        return points[i * dims + dim];
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        int oa = a * dims;
+        int ob = b * dims;
+        for (int d = 0; d < dims; d++) {
+            float v = points[oa + d];
+            points[oa + d] = points[ob + d];
+            points[ob + d] = v;
+        }
+    }
+
+    /**
+     * Bounded max-heap of the k nearest ids seen so far
+     */
+    static final class Neighbors {
+        private final int k;
+        private final int[] ids;
+        private final float[] distances;
+        private int size;
+
+        Neighbors(int k) {
+            this.k = k;
+            this.ids = new int[k];
+            this.distances = new float[k];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Squared distance a point must beat to enter
+         */
+        float bound() {
+            return size < k ? Float.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int id, float distance) {
+            if (size < k) {
+                int i = size++;
+                // Sift up
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    ids[i] = ids[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                // Replace the farthest and sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= k) {
+                        break;
+                    }
+                    if (child + 1 < k && distances[child + 1] > distances[child]) {
+                        child++;
+                    }
+                    if (distances[child] <= distance) {
+                        break;
+                    }
+                    ids[i] = ids[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                ids[i] = id;
+                distances[i] = distance;
+            }
+        }
+
+        /**
+         * Ids ordered nearest first, with their squared distances written to out
+         */
+        int[] sorted(float[] out) {
+            int[] order = new int[size];
+            float[] dist = new float[size];
+            System.arraycopy(ids, 0, order, 0, size);
+            System.arraycopy(distances, 0, dist, 0, size);
+            // k is small; insertion sort
+            for (int i = 1; i < size; i++) {
+                int id = order[i];
+                float d = dist[i];
+                int j = i - 1;
+                while (j >= 0 && dist[j] > d) {
+                    order[j + 1] = order[j];
+                    dist[j + 1] = dist[j];
+                    j--;
+                }
+                order[j + 1] = id;
+                dist[j + 1] = d;
+            }
+            System.arraycopy(dist, 0, out, 0, size);
+            return order;
+        }
+    }
+}
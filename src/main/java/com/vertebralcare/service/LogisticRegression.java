@@ -0,0 +1,240 @@
+package com.vertebralcare.service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * L2-regularized logistic regression fitted by Newton's method (IRLS)
+ * Features are standardized first, so one penalty fits all of them and the Hessian stays well conditioned.
+ * With only a handful of features the (d+1)x(d+1) Newton system is tiny; the cost is the passes over the
+ * rows, which run as fork/join tasks that each accumulate gradient and Hessian of their row range.
+ * Converges in well under {@link #MAX_ITERATIONS} steps on this data.
+ *
+ * Input is column-major: x[feature][row], with labels y[row] in {0, 1}. Only the given rows are used,
+ * which lets callers train on a subset (e.g. a cross-validation fold) without copying.
+ */
+public final class LogisticRegression {
+
+    public static final double DEFAULT_L2 = 1.0;
+
+    static final int MAX_ITERATIONS = 50;
+    private static final double TOLERANCE = 1e-9;
+    private static final int LEAF_ROWS = 4096;
+
+    private LogisticRegression() {
+    }
+
+    /**
+     * Fit on the given rows
+     * @param x column-major features, x[feature][row]
+     * @param y labels, 1 = positive
+     * @param rows rows to train on
+     * @param l2 penalty on the standardized weights (not on the intercept)
+     * @param pool pool for the row passes
+     * @param version model version recorded in the result
+     */
+    public static RiskModel fit(double[][] x, byte[] y, int[] rows, double l2, ForkJoinPool pool, String version) {
+        int d = x.length;
+        int n = rows.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("No training rows");
+        }
+
+        double[] mean = new double[d];
+        double[] scale = new double[d];
+        for (int f = 0; f < d; f++) {
+            double[] column = x[f];
+            double sum = 0;
+            for (int row : rows) {
+                sum += column[row];
+            }
+            mean[f] = sum / n;
+            double ss = 0;
+            for (int row : rows) {
+                double dev = column[row] - mean[f];
+                ss += dev * dev;
+            }
+            double sd = Math.sqrt(ss / n);
+            scale[f] = sd > 0 ? sd : 1.0;
+        }
+
+        // beta[0] is the intercept, beta[1..d] the standardized weights
+        double[] beta = new double[d + 1];
+        Pass pass = null;
+        int iterations = 0;
+        while (iterations < MAX_ITERATIONS) {
+            pass = run(pool, new PassTask(x, y, rows, mean, scale, beta, 0, n));
+            iterations++;
+
+            double[] gradient = pass.gradient.clone();
+            double[][] hessian = pass.hessian;
+            for (int k = 1; k <= d; k++) {
+                gradient[k] += l2 * beta[k];
+                hessian[k][k] += l2;
+            }
+            // Tiny ridge on the intercept keeps the system solvable when one class is absent
+            hessian[0][0] += 1e-12;
+
+            double[] step = solve(hessian, gradient);
+            double largest = 0;
+            for (int k = 0; k <= d; k++) {
+                beta[k] -= step[k];
+                largest = Math.max(largest, Math.abs(step[k]));
+            }
+            if (largest < TOLERANCE) {
+                break;
+            }
+        }
+
+        // Final pass for the training metrics at the fitted coefficients
+        pass = run(pool, new PassTask(x, y, rows, mean, scale, beta, 0, n));
+
+        double[] weights = new double[d];
+        System.arraycopy(beta, 1, weights, 0, d);
+        return new RiskModel(version, mean, scale, weights, beta[0], n, pass.positives,
+                (double) pass.correct / n, pass.loss / n, iterations);
+    }
+
+    private static <T> T run(ForkJoinPool pool, RecursiveTask<T> task) {
+        // Already on a worker of this pool (e.g. fitting one cross-validation fold): fork from here
+        return ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+    }
+
+    /**
+     * Solve the symmetric positive definite system a * s = b (Cholesky)
+     */
+    static double[] solve(double[][] a, double[] b) {
+        int m = b.length;
+        double[][] l = new double[m][m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = a[i][j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i][k] * l[j][k];
+                }
+                if (i == j) {
+                    l[i][i] = Math.sqrt(Math.max(sum, 1e-300));
+                } else {
+                    l[i][j] = sum / l[j][j];
+                }
+            }
+        }
+        double[] z = new double[m];
+        for (int i = 0; i < m; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[i][k] * z[k];
+            }
+            z[i] = sum / l[i][i];
+        }
+        double[] s = new double[m];
+        for (int i = m - 1; i >= 0; i--) {
+            double sum = z[i];
+            for (int k = i + 1; k < m; k++) {
+                sum -= l[k][i] * s[k];
+            }
+            s[i] = sum / l[i][i];
+        }
+        return s;
+    }
+
+    /**
+     * Gradient and Hessian of the summed log loss over a row range, plus loss and accuracy
+     */
+    static final class Pass {
+        final double[] gradient;
+        final double[][] hessian;
+        double loss;
+        long correct;
+        long positives;
+
+        Pass(int size) {
+            gradient = new double[size];
+            hessian = new double[size][size];
+        }
+
+        Pass merge(Pass other) {
+            for (int i = 0; i < gradient.length; i++) {
+                gradient[i] += other.gradient[i];
+                for (int j = 0; j < gradient.length; j++) {
+                    hessian[i][j] += other.hessian[i][j];
+                }
+            }
+            loss += other.loss;
+            correct += other.correct;
+            positives += other.positives;
+            return this;
+        }
+    }
+
+    private static final class PassTask extends RecursiveTask<Pass> {
+        private final double[][] x;
+        private final byte[] y;
+        private final int[] rows;
+        private final double[] mean;
+        private final double[] scale;
+        private final double[] beta;
+        private final int from;
+        private final int to;
+
+        PassTask(double[][] x, byte[] y, int[] rows, double[] mean, double[] scale, double[] beta,
+                 int from, int to) {
+            this.x = x;
+            this.y = y;
+            this.rows = rows;
+            this.mean = mean;
+            this.scale = scale;
+            this.beta = beta;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Pass compute() {
+            if (to - from > LEAF_ROWS) {
+                int mid = (from + to) >>> 1;
+                PassTask left = new PassTask(x, y, rows, mean, scale, beta, from, mid);
+                left.fork();
+                Pass right = new PassTask(x, y, rows, mean, scale, beta, mid, to).compute();
+                return left.join().merge(right);
+            }
+
+            int d = x.length;
+            Pass pass = new Pass(d + 1);
+            double[] z = new double[d + 1];
+            z[0] = 1.0;
+            for (int r = from; r < to; r++) {
+                int row = rows[r];
+                double eta = beta[0];
+                for (int f = 0; f < d; f++) {
+                    z[f + 1] = (x[f][row] - mean[f]) / scale[f];
+                    eta += beta[f + 1] * z[f + 1];
+                }
+                double p = RiskModel.sigmoid(eta);
+                int label = y[row];
+                double residual = p - label;
+                double w = Math.max(p * (1 - p), 1e-12);
+                for (int i = 0; i <= d; i++) {
+                    pass.gradient[i] += residual * z[i];
+                    double wz = w * z[i];
+                    for (int j = 0; j <= i; j++) {
+                        pass.hessian[i][j] += wz * z[j];
+                    }
+                }
+                // log(1 + e^eta) - label * eta, written to avoid overflow
+                pass.loss += (eta > 0 ? eta + Math.log1p(Math.exp(-eta)) : Math.log1p(Math.exp(eta))) - label * eta;
+                if ((p >= 0.5) == (label == 1)) {
+                    pass.correct++;
+                }
+                pass.positives += label;
+            }
+            for (int i = 0; i <= d; i++) {
+                for (int j = 0; j < i; j++) {
+                    pass.hessian[j][i] = pass.hessian[i][j];
+                }
+            }
+            return pass;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.model.Exam;
+import com.vertebralcare.model.ExamReview;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离群检查记录检测（进程内共享）
+ * 按诊断类别维护6个指标的运行均值和协方差矩阵，以马氏距离判断一条记录与同类别记录的偏离程度，
+ * 超过阈值的记录交由用户复核。协方差矩阵无法分解时（某指标没有变化）改为逐个指标按标准分判断。判断一条记录只需 O(1) 次运算，与记录总数无关。
+ *
+ * 统计量首次使用时由 ExamColumnStore 构建：先用全部记录计算，再剔除按此判为离群的记录；
+ * 之后的增删改由 ExamAggregates.write() 增量更新，不再扫描全表。判为离群的记录不计入统计量，
+ * 少数极端值因此不会拉大协方差而掩盖彼此。
+ * 判断经由 ExamAggregates.screen() 在汇总锁内进行，构建统计量因此不会与写操作交错。
+ */
+public final class OutlierDetector {
+
+    private static final int DIMS = ExamAggregates.INDICATORS;
+
+    // Chi-square quantile for 6 degrees of freedom at p = 0.999: about 1 in 1000 typical exams is flagged
+    static final double THRESHOLD = 22.458;
+    // Per-indicator |z| with the same overall rate (1 - 0.999^(1/6), two-sided) when the covariance can't be used
+    static final double Z_THRESHOLD = 3.76;
+    // Below this many exams a class's covariance is too noisy to judge by
+    static final int MIN_ROWS = 30;
+
+    private static final OutlierDetector INSTANCE = new OutlierDetector(ExamColumnStore.getInstance());
+
+    private final ExamColumnStore columnStore;
+
+    // Guarded by this; null until seeded or after a change it can't follow
+    private State state;
+
+    OutlierDetector(ExamColumnStore columnStore) {
+        this.columnStore = columnStore;
+    }
+
+    public static OutlierDetector getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 判断一条检查记录是否离群（不修改统计量，须持有 ExamAggregates 的锁）
+     * @return 离群时返回复核记录（examId 未设置），否则返回 null；所属类别记录不足时不判断
+     */
+    synchronized ExamReview screen(Exam exam) throws SQLException {
+        if (state == null) {
+            state = seed();
+        }
+        return state.screen(exam.getClassId(), ExamAggregates.indicators(exam));
+    }
+
+    /**
+     * 同步一次写操作的结果（由 ExamAggregates.write() 在写入成功后调用）
+     */
+    synchronized void apply(List<Exam> removed, List<Exam> added) {
+        if (state == null) {
+            return;
+        }
+        for (Exam exam : removed) {
+            if (exam.getExamId() == null) {
+                state = null;
+                return;
+            }
+            state.remove(exam.getExamId(), exam.getClassId(), ExamAggregates.indicators(exam));
+        }
+        for (Exam exam : added) {
+            if (exam.getExamId() == null) {
+                state = null;
+                return;
+            }
+            state.add(exam.getExamId(), exam.getClassId(), ExamAggregates.indicators(exam));
+        }
+    }
+
+    /**
+     * 丢弃统计量，下次使用时重新构建
+     */
+    public synchronized void invalidate() {
+        state = null;
+    }
+
+    /**
+     * 计入统计量的记录数（未构建时为 0）
+     */
+    public synchronized long size() {
+        if (state == null) {
+            return 0;
+        }
+        long size = 0;
+        for (RunningCovariance stats : state.byClass.values()) {
+            size += stats.count();
+        }
+        return size;
+    }
+
+    private State seed() throws SQLException {
+        return columnStore.read(columns -> {
+            int n = columns.size();
+            int[] examIds = columns.examIdColumn();
+            int[] classIds = columns.classIdColumn();
+            double[][] x = new double[DIMS][];
+            for (int d = 0; d < DIMS; d++) {
+                x[d] = columns.indicatorColumn(d);
+            }
+            double[] row = new double[DIMS];
+
+            State seeded = new State();
+            for (int r = 0; r < n; r++) {
+                read(x, r, row);
+                seeded.byClass.computeIfAbsent(classIds[r], id -> new RunningCovariance(DIMS)).add(row);
+            }
+            // Judge every row against the statistics of all rows first, then take the outliers out
+            boolean[] outlier = new boolean[n];
+            for (int r = 0; r < n; r++) {
+                read(x, r, row);
+                outlier[r] = seeded.screen(classIds[r], row) != null;
+            }
+            for (int r = 0; r < n; r++) {
+                if (outlier[r]) {
+                    read(x, r, row);
+                    seeded.byClass.get(classIds[r]).remove(row);
+                    seeded.excluded.put(examIds[r], 1);
+                }
+            }
+            return seeded;
+        });
+    }
+
+    private static void read(double[][] x, int r, double[] row) {
+        for (int d = 0; d < DIMS; d++) {
+            row[d] = x[d][r];
+        }
+    }
+
+    /**
+     * 各类别的统计量，以及未计入统计量的离群记录
+     */
+    private static final class State {
+        final Map<Integer, RunningCovariance> byClass = new HashMap<>();
+        // exam_id -> 1 for exams judged outliers when added, which the statistics leave out
+        final IntIndex excluded = new IntIndex(64);
+
+        ExamReview screen(Integer classId, double[] x) {
+            RunningCovariance stats = classId != null ? byClass.get(classId) : null;
+            if (stats == null || stats.count() < MIN_ROWS) {
+                return null;
+            }
+            // Report the indicator that deviates most, in its own standard deviations
+            int worst = 0;
+            double worstZ = 0;
+            for (int d = 0; d < DIMS; d++) {
+                double sd = stats.standardDeviation(d);
+                double z = sd > 0 ? (x[d] - stats.mean(d)) / sd : 0.0;
+                if (Math.abs(z) > Math.abs(worstZ)) {
+                    worst = d;
+                    worstZ = z;
+                }
+            }
+            double d2 = stats.mahalanobisSquared(x);
+            if (!Double.isNaN(d2)) {
+                return d2 > THRESHOLD ? new ExamReview(Math.sqrt(d2), worst, x[worst], worstZ) : null;
+            }
+            // No usable covariance (an indicator without variance): judge each indicator on its own. The
+            // statistics leave out rows already judged outliers, so a few extremes can't inflate the deviations.
+            return Math.abs(worstZ) > Z_THRESHOLD ? new ExamReview(Math.abs(worstZ), worst, x[worst], worstZ) : null;
+        }
+
+        void add(int examId, Integer classId, double[] x) {
+            if (screen(classId, x) != null) {
+                excluded.put(examId, 1);
+                return;
+            }
+            byClass.computeIfAbsent(classId, id -> new RunningCovariance(DIMS)).add(x);
+        }
+
+        void remove(int examId, Integer classId, double[] x) {
+            if (excluded.remove(examId) >= 0) {
+                return;
+            }
+            RunningCovariance stats = byClass.get(classId);
+            if (stats != null) {
+                stats.remove(x);
+                if (stats.count() == 0) {
+                    byClass.remove(classId);
+                }
+            }
+        }
+    }
+}
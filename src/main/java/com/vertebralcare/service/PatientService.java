@@ -1,6 +1,8 @@
 package com.vertebralcare.service;
 
+import com.vertebralcare.dao.ExamDao;
 import com.vertebralcare.dao.PatientDao;
+import com.vertebralcare.model.Exam;
 import com.vertebralcare.model.Patient;
 
 import java.sql.SQLException;
@@ -11,10 +13,18 @@ import java.util.List;
  */
 public class PatientService {
 
+    // Shared by all service instances so invalidation is seen everywhere
+    private static final EntityCache<Integer, Patient> PATIENT_CACHE =
+            new EntityCache<>("patients", 2000, 5 * 60 * 1000L);
+
     private final PatientDao patientDao;
+    private final ExamDao examDao;
+    private final ExamAggregates aggregates;
 
     public PatientService() {
         this.patientDao = new PatientDao();
+        this.examDao = new ExamDao();
+        this.aggregates = ExamAggregates.getInstance();
     }
 
     /**
@@ -30,21 +40,39 @@ public class PatientService {
      */
     public boolean updatePatient(Patient patient) throws SQLException {
         validatePatient(patient);
-        return patientDao.update(patient);
+        try {
+            return patientDao.update(patient);
+        } finally {
+            evict(patient.getPatientId());
+        }
     }
 
     /**
-     * 删除病人
+     * 删除病人（其检查记录随之级联删除，并从检查汇总中扣除）
      */
     public boolean deletePatient(int patientId) throws SQLException {
-        return patientDao.delete(patientId);
+        try {
+            return aggregates.write(changes -> {
+                // The cascade takes the patient's exams along: read them first so the aggregates can drop them
+                List<Exam> exams = examDao.findByPatientId(patientId);
+                boolean deleted = patientDao.delete(patientId);
+                if (deleted) {
+                    for (Exam exam : exams) {
+                        changes.removed(exam);
+                    }
+                }
+                return deleted;
+            });
+        } finally {
+            evict(patientId);
+        }
     }
 
     /**
-     * 根据ID获取病人
+     * 根据ID获取病人（优先读缓存，返回的对象不应修改）
      */
     public Patient getPatientById(int patientId) throws SQLException {
-        return patientDao.findById(patientId);
+        return PATIENT_CACHE.get(patientId, patientDao::findById);
     }
 
     /**
@@ -64,6 +92,38 @@ public class PatientService {
         return patientDao.findAll();
     }
 
+    /**
+     * 分页获取病人（键集分页）
+     * @param lastSeen 上一页的最后一条记录，首页传 null
+     */
+    public List<Patient> getPatientPage(Patient lastSeen, int pageSize) throws SQLException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("每页条数必须大于0");
+        }
+        return patientDao.findPage(lastSeen != null ? lastSeen.getPatientId() : null, pageSize);
+    }
+
+    /**
+     * 按分页顺序获取全部病人ID，配合 getPatientPage 实现任意位置跳页
+     */
+    public int[] getAllPatientIds() throws SQLException {
+        return patientDao.findAllIds();
+    }
+
+    /**
+     * 从ID索引的第 firstRow 行开始读取一页，耗时与所在位置无关
+     */
+    public List<Patient> getPatientPageAt(int[] ids, int firstRow, int pageSize) throws SQLException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("每页条数必须大于0");
+        }
+        long generation = PATIENT_CACHE.generation();
+        List<Patient> page = patientDao.findPage(firstRow > 0 ? ids[firstRow - 1] : null, pageSize);
+        // Rows just shown in the table are the ones most likely to be opened next
+        PATIENT_CACHE.putAll(page, Patient::getPatientId, generation);
+        return page;
+    }
+
     /**
      * 获取病人总数
      */
@@ -71,6 +131,23 @@ public class PatientService {
         return patientDao.count();
     }
 
+    /**
+     * 病人缓存运行指标
+     */
+    public CacheStats getCacheStats() {
+        return PATIENT_CACHE.getStats();
+    }
+
+    /**
+     * 病人修改或删除后，使病人及其检查记录（含病人姓名、随病人级联删除）的缓存失效
+     */
+    private void evict(Integer patientId) {
+        if (patientId != null) {
+            PATIENT_CACHE.invalidate(patientId);
+            ExamService.evictExamsOfPatient(patientId);
+        }
+    }
+
     /**
      * 验证病人数据
      */
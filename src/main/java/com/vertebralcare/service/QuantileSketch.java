@@ -0,0 +1,236 @@
+package com.vertebralcare.service;
+
+import java.util.Arrays;
+
+/**
+ * KLL quantile sketch over doubles
+ * Values are kept in levels of compactors; an item on level h stands for 2^h inputs. When the
+ * sketch is over capacity the lowest full level is sorted and every other item (random offset)
+ * moves up one level, so memory stays O(k) while the rank error stays around 1.7/k (about
+ * 1% for k = 200) regardless of how many values are added. Up to k values the sketch is exact.
+ * Sketches with the same k can be merged. Not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_LEVEL_CAPACITY = 2;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    // Deterministic coin so rebuilding from the same data gives the same sketch
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8");
+        }
+        this.k = k;
+        levels[0] = new double[capacity(0)];
+    }
+
+    /**
+     * Add one value (NaN is ignored)
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        compressIfFull();
+    }
+
+    /**
+     * Fold another sketch into this one
+     */
+    public void merge(QuantileSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge sketches with different k");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        for (int h = 0; h < other.sizes.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        compressIfFull();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Approximate q-quantile, 0 <= q <= 1 (NaN if empty)
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be in [0, 1]");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+
+        int retained = retained();
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < sizes.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                n++;
+            }
+        }
+        sortByValue(values, weights);
+
+        long totalWeight = 0;
+        for (long w : weights) {
+            totalWeight += w;
+        }
+        double rank = q * totalWeight;
+        long cumulative = 0;
+        for (int i = 0; i < n; i++) {
+            cumulative += weights[i];
+            if (cumulative >= rank) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Number of values currently held (memory use is proportional to this)
+     */
+    public int retained() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    private int capacity(int level) {
+        int depth = sizes.length - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void append(int level, double value) {
+        while (level >= sizes.length) {
+            addLevel();
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_LEVEL_CAPACITY, sizes[level] * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        int height = sizes.length;
+        levels = Arrays.copyOf(levels, height + 1);
+        sizes = Arrays.copyOf(sizes, height + 1);
+        levels[height] = new double[MIN_LEVEL_CAPACITY];
+    }
+
+    private void compressIfFull() {
+        while (true) {
+            int totalCapacity = 0;
+            for (int h = 0; h < sizes.length; h++) {
+                totalCapacity += capacity(h);
+            }
+            if (retained() <= totalCapacity) {
+                return;
+            }
+            for (int h = 0; h < sizes.length; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort a level and promote every other item; an odd item out stays behind so no weight is lost
+     */
+    private void compact(int level) {
+        if (level + 1 >= sizes.length) {
+            addLevel();
+        }
+        double[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+
+        int keep = size % 2;
+        double leftover = keep == 1 ? items[size - 1] : 0;
+        int pairs = size / 2;
+        int offset = nextBit();
+        for (int i = 0; i < pairs; i++) {
+            append(level + 1, items[2 * i + offset]);
+        }
+        sizes[level] = 0;
+        if (keep == 1) {
+            levels[level][sizes[level]++] = leftover;
+        }
+    }
+
+    private int nextBit() {
+        // xorshift64
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) (seed & 1);
+    }
+
+    private static void sortByValue(double[] values, long[] weights) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[values.length];
+        long[] sortedWeights = new long[weights.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+}
@@ -0,0 +1,216 @@
+package com.vertebralcare.service;
+
+/**
+ * 异常风险模型（逻辑回归，不可变）
+ * 输入为6个指标（顺序同 StatisticsService.getIndicatorNames），输出为异常的概率。
+ * 训练时先把指标标准化，打分时标准化已并入系数，单条记录只需6次乘加和一次 exp。
+ */
+public final class RiskModel {
+
+    private final String version;
+    private final double[] mean;
+    private final double[] scale;
+    private final double[] weights;
+    private final double bias;
+
+    // Weights and intercept on the raw indicator scale
+    private final double[] coefficients;
+    private final double intercept;
+
+    private final long trainingRows;
+    private final long trainingPositives;
+    private final double trainingAccuracy;
+    private final double trainingLogLoss;
+    private final int iterations;
+    private final long trainedAt;
+
+    RiskModel(String version, double[] mean, double[] scale, double[] weights, double bias,
+              long trainingRows, long trainingPositives, double trainingAccuracy, double trainingLogLoss,
+              int iterations) {
+        this(version, mean, scale, weights, bias, trainingRows, trainingPositives, trainingAccuracy,
+                trainingLogLoss, iterations, System.currentTimeMillis());
+    }
+
+    RiskModel(String version, double[] mean, double[] scale, double[] weights, double bias,
+              long trainingRows, long trainingPositives, double trainingAccuracy, double trainingLogLoss,
+              int iterations, long trainedAt) {
+        this.version = version;
+        this.mean = mean.clone();
+        this.scale = scale.clone();
+        this.weights = weights.clone();
+        this.bias = bias;
+        this.coefficients = new double[weights.length];
+        double b = bias;
+        for (int i = 0; i < weights.length; i++) {
+            coefficients[i] = weights[i] / scale[i];
+            b -= coefficients[i] * mean[i];
+        }
+        this.intercept = b;
+        this.trainingRows = trainingRows;
+        this.trainingPositives = trainingPositives;
+        this.trainingAccuracy = trainingAccuracy;
+        this.trainingLogLoss = trainingLogLoss;
+        this.iterations = iterations;
+        this.trainedAt = trainedAt;
+    }
+
+    /**
+     * 从 parameters() 的结果恢复模型
+     */
+    static RiskModel fromParameters(String version, String parameters, long trainingRows, long trainingPositives,
+                                    double trainingAccuracy, double trainingLogLoss, int iterations,
+                                    long trainedAt) {
+        String[] fields = parameters.split(",");
+        int d = (fields.length - 1) / 3;
+        if (fields.length != 3 * d + 1 || d == 0) {
+            throw new IllegalArgumentException("模型参数格式错误: " + version);
+        }
+        double[] mean = new double[d];
+        double[] scale = new double[d];
+        double[] weights = new double[d];
+        for (int i = 0; i < d; i++) {
+            mean[i] = Double.parseDouble(fields[i]);
+            scale[i] = Double.parseDouble(fields[d + i]);
+            weights[i] = Double.parseDouble(fields[2 * d + i]);
+        }
+        double bias = Double.parseDouble(fields[3 * d]);
+        return new RiskModel(version, mean, scale, weights, bias, trainingRows, trainingPositives,
+                trainingAccuracy, trainingLogLoss, iterations, trainedAt);
+    }
+
+    /**
+     * 模型参数的文本形式：均值、标准差、标准化权重，最后是截距，以逗号分隔（可精确还原）
+     */
+    String parameters() {
+        StringBuilder sb = new StringBuilder();
+        for (double[] values : new double[][]{mean, scale, weights}) {
+            for (double value : values) {
+                sb.append(value).append(',');
+            }
+        }
+        return sb.append(bias).toString();
+    }
+
+    /**
+     * 单条记录的异常概率
+     * @param x 6个指标
+     */
+    public double score(double[] x) {
+        return score(x, 0);
+    }
+
+    /**
+     * 单条记录的异常概率，指标取自 x[offset .. offset+5]
+     */
+    public double score(double[] x, int offset) {
+        double eta = intercept;
+        for (int i = 0; i < coefficients.length; i++) {
+            eta += coefficients[i] * x[offset + i];
+        }
+        return sigmoid(eta);
+    }
+
+    /**
+     * 按列批量打分：out[row] = 第 row 行的异常概率，row 取 [from, to)
+     * @param columns 按列存放的指标，columns[indicator][row]
+     */
+    public void score(double[][] columns, int from, int to, double[] out) {
+        for (int row = from; row < to; row++) {
+            out[row] = intercept;
+        }
+        for (int i = 0; i < coefficients.length; i++) {
+            double c = coefficients[i];
+            double[] column = columns[i];
+            for (int row = from; row < to; row++) {
+                out[row] += c * column[row];
+            }
+        }
+        for (int row = from; row < to; row++) {
+            out[row] = sigmoid(out[row]);
+        }
+    }
+
+    /**
+     * 按列为指定行打分：out[row] = 第 row 行的异常概率
+     * @param columns 按列存放的指标，columns[indicator][row]
+     */
+    public void score(double[][] columns, int[] rows, double[] out) {
+        for (int row : rows) {
+            double eta = intercept;
+            for (int i = 0; i < coefficients.length; i++) {
+                eta += coefficients[i] * columns[i][row];
+            }
+            out[row] = sigmoid(eta);
+        }
+    }
+
+    static double sigmoid(double eta) {
+        if (eta >= 0) {
+            return 1.0 / (1.0 + Math.exp(-eta));
+        }
+        double e = Math.exp(eta);
+        return e / (1.0 + e);
+    }
+
+    /** 模型版本（训练时生成） */
+    public String getVersion() {
+        return version;
+    }
+
+    /** 训练时间（毫秒时间戳） */
+    public long getTrainedAt() {
+        return trainedAt;
+    }
+
+    /**
+     * 第 indicator 个指标标准化后的权重（可比较各指标的相对影响）
+     */
+    public double getStandardizedWeight(int indicator) {
+        return weights[indicator];
+    }
+
+    /** 标准化空间中的截距 */
+    public double getBias() {
+        return bias;
+    }
+
+    /** 训练用的指标均值 */
+    public double getMean(int indicator) {
+        return mean[indicator];
+    }
+
+    /** 训练用的指标标准差 */
+    public double getScale(int indicator) {
+        return scale[indicator];
+    }
+
+    public long getTrainingRows() {
+        return trainingRows;
+    }
+
+    /** 训练集中的异常记录数 */
+    public long getTrainingPositives() {
+        return trainingPositives;
+    }
+
+    /** 训练集上以 0.5 为阈值的准确率 */
+    public double getTrainingAccuracy() {
+        return trainingAccuracy;
+    }
+
+    /** 训练集上的平均对数损失 */
+    public double getTrainingLogLoss() {
+        return trainingLogLoss;
+    }
+
+    /** Newton 迭代次数 */
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d exams (%d abnormal), accuracy %.1f%%, log loss %.4f",
+                version, trainingRows, trainingPositives, trainingAccuracy * 100, trainingLogLoss);
+    }
+}
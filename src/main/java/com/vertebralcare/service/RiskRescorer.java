@@ -0,0 +1,231 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.dao.DBUtil;
+import com.vertebralcare.dao.ExamDao;
+import com.vertebralcare.dao.PoolStats;
+import com.vertebralcare.dao.QueryCache;
+import com.vertebralcare.dao.QueryCache.Table;
+import com.vertebralcare.dao.RiskModelVersionDao;
+import com.vertebralcare.model.RiskModelVersion;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Rewrites the stored risk score of every exam with one model version
+ *
+ * Exams are read in exam_id order, a chunk at a time, skipping rows already scored by this version.
+ * Each chunk is scored column-wise and written with one batched UPDATE in its own short transaction,
+ * together with the job's checkpoint (RiskModelVersion.rescored_through), so a job that fails or is
+ * interrupted resumes after the last committed chunk. The next chunk is read on a second thread while
+ * the current one is written.
+ *
+ * The job holds at most two connections and stays below db.rescoreRowsPerSecond; while other threads
+ * are waiting for a pooled connection it pauses between chunks, so interactive queries go first.
+ */
+public class RiskRescorer {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long BACKOFF_MS = 100;
+
+    private final ExamDao examDao;
+    private final RiskModelVersionDao versionDao;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+
+    public RiskRescorer() {
+        this(new ExamDao(), new RiskModelVersionDao());
+    }
+
+    RiskRescorer(ExamDao examDao, RiskModelVersionDao versionDao) {
+        this(examDao, versionDao, DBUtil.getRescoreChunkSize(), DBUtil.getRescoreRowsPerSecond());
+    }
+
+    RiskRescorer(ExamDao examDao, RiskModelVersionDao versionDao, int chunkSize, int rowsPerSecond) {
+        this.examDao = examDao;
+        this.versionDao = versionDao;
+        this.chunkSize = chunkSize;
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * Rescore all exams with the model, resuming its previous run if one was interrupted
+     * A model whose previous run completed is checked again from the start, writing only rows scored
+     * by another version since (e.g. loaded by the bulk-load import engine).
+     * @param model a model saved by RiskService.train()
+     * @return Number of rows written by this run
+     * @throws InterruptedException the thread was interrupted; committed chunks are kept
+     */
+    public long rescore(RiskModel model, ProgressCallback progressCallback) throws SQLException, InterruptedException {
+        String version = model.getVersion();
+        RiskModelVersion record = versionDao.findByVersion(version);
+        if (record == null) {
+            throw new IllegalStateException("Risk model " + version + " has not been saved");
+        }
+        if (record.isRescoreComplete()) {
+            versionDao.restartRescore(version);
+            record = versionDao.findByVersion(version);
+        }
+
+        int afterExamId = record.getRescoredThrough();
+        long done = record.getRescoredRows();
+        long total = done + examDao.countStaleRisk(afterExamId, version);
+        long written = 0;
+        long processed = 0;
+        long start = System.nanoTime();
+        report(progressCallback, done, total);
+
+        ExecutorService reader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "risk-rescore-reader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<Chunk> next = reader.submit(readTask(afterExamId, version));
+            while (true) {
+                Chunk chunk = await(next);
+                if (chunk.count == 0) {
+                    break;
+                }
+                // Read ahead while this chunk is written; it only touches rows after this chunk
+                next = reader.submit(readTask(chunk.lastExamId(), version));
+
+                model.score(chunk.columns, 0, chunk.count, chunk.scores);
+                int updated = writeWithRetry(chunk, version);
+                written += updated;
+                processed += chunk.count;
+                done += chunk.count;
+                report(progressCallback, done, Math.max(total, done));
+                throttle(start, processed);
+            }
+        } finally {
+            reader.shutdownNow();
+        }
+        versionDao.completeRescore(version);
+        report(progressCallback, Math.max(total, done), Math.max(total, done));
+        return written;
+    }
+
+    private Callable<Chunk> readTask(int afterExamId, String version) {
+        return () -> {
+            Chunk chunk = new Chunk(chunkSize);
+            chunk.count = examDao.findStaleRiskChunk(afterExamId, version, chunk.examIds, chunk.columns);
+            return chunk;
+        };
+    }
+
+    private static Chunk await(Future<Chunk> future) throws SQLException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Failed to read exams for rescoring", cause);
+        }
+    }
+
+    /**
+     * Write a chunk, retrying a failed transaction a few times before giving up
+     */
+    private int writeWithRetry(Chunk chunk, String version) throws SQLException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return write(chunk, version);
+            } catch (SQLException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                System.err.println("Rescoring chunk after exam " + chunk.examIds[0] + " failed (attempt " +
+                        attempt + "), retrying: " + e.getMessage());
+                Thread.sleep(RETRY_DELAY_MS * attempt);
+            }
+        }
+    }
+
+    /**
+     * Write one chunk of scores and advance the checkpoint in a single transaction
+     */
+    private int write(Chunk chunk, String version) throws SQLException {
+        int updated;
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                updated = examDao.updateRiskScores(conn, chunk.examIds, chunk.scores, chunk.count, version);
+                versionDao.advanceRescore(conn, version, chunk.lastExamId(), chunk.count);
+                conn.commit();
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        QueryCache.bump(Table.EXAM);
+        ExamService.evictExams(chunk.examIds, chunk.count);
+        return updated;
+    }
+
+    /**
+     * Stay below the configured rate, and wait while other threads are queued for a connection
+     */
+    private void throttle(long start, long processed) throws InterruptedException {
+        if (rowsPerSecond > 0) {
+            long dueNanos = processed * 1_000_000_000L / rowsPerSecond;
+            long aheadMs = (dueNanos - (System.nanoTime() - start)) / 1_000_000;
+            if (aheadMs > 0) {
+                Thread.sleep(aheadMs);
+            }
+        }
+        PoolStats stats = DBUtil.getPoolStats();
+        while (stats != null && stats.getWaiting() > 0) {
+            Thread.sleep(BACKOFF_MS);
+            stats = DBUtil.getPoolStats();
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private static void report(ProgressCallback progressCallback, long current, long total) {
+        if (progressCallback != null) {
+            progressCallback.onProgress(current, total);
+        }
+    }
+
+    /**
+     * Progress callback interface, called on the rescoring thread after every chunk
+     */
+    public interface ProgressCallback {
+        void onProgress(long current, long total);
+    }
+
+    /**
+     * Exam ids and column-major indicators of one chunk, and their new scores
+     */
+    private static class Chunk {
+        final int[] examIds;
+        final double[][] columns;
+        final double[] scores;
+        int count;
+
+        Chunk(int size) {
+            examIds = new int[size];
+            columns = new double[ExamAggregates.INDICATORS][size];
+            scores = new double[size];
+        }
+
+        int lastExamId() {
+            return examIds[count - 1];
+        }
+    }
+}
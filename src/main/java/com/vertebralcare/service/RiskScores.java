@@ -0,0 +1,41 @@
+package com.vertebralcare.service;
+
+/**
+ * 一次批量打分的结果（不可变）：第 i 条检查记录 getExamId(i) 的异常概率为 getProbability(i)
+ */
+public final class RiskScores {
+
+    private final String modelVersion;
+    private final int[] examIds;
+    private final double[] probabilities;
+    private final long elapsedNanos;
+
+    RiskScores(String modelVersion, int[] examIds, double[] probabilities, long elapsedNanos) {
+        this.modelVersion = modelVersion;
+        this.examIds = examIds;
+        this.probabilities = probabilities;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** 打分所用的模型版本 */
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public int size() {
+        return examIds.length;
+    }
+
+    public int getExamId(int i) {
+        return examIds[i];
+    }
+
+    public double getProbability(int i) {
+        return probabilities[i];
+    }
+
+    /** 打分耗时（纳秒，不含加载列式存储） */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
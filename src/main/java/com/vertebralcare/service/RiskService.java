@@ -0,0 +1,277 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.dao.ExamDao;
+import com.vertebralcare.dao.RiskModelVersionDao;
+import com.vertebralcare.model.DiagnosisClass;
+import com.vertebralcare.model.Exam;
+import com.vertebralcare.model.RiskModelVersion;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 异常风险评估服务
+ * 以6个指标为输入、诊断类别为标签（代码为 NO 的类别为正常，其余为异常）在本地训练逻辑回归模型，
+ * 给出检查记录为异常的概率。训练数据直接取自 ExamColumnStore，在其读锁内完成，训练期间检查记录的写操作会等待。
+ *
+ * 模型在所有服务实例间共享，每次训练后保存到 RiskModelVersion 表；首次使用时读取最近保存的模型，
+ * 没有时才训练，之后只在调用 train() 时更新。新增和修改的检查记录用当前模型打分后一并保存，
+ * 训练新模型后由 rescore() 在后台重算全部已保存的分数。
+ * 诊断类别仍由用户选择，模型只给出参考概率。
+ */
+public class RiskService {
+
+    private static final int SCORE_LEAF_ROWS = 16384;
+    private static final String NORMAL_CODE = "NO";
+    // Fixed so repeated runs split the folds identically
+    private static final long CV_SEED = 20240611L;
+
+    // Shared by all service instances; replaced as a whole on retraining
+    private static volatile RiskModel model;
+    private static final Object TRAIN_LOCK = new Object();
+
+    private final ExamDao examDao;
+    private final RiskModelVersionDao versionDao;
+    private final ExamColumnStore columnStore;
+    private final DiagnosisClassCache diagnosisClassCache;
+    private final ForkJoinPool pool;
+
+    public RiskService() {
+        this(new ExamDao(), ExamColumnStore.getInstance(), DiagnosisClassCache.getInstance(),
+                ForkJoinPool.commonPool());
+    }
+
+    RiskService(ExamDao examDao, ExamColumnStore columnStore, DiagnosisClassCache diagnosisClassCache,
+                ForkJoinPool pool) {
+        this.examDao = examDao;
+        this.versionDao = new RiskModelVersionDao();
+        this.columnStore = columnStore;
+        this.diagnosisClassCache = diagnosisClassCache;
+        this.pool = pool;
+    }
+
+    /**
+     * 获取当前模型，尚未加载时先读取最近保存的模型，没有保存过时训练
+     */
+    public RiskModel getModel() throws SQLException {
+        RiskModel current = model;
+        if (current != null) {
+            return current;
+        }
+        synchronized (TRAIN_LOCK) {
+            if (model != null) {
+                return model;
+            }
+            RiskModelVersion latest = versionDao.findLatest();
+            if (latest == null) {
+                return train();
+            }
+            model = fromRecord(latest);
+            return model;
+        }
+    }
+
+    /**
+     * 获取当前模型，尚未训练时返回 null（不触发训练，可在界面线程调用）
+     */
+    public RiskModel getModelIfTrained() {
+        return model;
+    }
+
+    /**
+     * 用全部检查记录重新训练模型并替换当前模型
+     * @throws IllegalStateException 没有正常类别，或数据中只有一种类别
+     */
+    public RiskModel train() throws SQLException {
+        synchronized (TRAIN_LOCK) {
+            int normalClassId = normalClassId();
+            String version = new SimpleDateFormat("'lr-'yyyyMMdd-HHmmssSSS").format(new Date());
+
+            RiskModel trained = columnStore.read(columns -> {
+                int n = columns.size();
+                byte[] labels = labels(columns, normalClassId);
+                long positives = 0;
+                for (byte label : labels) {
+                    positives += label;
+                }
+                if (positives == 0 || positives == n) {
+                    throw new IllegalStateException("训练数据需同时包含正常和异常检查记录");
+                }
+                int[] rows = new int[n];
+                for (int i = 0; i < n; i++) {
+                    rows[i] = i;
+                }
+                return LogisticRegression.fit(indicatorColumns(columns), labels, rows,
+                        LogisticRegression.DEFAULT_L2, pool, version);
+            });
+            // Saved before use, so every stored score refers to a model that can be reloaded
+            versionDao.insert(toRecord(trained));
+            model = trained;
+            return trained;
+        }
+    }
+
+    /**
+     * 当前模型的分数重算进度，尚未加载模型时返回 null
+     */
+    public RiskModelVersion getRescoreStatus() throws SQLException {
+        RiskModel current = model;
+        return current != null ? versionDao.findByVersion(current.getVersion()) : null;
+    }
+
+    /**
+     * 用当前模型重算全部检查记录保存的风险分数（在调用线程中执行，耗时较长）
+     * 从该模型上次中断的位置继续；上次已完成时从头检查，只更新分数版本不一致的记录。
+     * @return 本次更新的行数
+     * @throws InterruptedException 线程被中断（已提交的块保留，下次从中断处继续）
+     */
+    public long rescore(RiskRescorer.ProgressCallback progressCallback) throws SQLException, InterruptedException {
+        return new RiskRescorer(examDao, versionDao).rescore(getModel(), progressCallback);
+    }
+
+    /**
+     * 用一次流式查询读取全部检查记录，作为交叉验证的数据集（不经过列式存储，不阻塞写操作）
+     */
+    public CrossValidation.Dataset loadDataset() throws SQLException {
+        return CrossValidation.load(examDao, normalClassId());
+    }
+
+    /**
+     * 对模型做分层 k 折交叉验证，各折与各正则系数在给定线程池中并行训练
+     * @param grid L2 正则系数的候选值
+     */
+    public CrossValidationReport crossValidate(CrossValidation.Dataset data, int folds, double[] grid,
+                                               ForkJoinPool pool) {
+        return CrossValidation.run(data, folds, grid, CV_SEED, pool);
+    }
+
+    /**
+     * 用默认正则系数网格和公共线程池做交叉验证
+     */
+    public CrossValidationReport crossValidate(int folds) throws SQLException {
+        return crossValidate(loadDataset(), folds, CrossValidation.DEFAULT_GRID, pool);
+    }
+
+    /**
+     * 一条检查记录的异常概率
+     */
+    public double score(Exam exam) throws SQLException {
+        return getModel().score(ExamAggregates.indicators(exam));
+    }
+
+    /**
+     * 一组指标的异常概率
+     * @param indicators 6个指标（顺序同 StatisticsService.getIndicatorNames）
+     */
+    public double score(double[] indicators) throws SQLException {
+        return getModel().score(indicators);
+    }
+
+    /**
+     * 用当前模型并行为全部检查记录打分
+     */
+    public RiskScores scoreAll() throws SQLException {
+        RiskModel current = getModel();
+        return columnStore.read(columns -> {
+            long start = System.nanoTime();
+            int n = columns.size();
+            double[] probabilities = new double[n];
+            pool.invoke(new ScoreTask(current, indicatorColumns(columns), probabilities, 0, n));
+            int[] examIds = Arrays.copyOf(columns.examIdColumn(), n);
+            return new RiskScores(current.getVersion(), examIds, probabilities, System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * 用当前模型为待保存的检查记录打分；尚未加载模型时清除分数，留给下次重算
+     */
+    static void stampRisk(Exam exam) {
+        RiskModel current = model;
+        if (current != null) {
+            exam.setRiskScore(current.score(ExamAggregates.indicators(exam)));
+            exam.setModelVersion(current.getVersion());
+        } else {
+            exam.setRiskScore(null);
+            exam.setModelVersion(null);
+        }
+    }
+
+    private static RiskModelVersion toRecord(RiskModel model) {
+        RiskModelVersion record = new RiskModelVersion();
+        record.setModelVersion(model.getVersion());
+        record.setParameters(model.parameters());
+        record.setTrainingRows(model.getTrainingRows());
+        record.setTrainingPositives(model.getTrainingPositives());
+        record.setTrainingAccuracy(model.getTrainingAccuracy());
+        record.setTrainingLogLoss(model.getTrainingLogLoss());
+        record.setIterations(model.getIterations());
+        record.setTrainedAt(new Timestamp(model.getTrainedAt()));
+        return record;
+    }
+
+    private static RiskModel fromRecord(RiskModelVersion record) {
+        return RiskModel.fromParameters(record.getModelVersion(), record.getParameters(),
+                record.getTrainingRows(), record.getTrainingPositives(), record.getTrainingAccuracy(),
+                record.getTrainingLogLoss(), record.getIterations(), record.getTrainedAt().getTime());
+    }
+
+    private int normalClassId() throws SQLException {
+        DiagnosisClass normal = diagnosisClassCache.getByCode(NORMAL_CODE);
+        if (normal == null) {
+            throw new IllegalStateException("缺少代码为 " + NORMAL_CODE + " 的正常诊断类别");
+        }
+        return normal.getClassId();
+    }
+
+    /**
+     * 训练标签：正常类别为 0，其余为 1
+     */
+    static byte[] labels(ExamColumnStore.Columns columns, int normalClassId) {
+        int n = columns.size();
+        int[] classIds = columns.classIdColumn();
+        byte[] labels = new byte[n];
+        for (int row = 0; row < n; row++) {
+            labels[row] = classIds[row] == normalClassId ? (byte) 0 : (byte) 1;
+        }
+        return labels;
+    }
+
+    static double[][] indicatorColumns(ExamColumnStore.Columns columns) {
+        double[][] x = new double[ExamAggregates.INDICATORS][];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = columns.indicatorColumn(i);
+        }
+        return x;
+    }
+
+    private static final class ScoreTask extends RecursiveAction {
+        private final RiskModel model;
+        private final double[][] columns;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        ScoreTask(RiskModel model, double[][] columns, double[] out, int from, int to) {
+            this.model = model;
+            this.columns = columns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SCORE_LEAF_ROWS) {
+                model.score(columns, from, to, out);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScoreTask(model, columns, out, from, mid), new ScoreTask(model, columns, out, mid, to));
+        }
+    }
+}
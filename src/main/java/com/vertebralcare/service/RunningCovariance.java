@@ -0,0 +1,149 @@
+package com.vertebralcare.service;
+
+import java.util.Arrays;
+
+/**
+ * Running mean and covariance of d-dimensional points, with O(d^2) add and remove
+ * Welford's update generalized to the co-moment matrix, so the covariance never has to be recomputed
+ * from the data. The Cholesky factor used for Mahalanobis distances is refactored lazily, at most once
+ * per change, which is O(d^3) with d fixed.
+ * The covariance is factored with a small ridge on its diagonal. Without it, dimensions that are linear
+ * combinations of others (pelvic incidence is pelvic tilt plus sacral slope) make the matrix singular
+ * and no distance could be computed at all.
+ */
+final class RunningCovariance {
+
+    // Fraction of each variance added to the diagonal before factoring: small enough to leave the
+    // distance along well-conditioned directions unchanged, large enough to factor an exact dependency
+    private static final double RIDGE = 1e-3;
+
+    private final int dims;
+    private long count;
+    private final double[] mean;
+    // Sum over points of (x - mean)(x - mean)^T, lower triangle used
+    private final double[][] comoment;
+
+    // Lower-triangular Cholesky factor of the covariance; null when stale or not positive definite
+    private double[][] factor;
+    private boolean factorStale = true;
+
+    RunningCovariance(int dims) {
+        this.dims = dims;
+        this.mean = new double[dims];
+        this.comoment = new double[dims][dims];
+    }
+
+    long count() {
+        return count;
+    }
+
+    double mean(int i) {
+        return mean[i];
+    }
+
+    /**
+     * Sample standard deviation of dimension i (NaN below two points)
+     */
+    double standardDeviation(int i) {
+        return count > 1 ? Math.sqrt(comoment[i][i] / (count - 1)) : Double.NaN;
+    }
+
+    void add(double[] x) {
+        count++;
+        double[] before = new double[dims];
+        for (int i = 0; i < dims; i++) {
+            before[i] = x[i] - mean[i];
+            mean[i] += before[i] / count;
+        }
+        for (int i = 0; i < dims; i++) {
+            double after = x[i] - mean[i];
+            for (int j = 0; j <= i; j++) {
+                comoment[i][j] += after * before[j];
+            }
+        }
+        factorStale = true;
+    }
+
+    /**
+     * Remove a point added earlier (the exact inverse of add, up to rounding)
+     */
+    void remove(double[] x) {
+        if (count <= 1) {
+            count = 0;
+            Arrays.fill(mean, 0.0);
+            for (double[] row : comoment) {
+                Arrays.fill(row, 0.0);
+            }
+            factorStale = true;
+            return;
+        }
+        count--;
+        double[] with = new double[dims];
+        for (int i = 0; i < dims; i++) {
+            with[i] = x[i] - mean[i];
+            mean[i] -= with[i] / count;
+        }
+        for (int i = 0; i < dims; i++) {
+            double without = x[i] - mean[i];
+            for (int j = 0; j <= i; j++) {
+                comoment[i][j] -= without * with[j];
+            }
+            // Rounding can leave a tiny negative sum of squares
+            comoment[i][i] = Math.max(0.0, comoment[i][i]);
+        }
+        factorStale = true;
+    }
+
+    /**
+     * Squared Mahalanobis distance of x from the mean, NaN if the regularized covariance still can't be
+     * factored (too few points, or a dimension with no variance)
+     */
+    double mahalanobisSquared(double[] x) {
+        if (factorStale) {
+            factor = cholesky();
+            factorStale = false;
+        }
+        if (factor == null) {
+            return Double.NaN;
+        }
+        // Solve L z = x - mean; the distance is |z|^2
+        double[] z = new double[dims];
+        double sum = 0;
+        for (int i = 0; i < dims; i++) {
+            double v = x[i] - mean[i];
+            for (int k = 0; k < i; k++) {
+                v -= factor[i][k] * z[k];
+            }
+            z[i] = v / factor[i][i];
+            sum += z[i] * z[i];
+        }
+        return sum;
+    }
+
+    private double[][] cholesky() {
+        if (count <= dims) {
+            return null;
+        }
+        double[][] l = new double[dims][dims];
+        for (int i = 0; i < dims; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = comoment[i][j] / (count - 1);
+                if (i == j) {
+                    sum += RIDGE * sum;
+                }
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i][k] * l[j][k];
+                }
+                if (i == j) {
+                    if (sum <= 1e-12) {
+                        return null;
+                    }
+                    l[i][i] = Math.sqrt(sum);
+                } else {
+                    l[i][j] = sum / l[j][j];
+                }
+            }
+        }
+        return l;
+    }
+}
@@ -0,0 +1,43 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.model.Exam;
+
+/**
+ * 相似病例查询结果中的一条（不可变）
+ * 距离为6个指标标准化（减均值、除以标准差）后的欧氏距离，越小越相似。
+ */
+public final class SimilarExam {
+
+    private final int examId;
+    private final double distance;
+    private final Exam exam;
+
+    SimilarExam(int examId, double distance) {
+        this(examId, distance, null);
+    }
+
+    SimilarExam(int examId, double distance, Exam exam) {
+        this.examId = examId;
+        this.distance = distance;
+        this.exam = exam;
+    }
+
+    public int getExamId() {
+        return examId;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * 检查记录详情（由 ExamService 填充，索引直接返回的结果为 null）
+     */
+    public Exam getExam() {
+        return exam;
+    }
+
+    SimilarExam withExam(Exam exam) {
+        return new SimilarExam(examId, distance, exam);
+    }
+}
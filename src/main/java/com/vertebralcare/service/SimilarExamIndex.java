@@ -0,0 +1,214 @@
+package com.vertebralcare.service;
+
+import com.vertebralcare.model.Exam;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 相似病例空间索引（进程内共享）
+ * 把每条检查记录的6个指标按均值和标准差标准化后放入 k-d 树，按欧氏距离查询最近的 k 条记录。
+ * 索引首次查询时由 ExamColumnStore 构建；之后的增删改由 ExamAggregates.write() 同步：
+ * 删除或修改的记录在树中标记为已删除，新增或修改后的记录放入一个线性扫描的增量区，
+ * 两者累积到一定数量后在下次查询时整体重建（标准化参数也随之更新）。
+ */
+public final class SimilarExamIndex {
+
+    private static final int DIMS = ExamAggregates.INDICATORS;
+    private static final int MAX_DELTA = 4096;
+
+    private static final SimilarExamIndex INSTANCE = new SimilarExamIndex(ExamColumnStore.getInstance());
+
+    private final ExamColumnStore columnStore;
+
+    // Guarded by this; null until built or after too many changes
+    private State state;
+
+    SimilarExamIndex(ExamColumnStore columnStore) {
+        this.columnStore = columnStore;
+    }
+
+    public static SimilarExamIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 查询与给定指标最相似的 k 条检查记录（按距离由近到远）
+     * @param indicators 6个指标
+     * @param excludeExamId 不返回的检查记录ID（查询记录本身），没有则传 0
+     */
+    public synchronized List<SimilarExam> nearest(double[] indicators, int k, int excludeExamId) throws SQLException {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k必须大于0");
+        }
+        if (state == null) {
+            state = build();
+        }
+        State s = state;
+        float[] query = s.standardize(indicators);
+        KdTree.Neighbors neighbors = new KdTree.Neighbors(k);
+        s.tree.search(query, neighbors, id -> id == excludeExamId || s.removed.get(id) >= 0);
+        for (int i = 0; i < s.deltaSize; i++) {
+            int id = s.deltaIds[i];
+            if (id != excludeExamId) {
+                neighbors.offer(id, KdTree.distanceSquared(query, s.deltaPoints, i * DIMS, DIMS));
+            }
+        }
+
+        float[] distances = new float[neighbors.size()];
+        int[] ids = neighbors.sorted(distances);
+        List<SimilarExam> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            result.add(new SimilarExam(ids[i], Math.sqrt(distances[i])));
+        }
+        return result;
+    }
+
+    /**
+     * 同步一次写操作的结果（由 ExamAggregates.write() 在写入成功后调用）
+     */
+    synchronized void apply(List<Exam> removed, List<Exam> added) {
+        if (state == null) {
+            return;
+        }
+        for (Exam exam : removed) {
+            if (exam.getExamId() == null) {
+                state = null;
+                return;
+            }
+            state.remove(exam.getExamId());
+        }
+        for (Exam exam : added) {
+            if (exam.getExamId() == null) {
+                state = null;
+                return;
+            }
+            state.put(exam.getExamId(), ExamAggregates.indicators(exam));
+        }
+        if (state.needsRebuild()) {
+            state = null;
+        }
+    }
+
+    /**
+     * 丢弃索引，下次查询时重建
+     */
+    public synchronized void invalidate() {
+        state = null;
+    }
+
+    /**
+     * 已索引的记录数（未构建时为 0；构建之前已删除的记录被再次删除时会少计）
+     */
+    public synchronized int size() {
+        return state != null ? state.tree.size() - state.removedCount + state.deltaSize : 0;
+    }
+
+    private State build() throws SQLException {
+        return columnStore.read(columns -> {
+            int n = columns.size();
+            double[] mean = new double[DIMS];
+            double[] scale = new double[DIMS];
+            for (int d = 0; d < DIMS; d++) {
+                double[] column = columns.indicatorColumn(d);
+                double sum = 0;
+                for (int row = 0; row < n; row++) {
+                    sum += column[row];
+                }
+                mean[d] = n > 0 ? sum / n : 0.0;
+                double ss = 0;
+                for (int row = 0; row < n; row++) {
+                    double dev = column[row] - mean[d];
+                    ss += dev * dev;
+                }
+                double sd = n > 0 ? Math.sqrt(ss / n) : 0.0;
+                scale[d] = sd > 0 ? sd : 1.0;
+            }
+
+            float[] points = new float[n * DIMS];
+            for (int d = 0; d < DIMS; d++) {
+                double[] column = columns.indicatorColumn(d);
+                for (int row = 0; row < n; row++) {
+                    points[row * DIMS + d] = (float) ((column[row] - mean[d]) / scale[d]);
+                }
+            }
+            int[] ids = Arrays.copyOf(columns.examIdColumn(), n);
+            int maxId = 0;
+            for (int id : ids) {
+                maxId = Math.max(maxId, id);
+            }
+            return new State(mean, scale, new KdTree(points, ids, n, DIMS), maxId);
+        });
+    }
+
+    /**
+     * 一次构建的树，加上构建之后的删除标记和增量记录
+     */
+    private static final class State {
+        final double[] mean;
+        final double[] scale;
+        final KdTree tree;
+        final int maxTreeId;
+
+        // Tree entries deleted or superseded since the build (exam_id -> 1)
+        final IntIndex removed = new IntIndex(64);
+        int removedCount;
+
+        // Exams added or changed since the build, scanned linearly
+        int[] deltaIds = new int[64];
+        float[] deltaPoints = new float[64 * DIMS];
+        int deltaSize;
+        final IntIndex deltaRow = new IntIndex(64);
+
+        State(double[] mean, double[] scale, KdTree tree, int maxTreeId) {
+            this.mean = mean;
+            this.scale = scale;
+            this.tree = tree;
+            this.maxTreeId = maxTreeId;
+        }
+
+        float[] standardize(double[] x) {
+            float[] z = new float[DIMS];
+            for (int d = 0; d < DIMS; d++) {
+                z[d] = (float) ((x[d] - mean[d]) / scale[d]);
+            }
+            return z;
+        }
+
+        void remove(int examId) {
+            // Ids are assigned in increasing order, so anything newer than the build is not in the tree
+            if (examId <= maxTreeId && removed.get(examId) < 0) {
+                removed.put(examId, 1);
+                removedCount++;
+            }
+            int row = deltaRow.remove(examId);
+            if (row >= 0) {
+                int last = --deltaSize;
+                if (row != last) {
+                    deltaIds[row] = deltaIds[last];
+                    System.arraycopy(deltaPoints, last * DIMS, deltaPoints, row * DIMS, DIMS);
+                    deltaRow.put(deltaIds[row], row);
+                }
+            }
+        }
+
+        void put(int examId, double[] x) {
+            remove(examId);
+            if (deltaSize == deltaIds.length) {
+                deltaIds = Arrays.copyOf(deltaIds, deltaSize * 2);
+                deltaPoints = Arrays.copyOf(deltaPoints, deltaSize * 2 * DIMS);
+            }
+            float[] z = standardize(x);
+            System.arraycopy(z, 0, deltaPoints, deltaSize * DIMS, DIMS);
+            deltaIds[deltaSize] = examId;
+            deltaRow.put(examId, deltaSize);
+            deltaSize++;
+        }
+
+        boolean needsRebuild() {
+            return deltaSize > MAX_DELTA || removedCount > Math.max(MAX_DELTA, tree.size() / 8);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.vertebralcare.service;
 
-import com.vertebralcare.dao.ExamDao;
+import com.vertebralcare.dao.ExamRollupDao;
 import com.vertebralcare.dao.PatientDao;
+import com.vertebralcare.model.ExamRollup;
 
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,12 +13,24 @@ import java.util.Map;
  */
 public class StatisticsService {
 
-    private final ExamDao examDao;
     private final PatientDao patientDao;
+    private final ExamRollupDao rollupDao;
+    private final ExamAggregates aggregates;
+    private final ExamAnalytics analytics;
 
     public StatisticsService() {
-        this.examDao = new ExamDao();
         this.patientDao = new PatientDao();
+        this.rollupDao = new ExamRollupDao();
+        this.aggregates = ExamAggregates.getInstance();
+        this.analytics = new ExamAnalytics();
+    }
+
+    /**
+     * 一次性读取仪表盘所需的全部统计数字
+     * 检查相关的数字来自内存汇总的同一次读取，病人总数来自查询缓存，不再逐项查询数据库
+     */
+    public StatisticsSnapshot snapshot() throws SQLException {
+        return aggregates.snapshot(patientDao.count());
     }
 
     /**
@@ -30,7 +44,7 @@ public class StatisticsService {
      * 获取检查记录总数
      */
     public int getExamCount() throws SQLException {
-        return examDao.count();
+        return (int) aggregates.getTotalCount();
     }
 
     /**
@@ -38,7 +52,7 @@ public class StatisticsService {
      * @return Map<类别描述, 数量>
      */
     public Map<String, Integer> getCountByClass() throws SQLException {
-        return examDao.countByClass();
+        return aggregates.getCountByClass();
     }
 
     /**
@@ -46,19 +60,7 @@ public class StatisticsService {
      * @return 异常占总数的百分比
      */
     public double getAbnormalPercentage() throws SQLException {
-        Map<String, Integer> counts = getCountByClass();
-        int total = 0;
-        int abnormal = 0;
-
-        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
-            total += entry.getValue();
-            if (entry.getKey().contains("Abnormal")) {
-                abnormal = entry.getValue();
-            }
-        }
-
-        if (total == 0) return 0.0;
-        return (abnormal * 100.0) / total;
+        return snapshot().getAbnormalPercentage();
     }
 
     /**
@@ -66,7 +68,7 @@ public class StatisticsService {
      * @return 正常占总数的百分比
      */
     public double getNormalPercentage() throws SQLException {
-        return 100.0 - getAbnormalPercentage();
+        return snapshot().getNormalPercentage();
     }
 
     /**
@@ -74,7 +76,45 @@ public class StatisticsService {
      * @return Map<类别描述, double[6]> 6个指标的平均值
      */
     public Map<String, double[]> getAveragesByClass() throws SQLException {
-        return examDao.getAveragesByClass();
+        return aggregates.getAveragesByClass();
+    }
+
+    /**
+     * 按类别获取各指标样本标准差
+     * @return Map<类别描述, double[6]>，数量不足2的类别为 NaN
+     */
+    public Map<String, double[]> getStdDevsByClass() throws SQLException {
+        return aggregates.getStdDevsByClass();
+    }
+
+    /**
+     * 按类别获取各指标的分布摘要（中位数、P90、P99 和直方图）
+     * @return Map<类别描述, IndicatorDistribution[6]>
+     */
+    public Map<String, IndicatorDistribution[]> getDistributionsByClass() throws SQLException {
+        return aggregates.getDistributionsByClass();
+    }
+
+    /**
+     * 全量扫描检查记录，得到按类别的描述统计和指标相关系数矩阵（并行计算）
+     */
+    public ExamSummary summarize() throws SQLException {
+        return analytics.summarize();
+    }
+
+    /**
+     * 按指定计算方式（并行扫描或 SQL 聚合）获取各类别的指标平均值，用于核对和比较两种方式
+     * @return Map<类别描述, double[6]>
+     */
+    public Map<String, double[]> getAveragesByClass(ExamAnalytics.Engine engine) throws SQLException {
+        return analytics.getAveragesByClass(engine);
+    }
+
+    /**
+     * 获取按月或按周的检查趋势（每个周期、每个类别一行，来自预汇总表）
+     */
+    public List<ExamRollup> getTrend(ExamRollup.Period period) throws SQLException {
+        return rollupDao.findByPeriod(period);
     }
 
     /**
@@ -0,0 +1,116 @@
+package com.vertebralcare.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 仪表盘统计数据快照（不可变）
+ * 所有数字取自同一时刻，互相一致：各类别数量之和等于检查总数，占比由同一组数量算出。
+ */
+public final class StatisticsSnapshot {
+
+    private final long takenAt;
+    private final int patientCount;
+    private final int examCount;
+    private final Map<String, Integer> countByClass;
+    private final Map<String, double[]> averagesByClass;
+    private final Map<String, double[]> stdDevsByClass;
+    private final Map<String, IndicatorDistribution[]> distributionsByClass;
+
+    StatisticsSnapshot(int patientCount, Map<String, Integer> countByClass,
+                       Map<String, double[]> averagesByClass, Map<String, double[]> stdDevsByClass,
+                       Map<String, IndicatorDistribution[]> distributionsByClass) {
+        this.takenAt = System.currentTimeMillis();
+        this.patientCount = patientCount;
+        int total = 0;
+        for (int count : countByClass.values()) {
+            total += count;
+        }
+        this.examCount = total;
+        this.countByClass = Collections.unmodifiableMap(new LinkedHashMap<>(countByClass));
+        this.averagesByClass = copy(averagesByClass);
+        this.stdDevsByClass = copy(stdDevsByClass);
+        Map<String, IndicatorDistribution[]> distributions = new LinkedHashMap<>();
+        for (Map.Entry<String, IndicatorDistribution[]> entry : distributionsByClass.entrySet()) {
+            distributions.put(entry.getKey(), entry.getValue().clone());
+        }
+        this.distributionsByClass = Collections.unmodifiableMap(distributions);
+    }
+
+    /** 快照时间（毫秒时间戳） */
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    public int getPatientCount() {
+        return patientCount;
+    }
+
+    public int getExamCount() {
+        return examCount;
+    }
+
+    /**
+     * 按类别统计的检查数量（按数量降序）
+     * @return Map<类别描述, 数量>
+     */
+    public Map<String, Integer> getCountByClass() {
+        return countByClass;
+    }
+
+    /**
+     * 异常占检查总数的百分比
+     */
+    public double getAbnormalPercentage() {
+        if (examCount == 0) {
+            return 0.0;
+        }
+        int abnormal = 0;
+        for (Map.Entry<String, Integer> entry : countByClass.entrySet()) {
+            if (entry.getKey().contains("Abnormal")) {
+                abnormal = entry.getValue();
+            }
+        }
+        return (abnormal * 100.0) / examCount;
+    }
+
+    /**
+     * 正常占检查总数的百分比
+     */
+    public double getNormalPercentage() {
+        return 100.0 - getAbnormalPercentage();
+    }
+
+    /**
+     * 某类别6个指标的平均值，类别不存在时返回 null
+     */
+    public double[] getAverages(String classDescription) {
+        double[] values = averagesByClass.get(classDescription);
+        return values != null ? values.clone() : null;
+    }
+
+    /**
+     * 某类别6个指标的样本标准差（数量不足2时为 NaN），类别不存在时返回 null
+     */
+    public double[] getStdDevs(String classDescription) {
+        double[] values = stdDevsByClass.get(classDescription);
+        return values != null ? values.clone() : null;
+    }
+
+    /**
+     * 某类别6个指标的分布摘要（中位数、P90、P99、直方图），类别不存在时返回 null
+     */
+    public IndicatorDistribution[] getDistributions(String classDescription) {
+        IndicatorDistribution[] values = distributionsByClass.get(classDescription);
+        return values != null ? values.clone() : null;
+    }
+
+    private static Map<String, double[]> copy(Map<String, double[]> source) {
+        Map<String, double[]> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> entry : source.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+}
@@ -0,0 +1,129 @@
+package com.vertebralcare.ui;
+
+import com.vertebralcare.dao.DBUtil;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs panel data loads off the Event Dispatch Thread
+ * Each loader has at most one request in flight. A newer request supersedes it:
+ * the old task is interrupted, its running SQL statement is cancelled and its
+ * result is discarded. Results and errors are delivered on the EDT.
+ */
+public class BackgroundLoader {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ui-loader-" + THREAD_COUNT.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final JComponent indicator;
+    private Request<?> current;
+
+    /**
+     * @param indicator component shown while a request is running, may be null
+     */
+    public BackgroundLoader(JComponent indicator) {
+        this.indicator = indicator;
+        setLoading(false);
+    }
+
+    /**
+     * Start a load, superseding the one in flight (call on the EDT)
+     * @param task runs on a background thread
+     * @param onSuccess receives the result on the EDT
+     * @param onError receives the failure on the EDT
+     */
+    public <T> void submit(Callable<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        cancel();
+        Request<T> request = new Request<>(task, onSuccess, onError);
+        current = request;
+        setLoading(true);
+        request.future = EXECUTOR.submit(request::run);
+    }
+
+    /**
+     * Cancel the request in flight, if any (call on the EDT)
+     */
+    public void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+            setLoading(false);
+        }
+    }
+
+    public boolean isLoading() {
+        return current != null;
+    }
+
+    private void setLoading(boolean loading) {
+        if (indicator != null) {
+            indicator.setVisible(loading);
+        }
+    }
+
+    private <T> void finish(Request<T> request, T result, Exception error) {
+        if (request != current) {
+            return; // superseded
+        }
+        current = null;
+        setLoading(false);
+        if (error != null) {
+            request.onError.accept(error);
+        } else {
+            request.onSuccess.accept(result);
+        }
+    }
+
+    private class Request<T> {
+        private final Callable<T> task;
+        private final Consumer<T> onSuccess;
+        private final Consumer<Exception> onError;
+        private volatile Thread worker;
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        Request(Callable<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+            this.task = task;
+            this.onSuccess = onSuccess;
+            this.onError = onError;
+        }
+
+        void run() {
+            if (cancelled) {
+                return;
+            }
+            worker = Thread.currentThread();
+            try {
+                T result = task.call();
+                SwingUtilities.invokeLater(() -> finish(this, result, null));
+            } catch (Exception e) {
+                if (!cancelled) {
+                    SwingUtilities.invokeLater(() -> finish(this, null, e));
+                }
+            } finally {
+                worker = null;
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            Thread t = worker;
+            if (t != null) {
+                DBUtil.cancelStatement(t);
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package com.vertebralcare.ui;
 
+import com.vertebralcare.dao.ExamKeys;
 import com.vertebralcare.model.DiagnosisClass;
 import com.vertebralcare.model.Exam;
+import com.vertebralcare.model.ExamReview;
 import com.vertebralcare.model.Patient;
 import com.vertebralcare.service.ExamService;
 import com.vertebralcare.service.PatientService;
+import com.vertebralcare.service.RiskModel;
+import com.vertebralcare.service.RiskService;
+import com.vertebralcare.service.SimilarExam;
+import com.vertebralcare.service.StatisticsService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.Date;
+import java.sql.SQLException;
+import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.List;
 
@@ -20,38 +28,93 @@ public class ExamPanel extends JPanel {
 
     private final ExamService examService;
     private final PatientService patientService;
+    private final RiskService riskService;
 
     private JComboBox<PatientItem> patientCombo;
     private JComboBox<ClassItem> classFilterCombo;
+    private JComboBox<RiskViewItem> riskViewCombo;
     private JTable examTable;
-    private DefaultTableModel tableModel;
-    private JButton addButton, editButton, deleteButton, refreshButton, viewButton;
+    private PagedTableModel<Exam> tableModel;
+    private JButton addButton, editButton, deleteButton, refreshButton, viewButton, reviewButton;
+    private JProgressBar loadingBar;
+    private JLabel riskModelLabel;
+    private JButton retrainButton;
+    private JProgressBar rescoreBar;
+    private JButton rescoreButton;
+
+    // Data loads run off the EDT; a newer load supersedes the one in flight
+    private BackgroundLoader tableLoader;
+    private BackgroundLoader patientLoader;
+    private BackgroundLoader riskLoader;
+    private BackgroundLoader rescoreLoader;
+    private BackgroundLoader detailLoader;
+    private BackgroundLoader saveLoader;
+    private boolean updatingCombos = false;
 
     private static final String[] COLUMN_NAMES = {
             "ID", "Patient", "Exam Date", "Pelvic Incidence", "Pelvic Tilt", "Lumbar Lordosis",
-            "Sacral Slope", "Pelvic Radius", "Spondylolisthesis", "Diagnosis"
+            "Sacral Slope", "Pelvic Radius", "Spondylolisthesis", "Diagnosis", "Abnormal Risk"
     };
 
-    public ExamPanel(ExamService examService, PatientService patientService) {
+    private static final int SIMILAR_EXAMS = 5;
+    private static final int REVIEW_ROWS = 500;
+    private static final int PAGE_SIZE = 200;
+    private static final int CACHED_PAGES = 10;
+
+    public ExamPanel(ExamService examService, PatientService patientService, RiskService riskService) {
         this.examService = examService;
         this.patientService = patientService;
+        this.riskService = riskService;
         initComponents();
         setupLayout();
         loadData();
+        loadRiskModel(false);
     }
 
     private void initComponents() {
+        // Loading indicator
+        loadingBar = new JProgressBar();
+        loadingBar.setIndeterminate(true);
+        loadingBar.setString("Loading...");
+        loadingBar.setStringPainted(true);
+        tableLoader = new BackgroundLoader(loadingBar);
+        patientLoader = new BackgroundLoader(null);
+        riskLoader = new BackgroundLoader(null);
+        detailLoader = new BackgroundLoader(null);
+        saveLoader = new BackgroundLoader(null);
+        rescoreBar = new JProgressBar(0, 100);
+        rescoreBar.setStringPainted(true);
+        rescoreLoader = new BackgroundLoader(rescoreBar);
+
         // Patient filter dropdown
         patientCombo = new JComboBox<>();
         patientCombo.addItem(new PatientItem(0, "All Patients"));
         loadPatients();
-        patientCombo.addActionListener(e -> filterByPatient());
+        patientCombo.addActionListener(e -> {
+            if (!updatingCombos) {
+                filterByPatient();
+            }
+        });
 
         // Diagnosis class filter
         classFilterCombo = new JComboBox<>();
         classFilterCombo.addItem(new ClassItem(0, "All Classes"));
         loadClasses();
-        classFilterCombo.addActionListener(e -> filterByClass());
+        classFilterCombo.addActionListener(e -> {
+            if (!updatingCombos) {
+                filterByClass();
+            }
+        });
+
+        // Row order, or a minimum stored risk (risk views list only exams that have a stored score)
+        riskViewCombo = new JComboBox<>(new RiskViewItem[]{
+                new RiskViewItem("Newest First", null),
+                new RiskViewItem("Highest Risk First", 0.0),
+                new RiskViewItem("Risk \u2265 50%", 0.5),
+                new RiskViewItem("Risk \u2265 80%", 0.8),
+                new RiskViewItem("Risk \u2265 95%", 0.95)
+        });
+        riskViewCombo.addActionListener(e -> filterByClass());
 
         // Buttons
         addButton = new JButton("Add Exam");
@@ -59,25 +122,45 @@ public class ExamPanel extends JPanel {
         deleteButton = new JButton("Delete");
         viewButton = new JButton("View Details");
         refreshButton = new JButton("Refresh");
+        reviewButton = new JButton("Review Outliers");
 
         addButton.addActionListener(e -> showAddDialog());
         editButton.addActionListener(e -> showEditDialog());
         deleteButton.addActionListener(e -> deleteExam());
         viewButton.addActionListener(e -> showDetailDialog());
         refreshButton.addActionListener(e -> refreshData());
-
-        // Table
-        tableModel = new DefaultTableModel(COLUMN_NAMES, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+        reviewButton.addActionListener(e -> showReviewDialog());
+
+        // Risk model status
+        riskModelLabel = new JLabel("Risk model: training...");
+        retrainButton = new JButton("Retrain Risk Model");
+        retrainButton.addActionListener(e -> loadRiskModel(true));
+        rescoreButton = new JButton("Rescore Stored Risks");
+        rescoreButton.addActionListener(e -> {
+            if (rescoreLoader.isLoading()) {
+                stopRescore();
+            } else {
+                startRescore();
             }
-        };
+        });
+
+        // Table (rows are fetched page by page as they scroll into view)
+        tableModel = new PagedTableModel<>(COLUMN_NAMES, this::columnValue, PAGE_SIZE, CACHED_PAGES);
         examTable = new JTable(tableModel);
         examTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         examTable.setRowHeight(25);
         examTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
 
+        // Values stay raw in the model and are formatted only when painted
+        examTable.getColumnModel().getColumn(2).setCellRenderer(
+                new FormatRenderer(new SimpleDateFormat("yyyy-MM-dd"), SwingConstants.LEFT));
+        FormatRenderer decimalRenderer = new FormatRenderer(new DecimalFormat("0.00"), SwingConstants.RIGHT);
+        for (int i = 3; i <= 8; i++) {
+            examTable.getColumnModel().getColumn(i).setCellRenderer(decimalRenderer);
+        }
+        examTable.getColumnModel().getColumn(10).setCellRenderer(
+                new FormatRenderer(new DecimalFormat("0.0%"), SwingConstants.RIGHT));
+
         // Double click to view details
         examTable.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseClicked(java.awt.event.MouseEvent e) {
@@ -89,25 +172,35 @@ public class ExamPanel extends JPanel {
     }
 
     private void loadPatients() {
-        try {
-            List<Patient> patients = patientService.getAllPatients();
-            for (Patient p : patients) {
-                patientCombo.addItem(new PatientItem(p.getPatientId(), p.getName()));
+        patientLoader.submit(patientService::getAllPatients, patients -> {
+            updatingCombos = true;
+            try {
+                patientCombo.removeAllItems();
+                patientCombo.addItem(new PatientItem(0, "All Patients"));
+                for (Patient p : patients) {
+                    patientCombo.addItem(new PatientItem(p.getPatientId(), p.getName()));
+                }
+            } finally {
+                updatingCombos = false;
             }
-        } catch (Exception e) {
+        }, e -> {
             // Ignore
-        }
+        });
     }
 
     private void loadClasses() {
-        try {
-            List<DiagnosisClass> classes = examService.getAllDiagnosisClasses();
-            for (DiagnosisClass dc : classes) {
-                classFilterCombo.addItem(new ClassItem(dc.getClassId(), dc.getDescription()));
+        new BackgroundLoader(null).submit(examService::getAllDiagnosisClasses, classes -> {
+            updatingCombos = true;
+            try {
+                for (DiagnosisClass dc : classes) {
+                    classFilterCombo.addItem(new ClassItem(dc.getClassId(), dc.getDescription()));
+                }
+            } finally {
+                updatingCombos = false;
             }
-        } catch (Exception e) {
+        }, e -> {
             // Ignore
-        }
+        });
     }
 
     private void setupLayout() {
@@ -120,12 +213,15 @@ public class ExamPanel extends JPanel {
         toolBar.add(patientCombo);
         toolBar.add(new JLabel("Filter by Class:"));
         toolBar.add(classFilterCombo);
+        toolBar.add(new JLabel("Order:"));
+        toolBar.add(riskViewCombo);
         toolBar.add(Box.createHorizontalStrut(20));
         toolBar.add(addButton);
         toolBar.add(viewButton);
         toolBar.add(editButton);
         toolBar.add(deleteButton);
         toolBar.add(refreshButton);
+        toolBar.add(reviewButton);
 
         add(toolBar, BorderLayout.NORTH);
 
@@ -136,16 +232,35 @@ public class ExamPanel extends JPanel {
         // Bottom hint
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         bottomPanel.add(new JLabel("Tip: Double-click a row to view exam details"));
+        bottomPanel.add(loadingBar);
+        bottomPanel.add(new PageErrorBar(tableModel));
+        bottomPanel.add(Box.createHorizontalStrut(20));
+        bottomPanel.add(riskModelLabel);
+        bottomPanel.add(retrainButton);
+        bottomPanel.add(rescoreBar);
+        bottomPanel.add(rescoreButton);
         add(bottomPanel, BorderLayout.SOUTH);
     }
 
     private void loadData() {
-        try {
-            List<Exam> exams = examService.getAllExams();
-            updateTable(exams);
-        } catch (Exception e) {
-            showError("Failed to load data: " + e.getMessage());
-        }
+        showSource(new ExamSource(examService, null, selectedMinRisk()), "Failed to load data: ");
+    }
+
+    /**
+     * Minimum stored risk of the selected order, or null to list all exams newest first
+     */
+    private Double selectedMinRisk() {
+        RiskViewItem selected = (RiskViewItem) riskViewCombo.getSelectedItem();
+        return selected != null ? selected.minRisk : null;
+    }
+
+    /**
+     * Load the row index of a source in the background, then show it
+     */
+    private void showSource(PagedTableModel.PageSource<Exam> source, String errorPrefix) {
+        tableLoader.submit(source::reload,
+                rowCount -> tableModel.setSource(source, rowCount),
+                e -> showError(errorPrefix + e.getMessage()));
     }
 
     private void filterByPatient() {
@@ -155,12 +270,10 @@ public class ExamPanel extends JPanel {
             return;
         }
 
-        try {
-            List<Exam> exams = examService.getExamsByPatientId(selected.id);
-            updateTable(exams);
-        } catch (Exception e) {
-            showError("Filter failed: " + e.getMessage());
-        }
+        int patientId = selected.id;
+        tableLoader.submit(() -> examService.getExamsByPatientId(patientId),
+                exams -> tableModel.setSource(new PagedTableModel.ListSource<>(exams), exams.size()),
+                e -> showError("Filter failed: " + e.getMessage()));
     }
 
     private void filterByClass() {
@@ -170,142 +283,409 @@ public class ExamPanel extends JPanel {
             return;
         }
 
-        try {
-            List<Exam> exams = examService.getExamsByClassId(selected.id);
-            updateTable(exams);
-        } catch (Exception e) {
-            showError("Filter failed: " + e.getMessage());
+        showSource(new ExamSource(examService, selected.id, selectedMinRisk()), "Filter failed: ");
+    }
+
+    /**
+     * Train the risk model in the background (or just fetch it if already trained), then repaint the risk column
+     */
+    private void loadRiskModel(boolean retrain) {
+        if (retrain) {
+            // Scores of the old model are about to be replaced anyway
+            stopRescore();
         }
+        retrainButton.setEnabled(false);
+        riskModelLabel.setText(retrain ? "Risk model: retraining..." : "Risk model: loading...");
+        riskLoader.submit(retrain ? riskService::train : riskService::getModel, model -> {
+            retrainButton.setEnabled(true);
+            riskModelLabel.setText(describe(model));
+            examTable.repaint();
+            if (retrain) {
+                startRescore();
+            } else {
+                resumeRescoreIfUnfinished();
+            }
+        }, e -> {
+            retrainButton.setEnabled(true);
+            riskModelLabel.setText("Risk model unavailable: " + e.getMessage());
+        });
     }
 
-    private void updateTable(List<Exam> exams) {
-        tableModel.setRowCount(0);
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+    /**
+     * Resume the stored-score job of the current model if an earlier run did not finish
+     */
+    private void resumeRescoreIfUnfinished() {
+        rescoreBar.setString("Checking stored scores...");
+        rescoreLoader.submit(riskService::getRescoreStatus, status -> {
+            if (status != null && !status.isRescoreComplete()) {
+                startRescore();
+            } else {
+                rescoreButton.setText("Rescore Stored Risks");
+            }
+        }, e -> rescoreButton.setText("Rescore Stored Risks"));
+    }
 
-        for (Exam e : exams) {
-            tableModel.addRow(new Object[]{
-                    e.getExamId(),
-                    e.getPatientName(),
-                    e.getExamDate() != null ? sdf.format(e.getExamDate()) : "-",
-                    String.format("%.2f", e.getPelvicIncidence()),
-                    String.format("%.2f", e.getPelvicTilt()),
-                    String.format("%.2f", e.getLumbarLordosisAngle()),
-                    String.format("%.2f", e.getSacralSlope()),
-                    String.format("%.2f", e.getPelvicRadius()),
-                    String.format("%.2f", e.getDegreeSpondylolisthesis()),
-                    e.getDiagnosisDescription()
+    /**
+     * Rewrite the stored risk of every exam with the current model in the background
+     * The job is throttled and checkpointed: stopping it (or a failure) keeps what was written,
+     * and the next start continues from there.
+     */
+    private void startRescore() {
+        rescoreBar.setValue(0);
+        rescoreBar.setString("Rescoring...");
+        rescoreButton.setText("Stop Rescoring");
+        rescoreLoader.submit(() -> riskService.rescore((current, total) -> {
+            int percent = total > 0 ? (int) (current * 100 / total) : 100;
+            SwingUtilities.invokeLater(() -> {
+                rescoreBar.setValue(percent);
+                rescoreBar.setString(String.format("Rescoring %d / %d", current, total));
             });
+        }), written -> {
+            rescoreButton.setText("Rescore Stored Risks");
+            RiskModel model = riskService.getModelIfTrained();
+            if (model != null) {
+                riskModelLabel.setText(describe(model) + String.format("; %d stored scores updated", written));
+            }
+            // Risk views are ordered by the stored scores that just changed
+            if (selectedMinRisk() != null) {
+                filterByClass();
+            }
+        }, e -> {
+            rescoreButton.setText("Resume Rescoring");
+            showError("Rescoring stopped, it will resume from the last saved chunk: " + e.getMessage());
+        });
+    }
+
+    private static String describe(RiskModel model) {
+        return String.format("Risk model %s: %d exams, training accuracy %.1f%%",
+                model.getVersion(), model.getTrainingRows(), model.getTrainingAccuracy() * 100);
+    }
+
+    private void stopRescore() {
+        if (rescoreLoader.isLoading()) {
+            rescoreLoader.cancel();
+            rescoreButton.setText("Resume Rescoring");
         }
     }
 
-    private void showAddDialog() {
-        ExamDialog dialog = new ExamDialog(
-                (Frame) SwingUtilities.getWindowAncestor(this),
-                "Add Exam Record",
-                null,
-                patientService,
-                examService
-        );
-        dialog.setVisible(true);
+    private Object columnValue(Exam e, int column) {
+        switch (column) {
+            case 0: return e.getExamId();
+            case 1: return e.getPatientName();
+            case 2: return e.getExamDate() != null ? e.getExamDate() : "-";
+            case 3: return e.getPelvicIncidence();
+            case 4: return e.getPelvicTilt();
+            case 5: return e.getLumbarLordosisAngle();
+            case 6: return e.getSacralSlope();
+            case 7: return e.getPelvicRadius();
+            case 8: return e.getDegreeSpondylolisthesis();
+            case 9: return e.getDiagnosisDescription();
+            case 10: {
+                // The stored score when it is the current model's; otherwise (still being rescored) it is
+                // a few multiply-adds, so compute it at paint time
+                RiskModel model = riskService.getModelIfTrained();
+                if (model == null) {
+                    return e.getRiskScore() != null ? e.getRiskScore() : "-";
+                }
+                if (e.getRiskScore() != null && model.getVersion().equals(e.getModelVersion())) {
+                    return e.getRiskScore();
+                }
+                return model.score(indicators(e));
+            }
+            default: return null;
+        }
+    }
 
-        if (dialog.isConfirmed()) {
-            try {
+    private static String truncate(String s, int max) {
+        if (s == null) {
+            return "-";
+        }
+        return s.length() <= max ? s : s.substring(0, max - 1) + "~";
+    }
+
+    private static double[] indicators(Exam e) {
+        return new double[]{
+                e.getPelvicIncidence(), e.getPelvicTilt(), e.getLumbarLordosisAngle(),
+                e.getSacralSlope(), e.getPelvicRadius(), e.getDegreeSpondylolisthesis()
+        };
+    }
+
+    /**
+     * Selected exam ID, or -1 if nothing is selected or its row is still loading
+     */
+    private int getSelectedExamId() {
+        Exam exam = tableModel.getRow(examTable.getSelectedRow());
+        return exam != null ? exam.getExamId() : -1;
+    }
+
+    /**
+     * True (after telling the user) while a save is in flight; a newer save request would cancel it
+     */
+    private boolean isSaving() {
+        if (saveLoader.isLoading()) {
+            showMessage("The previous change is still being saved");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Exam (null for a new one) and choice lists of the exam dialog (runs off the EDT)
+     */
+    private ExamForm loadForm(int examId) throws SQLException {
+        Exam exam = examId > 0 ? examService.getExamById(examId) : null;
+        return new ExamForm(exam, patientService.getAllPatients(), examService.getAllDiagnosisClasses());
+    }
+
+    private void showAddDialog() {
+        if (isSaving()) {
+            return;
+        }
+        detailLoader.submit(() -> loadForm(0), form -> {
+            // Another save may have started while the form was loading
+            if (isSaving()) {
+                return;
+            }
+            ExamDialog dialog = new ExamDialog(
+                    (Frame) SwingUtilities.getWindowAncestor(this),
+                    "Add Exam Record",
+                    null,
+                    form.patients,
+                    form.classes
+            );
+            dialog.setVisible(true);
+
+            if (dialog.isConfirmed()) {
                 Exam exam = dialog.getExam();
-                int id = examService.addExam(exam);
-                if (id > 0) {
-                    showMessage("Exam record added successfully");
+                // The first add builds the outlier statistics from every stored exam, so keep it off the EDT
+                saveLoader.submit(() -> {
+                    int id = examService.addExam(exam);
+                    if (id <= 0) {
+                        throw new SQLException("No ID was generated for the new exam record");
+                    }
+                    return examService.getReview(id);
+                }, review -> {
+                    if (review != null) {
+                        JOptionPane.showMessageDialog(this,
+                                "Exam record added, but its values are unusual for its diagnosis:\n" +
+                                        describe(review) + "\n\nIt has been added to the outlier review list.",
+                                "Check Values", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        showMessage("Exam record added successfully");
+                    }
                     refreshData();
-                }
-            } catch (Exception e) {
-                showError("Failed to add: " + e.getMessage());
+                }, e -> showError("Failed to add: " + e.getMessage()));
             }
-        }
+        }, e -> showError("Failed to add: " + e.getMessage()));
     }
 
     private void showEditDialog() {
-        int row = examTable.getSelectedRow();
-        if (row < 0) {
+        int examId = getSelectedExamId();
+        if (examId < 0) {
             showMessage("Please select a record to edit");
             return;
         }
-
-        int examId = (Integer) tableModel.getValueAt(row, 0);
-        try {
-            Exam exam = examService.getExamById(examId);
-            if (exam != null) {
-                ExamDialog dialog = new ExamDialog(
-                        (Frame) SwingUtilities.getWindowAncestor(this),
-                        "Edit Exam Record",
-                        exam,
-                        patientService,
-                        examService
-                );
-                dialog.setVisible(true);
-
-                if (dialog.isConfirmed()) {
-                    Exam updated = dialog.getExam();
-                    updated.setExamId(examId);
-                    if (examService.updateExam(updated)) {
+        if (isSaving()) {
+            return;
+        }
+        detailLoader.submit(() -> loadForm(examId), form -> {
+            if (form.exam == null) {
+                showMessage("The selected record no longer exists");
+                refreshData();
+                return;
+            }
+            if (isSaving()) {
+                return;
+            }
+            ExamDialog dialog = new ExamDialog(
+                    (Frame) SwingUtilities.getWindowAncestor(this),
+                    "Edit Exam Record",
+                    form.exam,
+                    form.patients,
+                    form.classes
+            );
+            dialog.setVisible(true);
+
+            if (dialog.isConfirmed()) {
+                Exam updated = dialog.getExam();
+                updated.setExamId(examId);
+                // Waits for the exam aggregates, which a running import may hold
+                saveLoader.submit(() -> examService.updateExam(updated), ok -> {
+                    if (ok) {
                         showMessage("Exam record updated successfully");
                         refreshData();
                     }
-                }
+                }, e -> showError("Edit failed: " + e.getMessage()));
             }
-        } catch (Exception e) {
-            showError("Edit failed: " + e.getMessage());
-        }
+        }, e -> showError("Edit failed: " + e.getMessage()));
     }
 
     private void showDetailDialog() {
-        int row = examTable.getSelectedRow();
-        if (row < 0) {
+        int examId = getSelectedExamId();
+        if (examId < 0) {
             showMessage("Please select a record to view");
             return;
         }
+        showDetailDialog(examId);
+    }
 
-        int examId = (Integer) tableModel.getValueAt(row, 0);
-        try {
+    private void showDetailDialog(int examId) {
+        detailLoader.submit(() -> {
             Exam exam = examService.getExamById(examId);
-            if (exam != null) {
-                StringBuilder sb = new StringBuilder();
-                sb.append("Exam ID: ").append(exam.getExamId()).append("\n");
-                sb.append("Patient: ").append(exam.getPatientName()).append("\n");
-                sb.append("Exam Date: ").append(exam.getExamDate()).append("\n\n");
-                sb.append("=== Biomechanical Indicators ===\n");
-                sb.append("Pelvic Incidence (PI): ").append(String.format("%.4f", exam.getPelvicIncidence())).append("\n");
-                sb.append("Pelvic Tilt (PT): ").append(String.format("%.4f", exam.getPelvicTilt())).append("\n");
-                sb.append("Lumbar Lordosis Angle (LL): ").append(String.format("%.4f", exam.getLumbarLordosisAngle())).append("\n");
-                sb.append("Sacral Slope (SS): ").append(String.format("%.4f", exam.getSacralSlope())).append("\n");
-                sb.append("Pelvic Radius (PR): ").append(String.format("%.4f", exam.getPelvicRadius())).append("\n");
-                sb.append("Degree of Spondylolisthesis (GS): ").append(String.format("%.4f", exam.getDegreeSpondylolisthesis())).append("\n\n");
-                sb.append("=== Diagnosis Result ===\n");
-                sb.append(exam.getDiagnosisDescription()).append("\n");
-                if (exam.getNotes() != null && !exam.getNotes().isEmpty()) {
-                    sb.append("\nNotes: ").append(exam.getNotes());
-                }
+            return exam != null ? describeExam(exam) : null;
+        }, details -> {
+            if (details == null) {
+                return;
+            }
+            JTextArea textArea = new JTextArea(details);
+            textArea.setEditable(false);
+            textArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
+            JScrollPane scrollPane = new JScrollPane(textArea);
+            scrollPane.setPreferredSize(new Dimension(560, 460));
+
+            JOptionPane.showMessageDialog(this, scrollPane, "Exam Details", JOptionPane.INFORMATION_MESSAGE);
+        }, e -> showError("Failed to get details: " + e.getMessage()));
+    }
 
-                JTextArea textArea = new JTextArea(sb.toString());
-                textArea.setEditable(false);
-                textArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
-                JScrollPane scrollPane = new JScrollPane(textArea);
-                scrollPane.setPreferredSize(new Dimension(400, 350));
+    /**
+     * Detail text of an exam, with its review and similar exams (runs off the EDT)
+     */
+    private String describeExam(Exam exam) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Exam ID: ").append(exam.getExamId()).append("\n");
+        sb.append("Patient: ").append(exam.getPatientName()).append("\n");
+        sb.append("Exam Date: ").append(exam.getExamDate()).append("\n\n");
+        sb.append("=== Biomechanical Indicators ===\n");
+        sb.append("Pelvic Incidence (PI): ").append(String.format("%.4f", exam.getPelvicIncidence())).append("\n");
+        sb.append("Pelvic Tilt (PT): ").append(String.format("%.4f", exam.getPelvicTilt())).append("\n");
+        sb.append("Lumbar Lordosis Angle (LL): ").append(String.format("%.4f", exam.getLumbarLordosisAngle())).append("\n");
+        sb.append("Sacral Slope (SS): ").append(String.format("%.4f", exam.getSacralSlope())).append("\n");
+        sb.append("Pelvic Radius (PR): ").append(String.format("%.4f", exam.getPelvicRadius())).append("\n");
+        sb.append("Degree of Spondylolisthesis (GS): ").append(String.format("%.4f", exam.getDegreeSpondylolisthesis())).append("\n\n");
+        sb.append("=== Diagnosis Result ===\n");
+        sb.append(exam.getDiagnosisDescription()).append("\n");
+        RiskModel model = riskService.getModelIfTrained();
+        if (model != null) {
+            sb.append(String.format("Predicted abnormal probability: %.1f%%\n", model.score(indicators(exam)) * 100));
+            sb.append("(").append(model.getVersion()).append(", for reference only)\n");
+        }
+        if (exam.getRiskScore() != null) {
+            sb.append(String.format("Stored risk score: %.1f%% (%s)\n", exam.getRiskScore() * 100,
+                    exam.getModelVersion()));
+        }
+        ExamReview review = examService.getReview(exam.getExamId());
+        if (review != null) {
+            sb.append("\n=== Outlier Review ===\n");
+            sb.append(describe(review)).append("\n");
+            sb.append(review.getReviewedAt() != null ? "Reviewed " + review.getReviewedAt() : "Pending review")
+                    .append("\n");
+        }
+        if (exam.getNotes() != null && !exam.getNotes().isEmpty()) {
+            sb.append("\nNotes: ").append(exam.getNotes()).append("\n");
+        }
 
-                JOptionPane.showMessageDialog(this, scrollPane, "Exam Details", JOptionPane.INFORMATION_MESSAGE);
+        List<SimilarExam> similar = examService.findSimilarExams(exam, SIMILAR_EXAMS);
+        if (!similar.isEmpty()) {
+            sb.append("\n=== Most Similar Past Exams ===\n");
+            for (SimilarExam s : similar) {
+                Exam other = s.getExam();
+                sb.append(String.format("#%-7d %s  %-16s %-10s distance %.2f\n", other.getExamId(),
+                        other.getExamDate(), truncate(other.getPatientName(), 16),
+                        other.getDiagnosisDescription(), s.getDistance()));
             }
-        } catch (Exception e) {
-            showError("Failed to get details: " + e.getMessage());
         }
+        return sb.toString();
+    }
+
+    private void showReviewDialog() {
+        detailLoader.submit(() -> new ReviewList(examService.getPendingReviews(REVIEW_ROWS),
+                        examService.countPendingReviews()),
+                list -> showReviewDialog(list.reviews, list.pending),
+                e -> showError("Failed to load outlier reviews: " + e.getMessage()));
+    }
+
+    private void showReviewDialog(List<ExamReview> reviews, int pending) {
+        if (reviews.isEmpty()) {
+            showMessage("No exams are waiting for outlier review");
+            return;
+        }
+
+        String[] names = StatisticsService.getIndicatorNames();
+        DefaultTableModel model = new DefaultTableModel(new String[]{
+                "ID", "Patient", "Exam Date", "Diagnosis", "Most Unusual", "Value", "z", "Distance"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (ExamReview review : reviews) {
+            model.addRow(new Object[]{
+                    review.getExamId(), review.getPatientName(), review.getExamDate(), review.getDiagnosisDescription(),
+                    names[review.getIndicator()], String.format("%.2f", review.getIndicatorValue()),
+                    String.format("%+.1f", review.getZScore()), String.format("%.1f", review.getDistance())
+            });
+        }
+        JTable table = new JTable(model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setRowHeight(25);
+
+        JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(this),
+                "Outlier Review (" + pending + " pending" + (pending > reviews.size() ?
+                        ", showing the " + reviews.size() + " most unusual" : "") + ")", true);
+        JButton openButton = new JButton("Open");
+        JButton markButton = new JButton("Mark Reviewed");
+        JButton closeButton = new JButton("Close");
+        openButton.addActionListener(e -> {
+            int row = table.getSelectedRow();
+            if (row >= 0) {
+                showDetailDialog((Integer) model.getValueAt(row, 0));
+            }
+        });
+        markButton.addActionListener(e -> {
+            int row = table.getSelectedRow();
+            if (row < 0 || isSaving()) {
+                return;
+            }
+            int examId = (Integer) model.getValueAt(row, 0);
+            saveLoader.submit(() -> examService.markReviewed(examId), ok -> {
+                // Rows may have moved while the update was running
+                for (int i = 0; i < model.getRowCount(); i++) {
+                    if ((Integer) model.getValueAt(i, 0) == examId) {
+                        model.removeRow(i);
+                        break;
+                    }
+                }
+            }, ex -> showError("Failed to mark reviewed: " + ex.getMessage()));
+        });
+        closeButton.addActionListener(e -> dialog.dispose());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(new JLabel("Values far from other exams of the same diagnosis; check them for entry errors"));
+        buttonPanel.add(openButton);
+        buttonPanel.add(markButton);
+        buttonPanel.add(closeButton);
+
+        dialog.setLayout(new BorderLayout(10, 10));
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(960, 480);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private static String describe(ExamReview review) {
+        return String.format("%s = %.2f (%.1f standard deviations from the class mean, distance %.1f)",
+                StatisticsService.getIndicatorNames()[review.getIndicator()], review.getIndicatorValue(),
+                review.getZScore(), review.getDistance());
     }
 
     private void deleteExam() {
-        int row = examTable.getSelectedRow();
-        if (row < 0) {
+        int examId = getSelectedExamId();
+        if (examId < 0) {
             showMessage("Please select a record to delete");
             return;
         }
 
-        int examId = (Integer) tableModel.getValueAt(row, 0);
-
         int confirm = JOptionPane.showConfirmDialog(
                 this,
                 "Are you sure you want to delete this exam record?",
@@ -314,22 +694,19 @@ public class ExamPanel extends JPanel {
                 JOptionPane.WARNING_MESSAGE
         );
 
-        if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                if (examService.deleteExam(examId)) {
+        if (confirm == JOptionPane.YES_OPTION && !isSaving()) {
+            // Waits for the exam aggregates, which a running import may hold
+            saveLoader.submit(() -> examService.deleteExam(examId), ok -> {
+                if (ok) {
                     showMessage("Deleted successfully");
                     refreshData();
                 }
-            } catch (Exception e) {
-                showError("Delete failed: " + e.getMessage());
-            }
+            }, e -> showError("Delete failed: " + e.getMessage()));
         }
     }
 
     public void refreshData() {
         // Refresh patient dropdown
-        patientCombo.removeAllItems();
-        patientCombo.addItem(new PatientItem(0, "All Patients"));
         loadPatients();
 
         loadData();
@@ -344,6 +721,64 @@ public class ExamPanel extends JPanel {
     }
 
     // Helper classes
+
+    /**
+     * Keyset-paged exam source, optionally filtered by diagnosis class
+     * Newest first, or by stored risk (highest first) when a minimum risk is given.
+     */
+    private static class ExamSource implements PagedTableModel.PageSource<Exam> {
+        private final ExamService examService;
+        private final Integer classId;
+        private final Double minRisk;
+        private ExamKeys keys;
+
+        ExamSource(ExamService examService, Integer classId, Double minRisk) {
+            this.examService = examService;
+            this.classId = classId;
+            this.minRisk = minRisk;
+        }
+
+        @Override
+        public int reload() throws Exception {
+            keys = minRisk != null
+                    ? examService.getExamRiskSortKeys(classId, minRisk)
+                    : examService.getExamSortKeys(classId);
+            return keys.size();
+        }
+
+        @Override
+        public List<Exam> fetch(int firstRow, int pageSize) throws Exception {
+            return minRisk != null
+                    ? examService.getExamRiskPageAt(keys, firstRow, classId, pageSize)
+                    : examService.getExamPageAt(keys, firstRow, classId, pageSize);
+        }
+    }
+
+    /**
+     * Data of the exam dialog, loaded together off the EDT
+     */
+    private static class ExamForm {
+        final Exam exam;
+        final List<Patient> patients;
+        final List<DiagnosisClass> classes;
+
+        ExamForm(Exam exam, List<Patient> patients, List<DiagnosisClass> classes) {
+            this.exam = exam;
+            this.patients = patients;
+            this.classes = classes;
+        }
+    }
+
+    private static class ReviewList {
+        final List<ExamReview> reviews;
+        final int pending;
+
+        ReviewList(List<ExamReview> reviews, int pending) {
+            this.reviews = reviews;
+            this.pending = pending;
+        }
+    }
+
     private static class PatientItem {
         int id;
         String name;
@@ -359,6 +794,21 @@ public class ExamPanel extends JPanel {
         }
     }
 
+    private static class RiskViewItem {
+        final String name;
+        final Double minRisk;
+
+        RiskViewItem(String name, Double minRisk) {
+            this.name = name;
+            this.minRisk = minRisk;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
     private static class ClassItem {
         int id;
         String name;
@@ -386,14 +836,14 @@ public class ExamPanel extends JPanel {
         private boolean confirmed = false;
 
         public ExamDialog(Frame owner, String title, Exam exam,
-                          PatientService patientService, ExamService examService) {
+                          List<Patient> patients, List<DiagnosisClass> classes) {
             super(owner, title, true);
-            initComponents(exam, patientService, examService);
+            initComponents(exam, patients, classes);
             pack();
             setLocationRelativeTo(owner);
         }
 
-        private void initComponents(Exam exam, PatientService patientService, ExamService examService) {
+        private void initComponents(Exam exam, List<Patient> patients, List<DiagnosisClass> classes) {
             JPanel panel = new JPanel(new GridBagLayout());
             panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
             GridBagConstraints gbc = new GridBagConstraints();
@@ -408,11 +858,9 @@ public class ExamPanel extends JPanel {
             panel.add(new JLabel("Patient*:"), gbc);
             gbc.gridx = 1;
             patientCombo = new JComboBox<>();
-            try {
-                for (Patient p : patientService.getAllPatients()) {
-                    patientCombo.addItem(new PatientItem(p.getPatientId(), p.getName()));
-                }
-            } catch (Exception e) { }
+            for (Patient p : patients) {
+                patientCombo.addItem(new PatientItem(p.getPatientId(), p.getName()));
+            }
             panel.add(patientCombo, gbc);
 
             // Exam date
@@ -476,11 +924,9 @@ public class ExamPanel extends JPanel {
             panel.add(new JLabel("Diagnosis*:"), gbc);
             gbc.gridx = 1;
             classCombo = new JComboBox<>();
-            try {
-                for (DiagnosisClass dc : examService.getAllDiagnosisClasses()) {
-                    classCombo.addItem(new ClassItem(dc.getClassId(), dc.getDescription()));
-                }
-            } catch (Exception e) { }
+            for (DiagnosisClass dc : classes) {
+                classCombo.addItem(new ClassItem(dc.getClassId(), dc.getDescription()));
+            }
             panel.add(classCombo, gbc);
 
             // Notes
@@ -0,0 +1,27 @@
+package com.vertebralcare.ui;
+
+import javax.swing.table.DefaultTableCellRenderer;
+import java.text.Format;
+
+/**
+ * Table cell renderer that formats raw values at paint time
+ * Only visible cells are ever formatted, so models can keep numbers and dates unformatted.
+ */
+public class FormatRenderer extends DefaultTableCellRenderer {
+
+    private final Format format;
+
+    public FormatRenderer(Format format, int alignment) {
+        this.format = format;
+        setHorizontalAlignment(alignment);
+    }
+
+    @Override
+    protected void setValue(Object value) {
+        if (value instanceof Number || value instanceof java.util.Date) {
+            setText(format.format(value));
+        } else {
+            setText(value != null ? value.toString() : "");
+        }
+    }
+}
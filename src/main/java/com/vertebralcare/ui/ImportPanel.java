@@ -1,23 +1,31 @@
 package com.vertebralcare.ui;
 
+import com.vertebralcare.model.ExamReview;
 import com.vertebralcare.service.ImportService;
+import com.vertebralcare.service.StatisticsService;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Data Import Panel
  */
 public class ImportPanel extends JPanel {
 
+    private static final int MAX_LOGGED_REJECTS = 50;
+
     private final ImportService importService;
     private final Runnable refreshCallback;
 
     private JTextField filePathField;
     private JButton browseButton;
     private JButton importButton;
+    private JComboBox<ImportService.Engine> engineCombo;
+    private JSpinner chunkSizeSpinner;
+    private JSpinner writerThreadsSpinner;
     private JProgressBar progressBar;
     private JTextArea logArea;
     private JLabel statusLabel;
@@ -41,6 +49,13 @@ public class ImportPanel extends JPanel {
         importButton.addActionListener(e -> startImport());
         importButton.setEnabled(false);
 
+        // Pipeline settings
+        engineCombo = new JComboBox<>(ImportService.Engine.values());
+        engineCombo.setSelectedItem(importService.getEngine());
+        chunkSizeSpinner = new JSpinner(new SpinnerNumberModel(importService.getChunkSize(), 100, 200000, 100));
+        writerThreadsSpinner = new JSpinner(new SpinnerNumberModel(importService.getWriterThreads(), 1,
+                ImportService.getMaxWriterThreads(), 1));
+
         // Progress bar
         progressBar = new JProgressBar(0, 100);
         progressBar.setStringPainted(true);
@@ -88,7 +103,21 @@ public class ImportPanel extends JPanel {
         filePanel.add(Box.createHorizontalStrut(20));
         filePanel.add(importButton);
 
-        centerPanel.add(filePanel, BorderLayout.NORTH);
+        // Import settings
+        JPanel settingsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+        settingsPanel.setBorder(BorderFactory.createTitledBorder("Import Settings"));
+        settingsPanel.add(new JLabel("Engine:"));
+        settingsPanel.add(engineCombo);
+        settingsPanel.add(new JLabel("Rows/Transaction:"));
+        settingsPanel.add(chunkSizeSpinner);
+        settingsPanel.add(new JLabel("Writers:"));
+        settingsPanel.add(writerThreadsSpinner);
+
+        JPanel controlPanel = new JPanel(new GridLayout(2, 1, 0, 5));
+        controlPanel.add(filePanel);
+        controlPanel.add(settingsPanel);
+
+        centerPanel.add(controlPanel, BorderLayout.NORTH);
 
         // Progress
         JPanel progressPanel = new JPanel(new BorderLayout(5, 5));
@@ -141,23 +170,138 @@ public class ImportPanel extends JPanel {
             return;
         }
 
+        importService.setEngine((ImportService.Engine) engineCombo.getSelectedItem());
+        importService.setChunkSize((Integer) chunkSizeSpinner.getValue());
+        importService.setWriterThreads((Integer) writerThreadsSpinner.getValue());
+
         // Disable buttons
-        importButton.setEnabled(false);
-        browseButton.setEnabled(false);
+        setControlsEnabled(false);
         progressBar.setValue(0);
+        progressBar.setString("Checking previous imports...");
+
+        // Look for checkpoints left by an earlier run of the same file
+        new SwingWorker<ImportService.ResumePoint, Void>() {
+            @Override
+            protected ImportService.ResumePoint doInBackground() throws Exception {
+                return importService.getResumePoint(file);
+            }
+
+            @Override
+            protected void done() {
+                ImportService.ResumePoint resumePoint;
+                try {
+                    resumePoint = get();
+                } catch (Exception e) {
+                    log("Failed to read import checkpoints: " + e.getMessage());
+                    progressBar.setString("Failed");
+                    showError("Failed to read import checkpoints: " + e.getMessage());
+                    setControlsEnabled(true);
+                    return;
+                }
+
+                if (resumePoint == null) {
+                    runImport(file, false);
+                    return;
+                }
+                Boolean restart = askRestart(file, resumePoint);
+                if (restart == null) {
+                    progressBar.setString("Cancelled");
+                    setControlsEnabled(true);
+                } else {
+                    runImport(file, restart);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Ask how to handle a file that was imported before
+     * @return true to start over, false to resume, null to cancel
+     */
+    private Boolean askRestart(File file, ImportService.ResumePoint resumePoint) {
+        String when = resumePoint.getLastCommittedAt() != null
+                ? new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm").format(resumePoint.getLastCommittedAt())
+                : "an earlier run";
+
+        if (resumePoint.isComplete()) {
+            int choice = JOptionPane.showConfirmDialog(this,
+                    file.getName() + " was already fully imported (" + resumePoint.getImportedRows() +
+                            " records, " + when + ").\nImport it again from the start? This duplicates those records.",
+                    "File Already Imported", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            return choice == JOptionPane.YES_OPTION ? Boolean.TRUE : null;
+        }
+
+        int percent = (int) (resumePoint.getBytesDone() * 100.0 / Math.max(1, resumePoint.getFileLength()));
+        Object[] options = {"Resume", "Start Over", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(this,
+                "An earlier import of " + file.getName() + " stopped after " + resumePoint.getImportedRows() +
+                        " records (" + percent + "% of the file, " + when + ").\n" +
+                        "Resume skips the part already imported. Start Over imports the whole file again\n" +
+                        "and duplicates those records.",
+                "Resume Import", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE,
+                null, options, options[0]);
+        if (choice == 0) {
+            return Boolean.FALSE;
+        }
+        return choice == 1 ? Boolean.TRUE : null;
+    }
+
+    private void runImport(File file, boolean restart) {
         progressBar.setString("Importing...");
 
-        log("Starting import: " + file.getName());
+        log((restart ? "Restarting import: " : "Starting import: ") + file.getName());
+        final ImportService.Engine engine = importService.getEngine();
+        log("Engine: " + engine + ", chunk size: " + importService.getChunkSize() +
+                ", writers: " + importService.getWriterThreads());
         log("-----------------------------------");
+        final long startTime = System.currentTimeMillis();
 
         // Execute import in background thread
-        SwingWorker<Integer, Integer> worker = new SwingWorker<Integer, Integer>() {
+        SwingWorker<ImportService.ImportResult, Integer> worker =
+                new SwingWorker<ImportService.ImportResult, Integer>() {
+            private final AtomicInteger flagged = new AtomicInteger();
+
             @Override
-            protected Integer doInBackground() throws Exception {
-                return importService.importCSV(file, (current, total) -> {
-                    int percent = (int) ((current * 100.0) / total);
-                    publish(percent);
-                    setProgress(percent);
+            protected ImportService.ImportResult doInBackground() throws Exception {
+                if (restart) {
+                    importService.clearCheckpoints(file);
+                }
+                return importService.importCSV(file, new ImportService.ProgressCallback() {
+                    private final AtomicInteger rejected = new AtomicInteger();
+
+                    @Override
+                    public void onProgress(long current, long total) {
+                        int percent = (int) ((current * 100.0) / total);
+                        publish(percent);
+                        setProgress(percent);
+                    }
+
+                    @Override
+                    public void onRowRejected(long line, int column, String reason) {
+                        // Only show the first few, a bad file could otherwise flood the log
+                        int n = rejected.incrementAndGet();
+                        if (n <= MAX_LOGGED_REJECTS) {
+                            SwingUtilities.invokeLater(() -> log("Skipped line " + line + ", column " + column + ": " + reason));
+                        } else if (n == MAX_LOGGED_REJECTS + 1) {
+                            SwingUtilities.invokeLater(() -> log("More rows skipped, see console output"));
+                        }
+                    }
+
+                    @Override
+                    public void onChunkFailed(ImportService.ChunkFailure failure) {
+                        SwingUtilities.invokeLater(() -> log(failure.toString()));
+                    }
+
+                    @Override
+                    public void onRowFlagged(long line, ExamReview review) {
+                        int n = flagged.incrementAndGet();
+                        if (n <= MAX_LOGGED_REJECTS) {
+                            String indicator = StatisticsService.getIndicatorNames()[review.getIndicator()];
+                            SwingUtilities.invokeLater(() -> log(String.format(
+                                    "Flagged line %d for review: %s = %.2f (z %.1f, distance %.1f)", line,
+                                    indicator, review.getIndicatorValue(), review.getZScore(), review.getDistance())));
+                        }
+                    }
                 });
             }
 
@@ -171,14 +315,32 @@ public class ImportPanel extends JPanel {
             @Override
             protected void done() {
                 try {
-                    int count = get();
+                    ImportService.ImportResult result = get();
+                    int count = result.getImportedRows();
+                    double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
                     log("-----------------------------------");
-                    log("Import completed! Total " + count + " records imported");
+                    log(String.format("%s: elapsed %.1f s, %.0f rows/sec", engine, seconds, count / seconds));
+                    if (flagged.get() > 0) {
+                        log(flagged.get() + " outlier rows flagged for review (Exam Records > Review Outliers)");
+                    }
                     progressBar.setValue(100);
-                    progressBar.setString("Completed");
-                    statusLabel.setText("Import completed: " + count + " records");
-
-                    showMessage("Import successful! " + count + " exam records imported");
+                    if (result.hasFailures()) {
+                        String summary = count + " records imported, " + result.getFailedRows() + " rows in " +
+                                result.getFailures().size() + " chunks failed";
+                        log("Import finished with errors: " + summary);
+                        progressBar.setString("Completed with errors");
+                        statusLabel.setText("Import finished with errors: " + summary);
+                        JOptionPane.showMessageDialog(ImportPanel.this,
+                                "Import finished with errors: " + summary + ".\n" +
+                                        "First failure: " + result.getFailures().get(0) + "\n\n" +
+                                        "See the log for details. Run the import again to retry the failed rows.",
+                                "Import Incomplete", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        log("Import completed! Total " + count + " records imported");
+                        progressBar.setString("Completed");
+                        statusLabel.setText("Import completed: " + count + " records");
+                        showMessage("Import successful! " + count + " exam records imported");
+                    }
 
                     // Refresh other panels
                     if (refreshCallback != null) {
@@ -191,8 +353,7 @@ public class ImportPanel extends JPanel {
                     statusLabel.setText("Import failed");
                     showError("Import failed: " + e.getMessage());
                 } finally {
-                    importButton.setEnabled(true);
-                    browseButton.setEnabled(true);
+                    setControlsEnabled(true);
                 }
             }
         };
@@ -200,6 +361,14 @@ public class ImportPanel extends JPanel {
         worker.execute();
     }
 
+    private void setControlsEnabled(boolean enabled) {
+        importButton.setEnabled(enabled);
+        browseButton.setEnabled(enabled);
+        engineCombo.setEnabled(enabled);
+        chunkSizeSpinner.setEnabled(enabled);
+        writerThreadsSpinner.setEnabled(enabled);
+    }
+
     private void log(String message) {
         logArea.append("[" + new java.text.SimpleDateFormat("HH:mm:ss").format(new java.util.Date()) + "] " + message + "\n");
         logArea.setCaretPosition(logArea.getDocument().getLength());
@@ -1,13 +1,17 @@
 package com.vertebralcare.ui;
 
 import com.vertebralcare.dao.DBUtil;
+import com.vertebralcare.dao.PoolStats;
+import com.vertebralcare.dao.QueryCache;
 import com.vertebralcare.service.ExamService;
 import com.vertebralcare.service.ImportService;
 import com.vertebralcare.service.PatientService;
+import com.vertebralcare.service.RiskService;
 import com.vertebralcare.service.StatisticsService;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Arrays;
 
 /**
  * Main Window
@@ -18,6 +22,7 @@ public class MainFrame extends JFrame {
     private final ExamService examService;
     private final StatisticsService statisticsService;
     private final ImportService importService;
+    private final RiskService riskService;
 
     private JTabbedPane tabbedPane;
     private PatientPanel patientPanel;
@@ -25,12 +30,16 @@ public class MainFrame extends JFrame {
     private StatisticsPanel statisticsPanel;
     private ImportPanel importPanel;
     private JLabel statusLabel;
+    private BackgroundLoader statusLoader;
+    // Data version each tab was last refreshed at (panels load their data when created)
+    private final long[] tabVersions = new long[3];
 
     public MainFrame() {
         this.patientService = new PatientService();
         this.examService = new ExamService();
         this.statisticsService = new StatisticsService();
         this.importService = new ImportService();
+        this.riskService = new RiskService();
 
         initComponents();
         setupLayout();
@@ -43,7 +52,7 @@ public class MainFrame extends JFrame {
 
         // Create panels
         patientPanel = new PatientPanel(patientService);
-        examPanel = new ExamPanel(examService, patientService);
+        examPanel = new ExamPanel(examService, patientService, riskService);
         statisticsPanel = new StatisticsPanel(statisticsService);
         importPanel = new ImportPanel(importService, this::refreshAllPanels);
 
@@ -53,9 +62,18 @@ public class MainFrame extends JFrame {
         tabbedPane.addTab("Statistics", createIcon("stats"), statisticsPanel);
         tabbedPane.addTab("Data Import", createIcon("import"), importPanel);
 
-        // Refresh data on tab switch
+        // Refresh data on tab switch, only if it changed since the tab was last refreshed
+        Arrays.fill(tabVersions, dataVersion());
         tabbedPane.addChangeListener(e -> {
             int index = tabbedPane.getSelectedIndex();
+            if (index >= tabVersions.length) {
+                return;
+            }
+            long version = dataVersion();
+            if (tabVersions[index] == version) {
+                return;
+            }
+            tabVersions[index] = version;
             switch (index) {
                 case 0: patientPanel.refreshData(); break;
                 case 1: examPanel.refreshData(); break;
@@ -66,9 +84,14 @@ public class MainFrame extends JFrame {
         // Status bar
         statusLabel = new JLabel(" ");
         statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        statusLoader = new BackgroundLoader(null);
         updateStatus();
     }
 
+    private static long dataVersion() {
+        return QueryCache.versionOf(QueryCache.Table.values());
+    }
+
     private ImageIcon createIcon(String name) {
         // Return null, can add icons later
         return null;
@@ -122,16 +145,21 @@ public class MainFrame extends JFrame {
     }
 
     private void updateStatus() {
-        try {
-            int patientCount = patientService.getPatientCount();
-            int examCount = examService.getExamCount();
-            statusLabel.setText(String.format("Patients: %d | Exam Records: %d", patientCount, examCount));
-        } catch (Exception e) {
-            statusLabel.setText("Failed to get status");
-        }
+        // Only the two counts: a full snapshot would also build every distribution
+        statusLoader.submit(
+                () -> new int[]{statisticsService.getPatientCount(), statisticsService.getExamCount()},
+                counts -> {
+                    statusLabel.setText(String.format("Patients: %d | Exam Records: %d", counts[0], counts[1]));
+                    PoolStats poolStats = DBUtil.getPoolStats();
+                    statusLabel.setToolTipText("<html>" + (poolStats != null ? poolStats + "<br>" : "") +
+                            patientService.getCacheStats() + "<br>" + examService.getCacheStats() + "<br>" +
+                            QueryCache.getInstance() + "</html>");
+                },
+                e -> statusLabel.setText("Failed to get status"));
     }
 
     public void refreshAllPanels() {
+        Arrays.fill(tabVersions, dataVersion());
         patientPanel.refreshData();
         examPanel.refreshData();
         statisticsPanel.refreshData();
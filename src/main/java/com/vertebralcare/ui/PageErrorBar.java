@@ -0,0 +1,35 @@
+package com.vertebralcare.ui;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Status line for rows a PagedTableModel failed to load
+ * Hidden until a page fails; shows the error and a Retry button that fetches the failed pages again.
+ */
+public class PageErrorBar extends JPanel implements PagedTableModel.LoadErrorListener {
+
+    private final JLabel message = new JLabel();
+
+    public PageErrorBar(PagedTableModel<?> model) {
+        super(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        message.setForeground(Color.RED);
+        JButton retryButton = new JButton("Retry");
+        retryButton.addActionListener(e -> model.retryFailedPages());
+        add(message);
+        add(retryButton);
+        setVisible(false);
+        model.setLoadErrorListener(this);
+    }
+
+    @Override
+    public void pageFailed(int firstRow, Exception error) {
+        message.setText("Failed to load rows from " + (firstRow + 1) + ": " + error.getMessage());
+        setVisible(true);
+    }
+
+    @Override
+    public void failuresCleared() {
+        setVisible(false);
+    }
+}
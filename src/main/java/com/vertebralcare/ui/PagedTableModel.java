@@ -0,0 +1,261 @@
+package com.vertebralcare.ui;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lazily loaded table model
+ * Only the row count is known up front. Rows are fetched a page at a time when the
+ * table asks for them, and only a sliding window of recently used pages is kept.
+ * A page that fails to load is not requested again until its backoff has passed
+ * (doubling per failure) or retryFailedPages() is called; failures go to the LoadErrorListener.
+ */
+public class PagedTableModel<T> extends AbstractTableModel {
+
+    /**
+     * Source of rows for the model
+     */
+    public interface PageSource<T> {
+        /**
+         * Re-read the row index (called off the EDT)
+         * @return number of rows
+         */
+        int reload() throws Exception;
+
+        /**
+         * Fetch up to pageSize rows starting at firstRow
+         */
+        List<T> fetch(int firstRow, int pageSize) throws Exception;
+    }
+
+    /**
+     * Maps a row object to a cell value
+     */
+    public interface ColumnMapper<T> {
+        Object valueAt(T row, int column);
+    }
+
+    /**
+     * Told about page fetch failures, on the EDT
+     */
+    public interface LoadErrorListener {
+        /**
+         * A page could not be fetched
+         * @param firstRow first row of the page
+         */
+        void pageFailed(int firstRow, Exception error);
+
+        /**
+         * Failed pages were dropped, by a new source or retryFailedPages()
+         */
+        default void failuresCleared() {
+        }
+    }
+
+    /**
+     * Source over a list that is already in memory (small filtered results)
+     */
+    public static class ListSource<T> implements PageSource<T> {
+        private final List<T> rows;
+
+        public ListSource(List<T> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int reload() {
+            return rows.size();
+        }
+
+        @Override
+        public List<T> fetch(int firstRow, int pageSize) {
+            return rows.subList(firstRow, Math.min(rows.size(), firstRow + pageSize));
+        }
+    }
+
+    private final String[] columnNames;
+    private final ColumnMapper<T> mapper;
+    private final int pageSize;
+    private final Map<Integer, List<T>> pages;
+    private final Set<Integer> pending = new HashSet<>();
+    // page -> failure count and earliest retry time
+    private final Map<Integer, Failure> failed = new HashMap<>();
+
+    private PageSource<T> source;
+    private LoadErrorListener errorListener;
+    private int rowCount = 0;
+    private int generation = 0;
+
+    private static final long FIRST_RETRY_MS = 1000;
+    private static final long MAX_RETRY_MS = 30000;
+
+    public PagedTableModel(String[] columnNames, ColumnMapper<T> mapper, int pageSize, final int maxCachedPages) {
+        this.columnNames = columnNames;
+        this.mapper = mapper;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+    }
+
+    /**
+     * Switch to a source whose row index has already been loaded, dropping all cached pages
+     * @param rowCount value returned by source.reload()
+     */
+    public void setSource(PageSource<T> source, int rowCount) {
+        this.source = source;
+        this.rowCount = rowCount;
+        generation++;
+        pages.clear();
+        pending.clear();
+        clearFailures();
+        fireTableDataChanged();
+    }
+
+    public void setLoadErrorListener(LoadErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Fetch failed pages again as soon as they are shown (call on the EDT)
+     */
+    public void retryFailedPages() {
+        if (failed.isEmpty()) {
+            return;
+        }
+        Set<Integer> retry = new HashSet<>(failed.keySet());
+        clearFailures();
+        for (int page : retry) {
+            int firstRow = page * pageSize;
+            int lastRow = Math.min(rowCount, firstRow + pageSize) - 1;
+            if (lastRow >= firstRow) {
+                fireTableRowsUpdated(firstRow, lastRow);
+            }
+        }
+    }
+
+    private void clearFailures() {
+        if (!failed.isEmpty()) {
+            failed.clear();
+            if (errorListener != null) {
+                errorListener.failuresCleared();
+            }
+        }
+    }
+
+    /**
+     * Row object at the given index, or null if its page is still loading
+     */
+    public T getRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            return null;
+        }
+        int page = row / pageSize;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = row - page * pageSize;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        T item = getRow(row);
+        return item != null ? mapper.valueAt(item, column) : null;
+    }
+
+    private void requestPage(int page) {
+        Failure failure = failed.get(page);
+        if (failure != null && System.currentTimeMillis() < failure.retryAt) {
+            return;
+        }
+        if (!pending.add(page)) {
+            return;
+        }
+        final PageSource<T> pageSource = source;
+        final int requestGeneration = generation;
+        final int firstRow = page * pageSize;
+
+        new SwingWorker<List<T>, Void>() {
+            @Override
+            protected List<T> doInBackground() throws Exception {
+                return pageSource.fetch(firstRow, pageSize);
+            }
+
+            @Override
+            protected void done() {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                pending.remove(page);
+                List<T> rows;
+                try {
+                    rows = get();
+                } catch (Exception e) {
+                    Exception cause = e instanceof ExecutionException && e.getCause() instanceof Exception
+                            ? (Exception) e.getCause() : e;
+                    pageFailed(page, firstRow, cause);
+                    return;
+                }
+                failed.remove(page);
+                pages.put(page, rows);
+                int lastRow = Math.min(rowCount, firstRow + pageSize) - 1;
+                if (lastRow >= firstRow) {
+                    fireTableRowsUpdated(firstRow, lastRow);
+                }
+            }
+        }.execute();
+    }
+
+    private void pageFailed(int page, int firstRow, Exception error) {
+        Failure failure = failed.get(page);
+        int attempts = failure != null ? failure.attempts + 1 : 1;
+        long backoff = Math.min(MAX_RETRY_MS, FIRST_RETRY_MS << Math.min(attempts - 1, 16));
+        failed.put(page, new Failure(attempts, System.currentTimeMillis() + backoff));
+        if (errorListener != null) {
+            errorListener.pageFailed(firstRow, error);
+        }
+    }
+
+    private static final class Failure {
+        final int attempts;
+        final long retryAt;
+
+        Failure(int attempts, long retryAt) {
+            this.attempts = attempts;
+            this.retryAt = retryAt;
+        }
+    }
+}
@@ -4,7 +4,6 @@ import com.vertebralcare.model.Patient;
 import com.vertebralcare.service.PatientService;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.Date;
 import java.text.SimpleDateFormat;
@@ -19,11 +18,18 @@ public class PatientPanel extends JPanel {
 
     private JTextField searchField;
     private JTable patientTable;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Patient> tableModel;
     private JButton addButton, editButton, deleteButton, refreshButton;
+    private JProgressBar loadingBar;
+
+    // Data loads run off the EDT; a newer load supersedes the one in flight
+    private BackgroundLoader tableLoader;
 
     private static final String[] COLUMN_NAMES = {"ID", "Name", "Gender", "Birth Date", "Phone", "Created At"};
 
+    private static final int PAGE_SIZE = 200;
+    private static final int CACHED_PAGES = 10;
+
     public PatientPanel(PatientService patientService) {
         this.patientService = patientService;
         initComponents();
@@ -32,6 +38,13 @@ public class PatientPanel extends JPanel {
     }
 
     private void initComponents() {
+        // Loading indicator
+        loadingBar = new JProgressBar();
+        loadingBar.setIndeterminate(true);
+        loadingBar.setString("Loading...");
+        loadingBar.setStringPainted(true);
+        tableLoader = new BackgroundLoader(loadingBar);
+
         // Search field
         searchField = new JTextField(20);
         searchField.addActionListener(e -> searchPatients());
@@ -47,13 +60,8 @@ public class PatientPanel extends JPanel {
         deleteButton.addActionListener(e -> deletePatient());
         refreshButton.addActionListener(e -> refreshData());
 
-        // Table
-        tableModel = new DefaultTableModel(COLUMN_NAMES, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Table (rows are fetched page by page as they scroll into view)
+        tableModel = new PagedTableModel<>(COLUMN_NAMES, PatientPanel::columnValue, PAGE_SIZE, CACHED_PAGES);
         patientTable = new JTable(tableModel);
         patientTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         patientTable.setRowHeight(25);
@@ -63,6 +71,10 @@ public class PatientPanel extends JPanel {
         patientTable.getColumnModel().getColumn(3).setPreferredWidth(100);
         patientTable.getColumnModel().getColumn(4).setPreferredWidth(120);
         patientTable.getColumnModel().getColumn(5).setPreferredWidth(150);
+        patientTable.getColumnModel().getColumn(3).setCellRenderer(
+                new FormatRenderer(new SimpleDateFormat("yyyy-MM-dd"), SwingConstants.LEFT));
+        patientTable.getColumnModel().getColumn(5).setCellRenderer(
+                new FormatRenderer(new SimpleDateFormat("yyyy-MM-dd HH:mm"), SwingConstants.LEFT));
 
         // Double click to edit
         patientTable.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -100,42 +112,38 @@ public class PatientPanel extends JPanel {
         // Bottom hint
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         bottomPanel.add(new JLabel("Tip: Double-click a row to edit patient info"));
+        bottomPanel.add(loadingBar);
+        bottomPanel.add(new PageErrorBar(tableModel));
         add(bottomPanel, BorderLayout.SOUTH);
     }
 
     private void loadData() {
-        try {
-            List<Patient> patients = patientService.getAllPatients();
-            updateTable(patients);
-        } catch (Exception e) {
-            showError("Failed to load data: " + e.getMessage());
-        }
+        PatientSource source = new PatientSource(patientService);
+        tableLoader.submit(source::reload,
+                rowCount -> tableModel.setSource(source, rowCount),
+                e -> showError("Failed to load data: " + e.getMessage()));
     }
 
     private void searchPatients() {
-        try {
-            String keyword = searchField.getText().trim();
-            List<Patient> patients = patientService.searchByName(keyword);
-            updateTable(patients);
-        } catch (Exception e) {
-            showError("Search failed: " + e.getMessage());
+        String keyword = searchField.getText().trim();
+        if (keyword.isEmpty()) {
+            loadData();
+            return;
         }
+        tableLoader.submit(() -> patientService.searchByName(keyword),
+                patients -> tableModel.setSource(new PagedTableModel.ListSource<>(patients), patients.size()),
+                e -> showError("Search failed: " + e.getMessage()));
     }
 
-    private void updateTable(List<Patient> patients) {
-        tableModel.setRowCount(0);
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        SimpleDateFormat sdf2 = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-
-        for (Patient p : patients) {
-            tableModel.addRow(new Object[]{
-                    p.getPatientId(),
-                    p.getName(),
-                    p.getGenderDisplay(),
-                    p.getBirthDate() != null ? sdf.format(p.getBirthDate()) : "-",
-                    p.getPhone() != null ? p.getPhone() : "-",
-                    p.getCreatedAt() != null ? sdf2.format(p.getCreatedAt()) : "-"
-            });
+    private static Object columnValue(Patient p, int column) {
+        switch (column) {
+            case 0: return p.getPatientId();
+            case 1: return p.getName();
+            case 2: return p.getGenderDisplay();
+            case 3: return p.getBirthDate() != null ? p.getBirthDate() : "-";
+            case 4: return p.getPhone() != null ? p.getPhone() : "-";
+            case 5: return p.getCreatedAt() != null ? p.getCreatedAt() : "-";
+            default: return null;
         }
     }
 
@@ -158,13 +166,13 @@ public class PatientPanel extends JPanel {
     }
 
     private void showEditDialog() {
-        int row = patientTable.getSelectedRow();
-        if (row < 0) {
+        Patient selected = tableModel.getRow(patientTable.getSelectedRow());
+        if (selected == null) {
             showMessage("Please select a patient to edit");
             return;
         }
 
-        int patientId = (Integer) tableModel.getValueAt(row, 0);
+        int patientId = selected.getPatientId();
         try {
             Patient patient = patientService.getPatientById(patientId);
             if (patient != null) {
@@ -190,14 +198,14 @@ public class PatientPanel extends JPanel {
     }
 
     private void deletePatient() {
-        int row = patientTable.getSelectedRow();
-        if (row < 0) {
+        Patient selected = tableModel.getRow(patientTable.getSelectedRow());
+        if (selected == null) {
             showMessage("Please select a patient to delete");
             return;
         }
 
-        int patientId = (Integer) tableModel.getValueAt(row, 0);
-        String name = (String) tableModel.getValueAt(row, 1);
+        int patientId = selected.getPatientId();
+        String name = selected.getName();
 
         int confirm = JOptionPane.showConfirmDialog(
                 this,
@@ -231,6 +239,29 @@ public class PatientPanel extends JPanel {
         JOptionPane.showMessageDialog(this, msg, "Error", JOptionPane.ERROR_MESSAGE);
     }
 
+    /**
+     * Keyset-paged patient source
+     */
+    private static class PatientSource implements PagedTableModel.PageSource<Patient> {
+        private final PatientService patientService;
+        private int[] ids;
+
+        PatientSource(PatientService patientService) {
+            this.patientService = patientService;
+        }
+
+        @Override
+        public int reload() throws Exception {
+            ids = patientService.getAllPatientIds();
+            return ids.length;
+        }
+
+        @Override
+        public List<Patient> fetch(int firstRow, int pageSize) throws Exception {
+            return patientService.getPatientPageAt(ids, firstRow, pageSize);
+        }
+    }
+
     /**
      * Patient Edit Dialog
      */
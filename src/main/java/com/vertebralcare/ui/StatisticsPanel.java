@@ -1,18 +1,28 @@
 package com.vertebralcare.ui;
 
+import com.vertebralcare.model.ExamRollup;
+import com.vertebralcare.service.ExamSummary;
+import com.vertebralcare.service.IndicatorDistribution;
 import com.vertebralcare.service.StatisticsService;
+import com.vertebralcare.service.StatisticsSnapshot;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryLabelPositions;
 import org.jfree.chart.plot.CategoryPlot;
 import org.jfree.chart.plot.PiePlot;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.general.DefaultPieDataset;
+import org.jfree.data.time.Day;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,6 +39,20 @@ public class StatisticsPanel extends JPanel {
     private JPanel chartPanel;
     private JTable avgTable;
     private DefaultTableModel avgTableModel;
+    private DefaultTableModel quantileTableModel;
+    private JComboBox<String> histogramIndicatorCombo;
+    private JPanel histogramPanel;
+    private StatisticsSnapshot lastSnapshot;
+    private JComboBox<ExamRollup.Period> trendPeriodCombo;
+    private JComboBox<String> trendMetricCombo;
+    private JPanel trendPanel;
+    private List<ExamRollup> lastTrend;
+    private BackgroundLoader trendLoader;
+    private DefaultTableModel correlationTableModel;
+    private JLabel correlationInfoLabel;
+    private BackgroundLoader correlationLoader;
+    private JProgressBar loadingBar;
+    private BackgroundLoader loader;
 
     public StatisticsPanel(StatisticsService statisticsService) {
         this.statisticsService = statisticsService;
@@ -64,6 +88,57 @@ public class StatisticsPanel extends JPanel {
         avgTable = new JTable(avgTableModel);
         avgTable.setRowHeight(28);
         avgTable.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 12));
+
+        // Quantile table
+        String[] quantileColumns = {"Indicator", "Normal Median", "Normal P90", "Normal P99",
+                "Abnormal Median", "Abnormal P90", "Abnormal P99"};
+        quantileTableModel = new DefaultTableModel(quantileColumns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        // Histogram
+        histogramIndicatorCombo = new JComboBox<>(StatisticsService.getIndicatorNames());
+        histogramIndicatorCombo.addActionListener(e -> updateHistogram());
+        histogramPanel = new JPanel(new BorderLayout());
+
+        // Trend
+        trendPeriodCombo = new JComboBox<>(ExamRollup.Period.values());
+        trendPeriodCombo.addActionListener(e -> loadTrend());
+        String[] indicatorNames = StatisticsService.getIndicatorNames();
+        String[] metrics = new String[indicatorNames.length + 1];
+        metrics[0] = "Exam Count";
+        for (int i = 0; i < indicatorNames.length; i++) {
+            metrics[i + 1] = "Average " + indicatorNames[i];
+        }
+        trendMetricCombo = new JComboBox<>(metrics);
+        trendMetricCombo.addActionListener(e -> updateTrendChart());
+        trendPanel = new JPanel(new BorderLayout());
+        trendLoader = new BackgroundLoader(null);
+
+        // Correlation matrix
+        String[] correlationColumns = new String[indicatorNames.length + 1];
+        correlationColumns[0] = "Indicator";
+        for (int i = 0; i < indicatorNames.length; i++) {
+            correlationColumns[i + 1] = abbreviation(indicatorNames[i]);
+        }
+        correlationTableModel = new DefaultTableModel(correlationColumns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        correlationInfoLabel = new JLabel(" ");
+        correlationLoader = new BackgroundLoader(null);
+
+        // Loading indicator
+        loadingBar = new JProgressBar();
+        loadingBar.setIndeterminate(true);
+        loadingBar.setString("Loading...");
+        loadingBar.setStringPainted(true);
+        loader = new BackgroundLoader(loadingBar);
     }
 
     private void setupLayout() {
@@ -91,11 +166,45 @@ public class StatisticsPanel extends JPanel {
 
         add(centerPanel, BorderLayout.CENTER);
 
-        // Bottom average table
+        // Bottom indicator tables and histogram
+        JTable quantileTable = new JTable(quantileTableModel);
+        quantileTable.setRowHeight(28);
+        quantileTable.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 12));
+
+        JPanel histogramTab = new JPanel(new BorderLayout(5, 5));
+        JPanel histogramControls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        histogramControls.add(new JLabel("Indicator:"));
+        histogramControls.add(histogramIndicatorCombo);
+        histogramTab.add(histogramControls, BorderLayout.NORTH);
+        histogramTab.add(histogramPanel, BorderLayout.CENTER);
+
+        JPanel trendTab = new JPanel(new BorderLayout(5, 5));
+        JPanel trendControls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        trendControls.add(new JLabel("Period:"));
+        trendControls.add(trendPeriodCombo);
+        trendControls.add(new JLabel("Show:"));
+        trendControls.add(trendMetricCombo);
+        trendTab.add(trendControls, BorderLayout.NORTH);
+        trendTab.add(trendPanel, BorderLayout.CENTER);
+
+        JTable correlationTable = new JTable(correlationTableModel);
+        correlationTable.setRowHeight(28);
+        correlationTable.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 12));
+        JPanel correlationTab = new JPanel(new BorderLayout(5, 5));
+        correlationTab.add(correlationInfoLabel, BorderLayout.NORTH);
+        correlationTab.add(new JScrollPane(correlationTable), BorderLayout.CENTER);
+
+        JTabbedPane indicatorTabs = new JTabbedPane();
+        indicatorTabs.addTab("Mean ± SD", new JScrollPane(avgTable));
+        indicatorTabs.addTab("Quantiles", new JScrollPane(quantileTable));
+        indicatorTabs.addTab("Distribution", histogramTab);
+        indicatorTabs.addTab("Trend", trendTab);
+        indicatorTabs.addTab("Correlation", correlationTab);
+
         JPanel tablePanel = new JPanel(new BorderLayout());
-        tablePanel.setBorder(BorderFactory.createTitledBorder("Average Indicator Values by Class"));
-        tablePanel.add(new JScrollPane(avgTable), BorderLayout.CENTER);
-        tablePanel.setPreferredSize(new Dimension(800, 200));
+        tablePanel.setBorder(BorderFactory.createTitledBorder("Indicator Values by Class"));
+        tablePanel.add(indicatorTabs, BorderLayout.CENTER);
+        tablePanel.setPreferredSize(new Dimension(800, 260));
 
         add(tablePanel, BorderLayout.SOUTH);
 
@@ -103,6 +212,7 @@ public class StatisticsPanel extends JPanel {
         JButton refreshBtn = new JButton("Refresh");
         refreshBtn.addActionListener(e -> refreshData());
         JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        btnPanel.add(loadingBar);
         btnPanel.add(refreshBtn);
         ((JPanel) summaryPanel.getParent()).add(btnPanel, BorderLayout.EAST);
     }
@@ -118,30 +228,101 @@ public class StatisticsPanel extends JPanel {
     }
 
     private void loadData() {
-        try {
-            // Basic statistics
-            int patientCount = statisticsService.getPatientCount();
-            int examCount = statisticsService.getExamCount();
-            double normalPercent = statisticsService.getNormalPercentage();
-            double abnormalPercent = statisticsService.getAbnormalPercentage();
+        // One consistent snapshot per refresh, read on a background thread
+        loader.submit(statisticsService::snapshot, this::showStatistics,
+                e -> showError("Failed to load statistics: " + e.getMessage()));
+        loadTrend();
+        correlationLoader.submit(statisticsService::summarize, this::updateCorrelationTable,
+                e -> showError("Failed to compute correlations: " + e.getMessage()));
+    }
 
-            patientCountLabel.setText("Patients: " + patientCount);
-            examCountLabel.setText("Exams: " + examCount);
-            normalPercentLabel.setText(String.format("Normal: %.1f%%", normalPercent));
-            abnormalPercentLabel.setText(String.format("Abnormal: %.1f%%", abnormalPercent));
+    private void loadTrend() {
+        ExamRollup.Period period = (ExamRollup.Period) trendPeriodCombo.getSelectedItem();
+        trendLoader.submit(() -> statisticsService.getTrend(period), trend -> {
+            lastTrend = trend;
+            updateTrendChart();
+        }, e -> showError("Failed to load trend: " + e.getMessage()));
+    }
 
-            // Class statistics
-            Map<String, Integer> countByClass = statisticsService.getCountByClass();
+    /**
+     * Pearson correlation of every indicator pair over all exams
+     */
+    private void updateCorrelationTable(ExamSummary summary) {
+        String[] indicatorNames = StatisticsService.getIndicatorNames();
+        correlationTableModel.setRowCount(0);
+        for (int i = 0; i < indicatorNames.length; i++) {
+            Object[] row = new Object[indicatorNames.length + 1];
+            row[0] = indicatorNames[i];
+            for (int j = 0; j < indicatorNames.length; j++) {
+                double r = summary.getCorrelation(i, j);
+                row[j + 1] = Double.isNaN(r) ? "-" : String.format("%.3f", r);
+            }
+            correlationTableModel.addRow(row);
+        }
+        correlationInfoLabel.setText(String.format("%d exams scanned in %.1f ms on %d threads",
+                summary.getRowCount(), summary.getElapsedNanos() / 1e6, summary.getParallelism()));
+    }
 
-            // Update charts
-            updateCharts(countByClass);
+    /**
+     * "Pelvic Tilt (PT)" -> "PT"
+     */
+    private static String abbreviation(String indicatorName) {
+        int open = indicatorName.lastIndexOf('(');
+        int close = indicatorName.lastIndexOf(')');
+        return open >= 0 && close > open ? indicatorName.substring(open + 1, close) : indicatorName;
+    }
 
-            // Average table
-            updateAverageTable();
+    /**
+     * One line per diagnosis class: exam count or the average of the chosen indicator per period
+     */
+    private void updateTrendChart() {
+        trendPanel.removeAll();
+        if (lastTrend != null) {
+            int metric = trendMetricCombo.getSelectedIndex();
+            Map<String, TimeSeries> seriesByClass = new LinkedHashMap<>();
+            for (ExamRollup rollup : lastTrend) {
+                TimeSeries series = seriesByClass.computeIfAbsent(rollup.getDiagnosisDescription(), TimeSeries::new);
+                double value = metric == 0 ? rollup.getExamCount() : rollup.getAverage(metric - 1);
+                series.addOrUpdate(new Day(rollup.getPeriodStart()), value);
+            }
+            TimeSeriesCollection dataset = new TimeSeriesCollection();
+            for (TimeSeries series : seriesByClass.values()) {
+                dataset.addSeries(series);
+            }
 
-        } catch (Exception e) {
-            showError("Failed to load statistics: " + e.getMessage());
+            JFreeChart chart = ChartFactory.createTimeSeriesChart(
+                    null,
+                    trendPeriodCombo.getSelectedItem() + " (period start)",
+                    trendMetricCombo.getItemAt(metric),
+                    dataset,
+                    true,
+                    true,
+                    false
+            );
+            trendPanel.add(new ChartPanel(chart), BorderLayout.CENTER);
         }
+        trendPanel.revalidate();
+        trendPanel.repaint();
+    }
+
+    /**
+     * Runs on the EDT
+     */
+    private void showStatistics(StatisticsSnapshot data) {
+        // Basic statistics
+        patientCountLabel.setText("Patients: " + data.getPatientCount());
+        examCountLabel.setText("Exams: " + data.getExamCount());
+        normalPercentLabel.setText(String.format("Normal: %.1f%%", data.getNormalPercentage()));
+        abnormalPercentLabel.setText(String.format("Abnormal: %.1f%%", data.getAbnormalPercentage()));
+
+        // Update charts
+        updateCharts(data.getCountByClass());
+
+        // Indicator tables and histogram
+        lastSnapshot = data;
+        updateAverageTable(data);
+        updateQuantileTable(data);
+        updateHistogram();
     }
 
     private void updateCharts(Map<String, Integer> countByClass) {
@@ -196,26 +377,97 @@ public class StatisticsPanel extends JPanel {
         chartPanel.repaint();
     }
 
-    private void updateAverageTable() {
+    private void updateAverageTable(StatisticsSnapshot data) {
         avgTableModel.setRowCount(0);
 
-        try {
-            Map<String, double[]> averages = statisticsService.getAveragesByClass();
-            String[] indicatorNames = StatisticsService.getIndicatorNames();
+        String[] indicatorNames = StatisticsService.getIndicatorNames();
+
+        // Get Normal and Abnormal data
+        double[] normalAvgs = data.getAverages("Normal");
+        double[] abnormalAvgs = data.getAverages("Abnormal");
+        double[] normalSds = data.getStdDevs("Normal");
+        double[] abnormalSds = data.getStdDevs("Abnormal");
+
+        for (int i = 0; i < indicatorNames.length; i++) {
+            String normalVal = formatMean(normalAvgs, normalSds, i);
+            String abnormalVal = formatMean(abnormalAvgs, abnormalSds, i);
+            avgTableModel.addRow(new Object[]{indicatorNames[i], normalVal, abnormalVal});
+        }
+    }
+
+    private void updateQuantileTable(StatisticsSnapshot data) {
+        quantileTableModel.setRowCount(0);
 
-            // Get Normal and Abnormal data
-            double[] normalAvgs = averages.get("Normal");
-            double[] abnormalAvgs = averages.get("Abnormal");
+        String[] indicatorNames = StatisticsService.getIndicatorNames();
+        IndicatorDistribution[] normal = data.getDistributions("Normal");
+        IndicatorDistribution[] abnormal = data.getDistributions("Abnormal");
 
-            for (int i = 0; i < indicatorNames.length; i++) {
-                String normalVal = normalAvgs != null ? String.format("%.4f", normalAvgs[i]) : "-";
-                String abnormalVal = abnormalAvgs != null ? String.format("%.4f", abnormalAvgs[i]) : "-";
-                avgTableModel.addRow(new Object[]{indicatorNames[i], normalVal, abnormalVal});
+        for (int i = 0; i < indicatorNames.length; i++) {
+            Object[] row = new Object[7];
+            row[0] = indicatorNames[i];
+            fillQuantiles(row, 1, normal != null ? normal[i] : null);
+            fillQuantiles(row, 4, abnormal != null ? abnormal[i] : null);
+            quantileTableModel.addRow(row);
+        }
+    }
+
+    private static void fillQuantiles(Object[] row, int from, IndicatorDistribution d) {
+        row[from] = d != null ? String.format("%.4f", d.getMedian()) : "-";
+        row[from + 1] = d != null ? String.format("%.4f", d.getP90()) : "-";
+        row[from + 2] = d != null ? String.format("%.4f", d.getP99()) : "-";
+    }
+
+    /**
+     * Normal and Abnormal histograms of the indicator picked in the combo box
+     */
+    private void updateHistogram() {
+        histogramPanel.removeAll();
+        if (lastSnapshot != null) {
+            int indicator = histogramIndicatorCombo.getSelectedIndex();
+            DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+            for (String series : new String[]{"Normal", "Abnormal"}) {
+                IndicatorDistribution[] distributions = lastSnapshot.getDistributions(series);
+                if (distributions == null) {
+                    continue;
+                }
+                IndicatorDistribution d = distributions[indicator];
+                dataset.addValue(d.getBelow(), series, String.format("< %.0f", d.getBinStart(0)));
+                for (int bin = 0; bin < d.getBinCount(); bin++) {
+                    dataset.addValue(d.getBinValue(bin), series, String.format("%.0f", d.getBinStart(bin)));
+                }
+                dataset.addValue(d.getAbove(), series, String.format(">= %.0f", d.getBinStart(d.getBinCount())));
             }
 
-        } catch (Exception e) {
-            // Ignore errors
+            JFreeChart chart = ChartFactory.createBarChart(
+                    null,
+                    histogramIndicatorCombo.getItemAt(indicator),
+                    "Cases",
+                    dataset,
+                    PlotOrientation.VERTICAL,
+                    true,
+                    true,
+                    false
+            );
+            CategoryPlot plot = chart.getCategoryPlot();
+            for (int series = 0; series < dataset.getRowCount(); series++) {
+                boolean normal = "Normal".equals(dataset.getRowKey(series));
+                plot.getRenderer().setSeriesPaint(series, normal ? new Color(46, 139, 87) : new Color(205, 92, 92));
+            }
+            plot.getDomainAxis().setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+            histogramPanel.add(new ChartPanel(chart), BorderLayout.CENTER);
+        }
+        histogramPanel.revalidate();
+        histogramPanel.repaint();
+    }
+
+    private static String formatMean(double[] means, double[] sds, int i) {
+        if (means == null) {
+            return "-";
+        }
+        if (sds == null || Double.isNaN(sds[i])) {
+            return String.format("%.4f", means[i]);
         }
+        return String.format("%.4f ± %.2f", means[i], sds[i]);
     }
 
     public void refreshData() {
@@ -9,9 +9,13 @@ CREATE DATABASE IF NOT EXISTS vertebral_db
 USE vertebral_db;
 
 -- Drop existing tables (for re-initialization)
+DROP TABLE IF EXISTS ExamReview;
 DROP TABLE IF EXISTS Exam;
 DROP TABLE IF EXISTS DiagnosisClass;
 DROP TABLE IF EXISTS Patient;
+DROP TABLE IF EXISTS ImportCheckpoint;
+DROP TABLE IF EXISTS ExamRollup;
+DROP TABLE IF EXISTS RiskModelVersion;
 
 -- 1. Patient Table
 -- BCNF: patient_id -> name, gender, birth_date, phone, created_at
@@ -22,8 +26,10 @@ CREATE TABLE Patient (
     birth_date    DATE,
     phone         VARCHAR(20),
     created_at    TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    import_row    BIGINT NULL COMMENT 'Bulk-load staging key, set only inside the loading transaction',
 
-    CONSTRAINT chk_gender CHECK (gender IN ('M', 'F'))
+    CONSTRAINT chk_gender CHECK (gender IN ('M', 'F')),
+    UNIQUE KEY uk_import_row (import_row)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- 2. DiagnosisClass Table
@@ -54,6 +60,8 @@ CREATE TABLE Exam (
     class_id                  INT NOT NULL,
     notes                     VARCHAR(500) COMMENT 'Notes',
     created_at                TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    risk_score                DOUBLE NULL COMMENT 'Abnormal probability from the risk model',
+    model_version             VARCHAR(32) NULL COMMENT 'Risk model version that computed risk_score',
 
     CONSTRAINT fk_exam_patient
         FOREIGN KEY (patient_id) REFERENCES Patient(patient_id)
@@ -64,7 +72,82 @@ CREATE TABLE Exam (
 
     INDEX idx_patient_id (patient_id),
     INDEX idx_exam_date (exam_date),
-    INDEX idx_class_id (class_id)
+    -- (class_id, exam_date) also serves the class_id foreign key and keyset paging by class
+    INDEX idx_class_date (class_id, exam_date),
+    -- InnoDB appends exam_id, so this also serves keyset paging by (risk_score DESC, exam_id DESC)
+    INDEX idx_risk (risk_score)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 4. ImportCheckpoint Table
+-- One row per committed CSV import chunk, written in the chunk's own transaction.
+-- file_key identifies the source file; [start_offset, end_offset) is the byte range the chunk covered.
+CREATE TABLE ImportCheckpoint (
+    file_key       VARCHAR(100) NOT NULL,
+    chunk_no       INT NOT NULL,
+    start_offset   BIGINT NOT NULL,
+    end_offset     BIGINT NOT NULL,
+    next_line      BIGINT NOT NULL,
+    rows_imported  INT NOT NULL,
+    committed_at   TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (file_key, chunk_no)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 5. ExamRollup Table
+-- Exam count and indicator sums per diagnosis class per month ('M') or week ('W', starting Monday).
+-- Maintained in the same transaction as every Exam insert/update/delete; averages are sum / exam_count.
+CREATE TABLE ExamRollup (
+    period_type                   CHAR(1) NOT NULL,
+    period_start                  DATE NOT NULL,
+    class_id                      INT NOT NULL,
+    exam_count                    INT NOT NULL,
+    sum_pelvic_incidence          DOUBLE NOT NULL,
+    sum_pelvic_tilt               DOUBLE NOT NULL,
+    sum_lumbar_lordosis_angle     DOUBLE NOT NULL,
+    sum_sacral_slope              DOUBLE NOT NULL,
+    sum_pelvic_radius             DOUBLE NOT NULL,
+    sum_degree_spondylolisthesis  DOUBLE NOT NULL,
+
+    PRIMARY KEY (period_type, period_start, class_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 6. RiskModelVersion Table
+-- One row per trained risk model: its coefficients, training metrics and the progress of the job
+-- that rewrites Exam.risk_score with it. rescored_through is the last exam_id written, updated in the
+-- same transaction as each chunk of scores, so an interrupted job resumes after it.
+CREATE TABLE RiskModelVersion (
+    model_version       VARCHAR(32) PRIMARY KEY,
+    parameters          VARCHAR(2000) NOT NULL COMMENT 'Means, scales, standardized weights and bias',
+    training_rows       BIGINT NOT NULL,
+    training_positives  BIGINT NOT NULL,
+    training_accuracy   DOUBLE NOT NULL,
+    training_log_loss   DOUBLE NOT NULL,
+    iterations          INT NOT NULL,
+    trained_at          TIMESTAMP NOT NULL,
+    rescored_through    INT NOT NULL DEFAULT 0,
+    rescored_rows       BIGINT NOT NULL DEFAULT 0,
+    rescore_completed_at TIMESTAMP NULL,
+
+    INDEX idx_trained_at (trained_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 7. ExamReview Table
+-- Exams flagged as outliers when entered or imported (Mahalanobis distance from the other exams of
+-- their class), waiting for a user to check the values. reviewed_at is set once checked.
+CREATE TABLE ExamReview (
+    exam_id          INT PRIMARY KEY,
+    distance         DOUBLE NOT NULL COMMENT 'Mahalanobis distance from the class mean',
+    indicator_index  TINYINT NOT NULL COMMENT 'Indicator with the largest standardized deviation',
+    indicator_value  DOUBLE NOT NULL,
+    z_score          DOUBLE NOT NULL,
+    flagged_at       TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    reviewed_at      TIMESTAMP NULL,
+
+    CONSTRAINT fk_review_exam
+        FOREIGN KEY (exam_id) REFERENCES Exam(exam_id)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+
+    INDEX idx_reviewed_at (reviewed_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- Verify tables created
@@ -74,3 +157,7 @@ SHOW TABLES;
 DESCRIBE Patient;
 DESCRIBE DiagnosisClass;
 DESCRIBE Exam;
+DESCRIBE ImportCheckpoint;
+DESCRIBE ExamRollup;
+DESCRIBE RiskModelVersion;
+DESCRIBE ExamReview;